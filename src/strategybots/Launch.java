@@ -1,9 +1,11 @@
 package strategybots;
 
+import strategybots.arena.Arena;
+import strategybots.bots.SwagC4;
 import strategybots.bots.SwagMNK;
+import strategybots.bots.TipC4_Adv;
 import strategybots.bots.TipDots3v3;
 import strategybots.bots.TipMCTS;
-import strategybots.bots.legacy.SwagC4;
 import strategybots.games.Amazons;
 import strategybots.games.Chess;
 import strategybots.games.Chomp;
@@ -36,6 +38,7 @@ public class Launch {
     private static final int PENTAGO = 8;
     private static final int REVERSI = 9;
     private static final int TICTACTOE = 10;
+    private static final int ARENA = 11;
     
     private static final int GAME = DOTSANDBOXES;
     
@@ -48,11 +51,16 @@ public class Launch {
             case CHESS: new Chess(new ChessController(), new ChessController()); break;
             case CHOMP: new Chomp(new ChompController(), new ChompController()); break;
             case CLOBBER: new Clobber(new ClobberController(), new ClobberController()); break;
-            case CONNECTFOUR: new ConnectFour(new SwagC4(2000), new TipMCTS(2000)); break;
-            case DOTSANDBOXES: new DotsAndBoxes(5, 5, new DotsController(), new TipDots3v3()); break;
+            case CONNECTFOUR: new ConnectFour(new SwagC4(2000), new TipMCTS(2000).setPondering(true)); break;
+            case DOTSANDBOXES: new DotsAndBoxes(5, 5, new DotsController(), new TipDots3v3()); break;
             case PENTAGO: new Pentago(new PentagoController(), new PentagoController()); break;
             case REVERSI: new Reversi(new ReversiController(), new ReversiController()); break;
-            case TICTACTOE: new TicTacToe(new TicTacToeController(), new SwagMNK(2000)); break;
+            case TICTACTOE: new TicTacToe(new TicTacToeController(), new SwagMNK(2000).setPondering(true)); break;
+            case ARENA: new Arena<ConnectFour>(ConnectFour::new)
+                    .add("SwagC4", () -> new SwagC4(100).setTableSize(8))
+                    .add("TipMCTS", () -> new TipMCTS(100, 1).setPoolSize(8))
+                    .add("TipC4_Adv", () -> new TipC4_Adv(100))
+                    .roundRobin(100); break;
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,283 @@
+package strategybots.arena;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+
+import strategybots.games.base.Clock;
+import strategybots.games.base.Game;
+import strategybots.games.base.Game.Options;
+import strategybots.games.base.Game.Player;
+
+/**
+ * Plays many headless games between bots, in parallel.<br>
+ * <br>
+ * Entrants are given as suppliers, so that each game is played by new instances
+ * of each bot, as bots may keep state between turns. Each pairing plays an even
+ * number of games where possible, alternating which entrant moves first.
+ * Games are spread across a pool of worker threads, one per core by default,
+ * so bots used here should usually be configured to search on a single thread,
+ * and with small search trees or tables, as each game allocates its own.<br>
+ * <br>
+ * Example usage:
+ * <pre>
+ * new Arena&lt;ConnectFour&gt;(ConnectFour::new)
+ *     .add("SwagC4", () -&gt; new SwagC4(100).setTableSize(8))
+ *     .add("TipMCTS", () -&gt; new TipMCTS(100, 1).setPoolSize(8))
+ *     .roundRobin(1000);
+ * </pre>
+ *
+ * @author Alec Dorrington
+ */
+public class Arena<G extends Game> {
+
+    /** Creates a new game between the two given players. */
+    private final BiFunction<Player<G>, Player<G>, G> factory;
+
+    /** The names of the entrants. */
+    private final List<String> names = new ArrayList<>();
+
+    /** Suppliers of new instances of each entrant. */
+    private final List<Supplier<? extends Player<G>>> bots = new ArrayList<>();
+
+    /** The number of games to play simultaneously. */
+    private int numThreads = Runtime.getRuntime().availableProcessors();
+
+    /** The number of turns after which a game is declared a draw, or -1 for no limit. */
+    private int maxTurns = -1;
+
+    /** Supplies a new clock for each game, or null if there are no time limits. */
+    private Supplier<Clock> clock = null;
+
+    /** Whether to discard anything printed by the bots. */
+    private boolean quiet = true;
+
+    /** The stream to which progress and results are reported. */
+    private final PrintStream out = System.out;
+
+    /**
+     * Constructs a new arena for a particular game.
+     * @param factory creates a new game between the two given players.
+     */
+    public Arena(BiFunction<Player<G>, Player<G>, G> factory) { this.factory = factory; }
+
+    /**
+     * Adds an entrant to the arena.
+     * @param name the name by which the entrant is reported.
+     * @param bot supplies a new instance of the entrant for each game.
+     * @return this arena.
+     */
+    public Arena<G> add(String name, Supplier<? extends Player<G>> bot) {
+        names.add(name);
+        bots.add(bot);
+        return this;
+    }
+
+    /**
+     * @param numThreads the number of games to play simultaneously.
+     * @return this arena.
+     */
+    public Arena<G> setThreads(int numThreads) {
+        this.numThreads = Math.max(numThreads, 1);
+        return this;
+    }
+
+    /**
+     * @param maxTurns the number of turns after which a game is declared a draw,
+     * or -1 for no limit (default).
+     * @return this arena.
+     */
+    public Arena<G> setMaxTurns(int maxTurns) {
+        this.maxTurns = maxTurns;
+        return this;
+    }
+
+    /**
+     * @param clock supplies a new clock for each game, or null for no time limits (default).
+     * @return this arena.
+     */
+    public Arena<G> setClock(Supplier<Clock> clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * @param quiet whether to discard anything printed by the bots (default true).
+     * @return this arena.
+     */
+    public Arena<G> setQuiet(boolean quiet) {
+        this.quiet = quiet;
+        return this;
+    }
+
+    /**
+     * Plays every entrant against every other entrant, then prints the standings.
+     * @param gamesPerPair the number of games to play between each pair of entrants.
+     * @return the final standings.
+     */
+    public Standings roundRobin(int gamesPerPair) {
+
+        List<int[]> games = new ArrayList<>();
+        for(int i = 0; i < names.size(); i++) {
+            for(int j = i + 1; j < names.size(); j++) {
+                schedule(games, i, j, gamesPerPair);
+            }
+        }
+        return run(games);
+    }
+
+    /**
+     * Plays one entrant against every other entrant, then prints the standings.
+     * @param challenger the name of the entrant to play against all others.
+     * @param gamesPerOpponent the number of games to play against each opponent.
+     * @return the final standings.
+     */
+    public Standings gauntlet(String challenger, int gamesPerOpponent) {
+
+        int i = names.indexOf(challenger);
+        if(i == -1) throw new IllegalArgumentException("No such entrant: " + challenger);
+
+        List<int[]> games = new ArrayList<>();
+        for(int j = 0; j < names.size(); j++) {
+            if(j != i) schedule(games, i, j, gamesPerOpponent);
+        }
+        return run(games);
+    }
+
+    /**
+     * Plays a single game between two entrants on the calling thread.
+     * @param player1 the index of the entrant to move first.
+     * @param player2 the index of the entrant to move second.
+     * @return the ID of the winner (1 or 2), 0 for a draw, or the negated ID
+     * of a player which forfeit the game by throwing an exception.
+     */
+    public int play(int player1, int player2) {
+
+        //Run headless on this thread, without affecting games constructed elsewhere.
+        Player<G> first = bots.get(player1).get(), second = bots.get(player2).get();
+        G game = new Options().setHeadless(true).setSynchronous(true)
+                .create(() -> factory.apply(first, second));
+        if(clock != null) game.setClock(clock.get());
+
+        try {
+            for(int turn = 0; game.step(); turn++) {
+                
+                //Declare a draw at the turn limit, letting the players know the game is over.
+                if(maxTurns != -1 && turn + 1 >= maxTurns) {
+                    game.declareDraw();
+                    game.step();
+                    return 0;
+                }
+            }
+        } catch(RuntimeException e) {
+            e.printStackTrace(out);
+            return -game.getCurrentPlayerId();
+        }
+        return Math.max(game.getWinnerId(), 0);
+    }
+
+    /**
+     * @param name the name of an entrant.
+     * @return the index of the entrant, or -1 if there is none.
+     */
+    public int indexOf(String name) { return names.indexOf(name); }
+
+    /**
+     * @return the names of all entrants, in the order they were added.
+     */
+    public List<String> getNames() { return new ArrayList<>(names); }
+
+    /**
+     * @return the number of games to play simultaneously.
+     */
+    int getThreads() { return numThreads; }
+
+    /**
+     * @return the stream to which progress and results are reported.
+     */
+    PrintStream getOut() { return out; }
+
+    /**
+     * Runs the given code with anything printed to standard output discarded, if quiet.<br>
+     * Progress and results are still reported, as the stream used for them
+     * is saved when the arena is constructed.
+     * @param task the code to run.
+     */
+    void runQuietly(Runnable task) {
+
+        PrintStream original = System.out;
+        if(quiet) System.setOut(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {}
+        }));
+        try {
+            task.run();
+        } finally {
+            System.setOut(original);
+        }
+    }
+
+    /**
+     * Adds games between two entrants to the schedule, alternating colours.
+     * @param games the schedule of games, as pairs of entrant indices.
+     * @param i the index of the first entrant.
+     * @param j the index of the second entrant.
+     * @param numGames the number of games to add.
+     */
+    private static void schedule(List<int[]> games, int i, int j, int numGames) {
+        for(int n = 0; n < numGames; n++) {
+            games.add(n % 2 == 0 ? new int[] {i, j} : new int[] {j, i});
+        }
+    }
+
+    /**
+     * Plays all of the given games in parallel, reporting progress as they finish.
+     * @param games the schedule of games, as pairs of entrant indices.
+     * @return the final standings.
+     */
+    private Standings run(List<int[]> games) {
+
+        Standings standings = new Standings(getNames());
+
+        runQuietly(() -> {
+
+            ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+            int interval = Math.max(games.size() / 20, 1);
+
+            for(int[] pair : games) {
+                executor.execute(() -> {
+
+                    int result = play(pair[0], pair[1]);
+
+                    //A player which throws an exception forfeits the game.
+                    int winnerId = result < 0 ? 3 + result : result;
+                    standings.record(pair[0], pair[1], winnerId, result < 0);
+
+                    int played = standings.getNumGames();
+                    if(played % interval == 0) {
+                        out.printf("%d/%d games (%.2f/s)%n", played,
+                                games.size(), standings.getGamesPerSecond());
+                    }
+                });
+            }
+
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch(InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        out.println("=======================");
+        out.print(standings);
+        return standings;
+    }
+}
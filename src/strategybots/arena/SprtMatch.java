@@ -0,0 +1,249 @@
+package strategybots.arena;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import strategybots.games.base.Game;
+
+/**
+ * Match between a candidate bot and a baseline bot, which stops as soon as
+ * a sequential probability ratio test (SPRT) decides the result.<br>
+ * <br>
+ * The test compares two hypotheses about the Elo difference of the candidate
+ * over the baseline: H0, that it is at most 'elo0', and H1, that it is at least
+ * 'elo1'. After each game, the log-likelihood ratio (LLR) of the two hypotheses
+ * is updated, and the match ends once it leaves the range determined by the
+ * allowed false positive (alpha) and false negative (beta) rates. The LLR uses
+ * the usual normal approximation of the trinomial (win/draw/loss) distribution.<br>
+ * <br>
+ * Games are played in parallel by the worker threads of the given 'Arena',
+ * alternating which bot moves first.
+ *
+ * @author Alec Dorrington
+ */
+public class SprtMatch<G extends Game> {
+
+    /** The possible outcomes of a match. */
+    public enum Outcome {
+        /** The candidate is better by at least 'elo1' (H1 accepted). */
+        PASSED,
+        /** The candidate is better by at most 'elo0' (H0 accepted). */
+        FAILED,
+        /** The maximum number of games was reached before the test was decided. */
+        INCONCLUSIVE
+    }
+
+    /** The arena in which to play the games. */
+    private final Arena<G> arena;
+
+    /** The indices of the candidate and the baseline in the arena. */
+    private final int candidate, baseline;
+
+    /** The Elo differences of hypotheses H0 and H1. */
+    private double elo0 = 0, elo1 = 5;
+
+    /** The allowed probabilities of accepting H1 when H0 is true, and vice versa. */
+    private double alpha = 0.05, beta = 0.05;
+
+    /** The maximum number of games to play before giving up. */
+    private int maxGames = 100_000;
+
+    /** The number of wins, draws and losses of the candidate. */
+    private final int[] results = new int[3];
+
+    /** The outcome of the match, or null while the match is undecided. */
+    private volatile Outcome outcome = null;
+
+    /**
+     * Constructs a new match between two entrants of an arena.
+     * @param arena the arena in which to play the games.
+     * @param candidate the name of the bot being tested.
+     * @param baseline the name of the bot to compare against.
+     */
+    public SprtMatch(Arena<G> arena, String candidate, String baseline) {
+
+        this.arena = arena;
+        this.candidate = arena.indexOf(candidate);
+        this.baseline = arena.indexOf(baseline);
+
+        if(this.candidate == -1) throw new IllegalArgumentException("No such entrant: " + candidate);
+        if(this.baseline == -1) throw new IllegalArgumentException("No such entrant: " + baseline);
+    }
+
+    /**
+     * @param elo0 the Elo difference of H0 (default 0).
+     * @param elo1 the Elo difference of H1 (default 5).
+     * @return this match.
+     */
+    public SprtMatch<G> setElo(double elo0, double elo1) {
+        this.elo0 = elo0;
+        this.elo1 = elo1;
+        return this;
+    }
+
+    /**
+     * @param alpha the allowed false positive rate (default 0.05).
+     * @param beta the allowed false negative rate (default 0.05).
+     * @return this match.
+     */
+    public SprtMatch<G> setErrors(double alpha, double beta) {
+        this.alpha = alpha;
+        this.beta = beta;
+        return this;
+    }
+
+    /**
+     * @param maxGames the maximum number of games to play before giving up.
+     * @return this match.
+     */
+    public SprtMatch<G> setMaxGames(int maxGames) {
+        this.maxGames = maxGames;
+        return this;
+    }
+
+    /**
+     * Plays games until the test is decided or the maximum number of games is reached.
+     * @return the outcome of the match.
+     */
+    public Outcome run() {
+
+        AtomicInteger scheduled = new AtomicInteger();
+        Thread[] threads = new Thread[arena.getThreads()];
+
+        arena.runQuietly(() -> {
+
+            for(int i = 0; i < threads.length; i++) {
+
+                threads[i] = new Thread(() -> {
+
+                    int n;
+                    while(outcome == null && (n = scheduled.getAndIncrement()) < maxGames) {
+
+                        //Alternate which bot moves first.
+                        boolean first = n % 2 == 0;
+                        int result = first ? arena.play(candidate, baseline)
+                                : arena.play(baseline, candidate);
+
+                        //Convert to a winner ID from the perspective of the candidate.
+                        int winnerId = result < 0 ? 3 + result : result;
+                        if(!first && winnerId != 0) winnerId = 3 - winnerId;
+                        record(winnerId);
+                    }
+                }, "SPRT Worker " + i);
+                threads[i].start();
+            }
+
+            for(Thread thread : threads) {
+                try {
+                    thread.join();
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        synchronized(this) {
+            if(outcome == null) outcome = Outcome.INCONCLUSIVE;
+            arena.getOut().println("=======================");
+            arena.getOut().println(this);
+        }
+        return outcome;
+    }
+
+    /**
+     * @return the outcome of the match, or null if it hasn't been decided.
+     */
+    public Outcome getOutcome() { return outcome; }
+
+    /**
+     * @return the number of games which counted towards the result.
+     */
+    public synchronized int getNumGames() { return results[0] + results[1] + results[2]; }
+
+    /**
+     * @return the number of wins, draws and losses of the candidate.
+     */
+    public synchronized int[] getResults() { return Arrays.copyOf(results, 3); }
+
+    /**
+     * The results are regularised by one extra win and one extra loss, such that the
+     * variance is never zero and a candidate which wins or draws every game still passes.
+     * @return the log-likelihood ratio of H1 over H0 given the results so far.
+     */
+    public synchronized double getLLR() {
+
+        int games = getNumGames();
+        if(games == 0) return 0;
+
+        double total = games + 2;
+        double wins = (results[0] + 1) / total;
+        double draws = results[1] / total;
+        double losses = (results[2] + 1) / total;
+        double score = wins + draws / 2;
+
+        //Variance of the score of a single game.
+        double variance = wins * Math.pow(1 - score, 2) + draws * Math.pow(0.5 - score, 2)
+                + losses * Math.pow(score, 2);
+
+        double score0 = expectedScore(elo0), score1 = expectedScore(elo1);
+        return games * (score1 - score0) * (2 * score - score0 - score1) / (2 * variance);
+    }
+
+    /**
+     * @return the estimated Elo difference of the candidate over the baseline.
+     */
+    public synchronized double getElo() {
+
+        int games = getNumGames();
+        double score = (results[0] + results[1] / 2.0) / Math.max(games, 1);
+        score = Math.min(Math.max(score, 0.001), 0.999);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * @return a summary of the results and the state of the test.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%s vs %s: %d games, +%d =%d -%d, Elo %+.1f, LLR %.2f [%.2f, %.2f]%s",
+                arena.getNames().get(candidate), arena.getNames().get(baseline), getNumGames(),
+                results[0], results[1], results[2], getElo(), getLLR(), lowerBound(), upperBound(),
+                outcome == null ? "" : ", " + outcome);
+    }
+
+    /**
+     * Records the result of a game, and ends the match if the test is decided.
+     * @param winnerId 1 if the candidate won, 2 if the baseline won, or 0 for a draw.
+     */
+    private synchronized void record(int winnerId) {
+
+        //Games finishing after the decision are ignored.
+        if(outcome != null) return;
+
+        results[winnerId == 1 ? 0 : winnerId == 2 ? 2 : 1]++;
+
+        double llr = getLLR();
+        if(llr >= upperBound()) outcome = Outcome.PASSED;
+        else if(llr <= lowerBound()) outcome = Outcome.FAILED;
+
+        if(getNumGames() % 100 == 0 && outcome == null) arena.getOut().println(this);
+    }
+
+    /**
+     * @return the LLR below which H0 is accepted.
+     */
+    private double lowerBound() { return Math.log(beta / (1 - alpha)); }
+
+    /**
+     * @return the LLR above which H1 is accepted.
+     */
+    private double upperBound() { return Math.log((1 - beta) / alpha); }
+
+    /**
+     * @param elo an Elo difference.
+     * @return the expected score of a player with this advantage.
+     */
+    private static double expectedScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+}
@@ -0,0 +1,164 @@
+package strategybots.arena;
+
+import java.util.List;
+
+/**
+ * The accumulated results of the games played in an 'Arena'.<br>
+ * <br>
+ * Results are recorded between each pair of entrants, regardless of colour.
+ * May be updated and read concurrently.
+ *
+ * @author Alec Dorrington
+ */
+public class Standings {
+
+    /** Indices into the result of a pairing. */
+    private static final int WINS = 0, DRAWS = 1, LOSSES = 2;
+
+    /** The names of the entrants. */
+    private final List<String> names;
+
+    /** The number of wins, draws and losses of each entrant against each other entrant. */
+    private final int[][][] results;
+
+    /** The number of games which ended with a player throwing an exception. */
+    private int errors = 0;
+
+    /** The time at which the first game began, in milliseconds. */
+    private final long startTime = System.currentTimeMillis();
+
+    /** The time at which the most recent game finished, in milliseconds. */
+    private long endTime = startTime;
+
+    /**
+     * Constructs new empty standings.
+     * @param names the names of the entrants.
+     */
+    Standings(List<String> names) {
+        this.names = names;
+        results = new int[names.size()][names.size()][3];
+    }
+
+    /**
+     * Records the result of a game.
+     * @param player1 the index of the entrant who played first.
+     * @param player2 the index of the entrant who played second.
+     * @param winnerId the ID of the winner (1 or 2), or 0 for a draw.
+     * @param error whether the game ended with a player throwing an exception.
+     */
+    synchronized void record(int player1, int player2, int winnerId, boolean error) {
+
+        int result = winnerId == 1 ? WINS : winnerId == 2 ? LOSSES : DRAWS;
+        results[player1][player2][result]++;
+        results[player2][player1][2 - result]++;
+        if(error) errors++;
+        endTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param entrant the index of an entrant.
+     * @param opponent the index of the opponent.
+     * @return the number of games won by the entrant against the opponent.
+     */
+    public synchronized int getWins(int entrant, int opponent) {
+        return results[entrant][opponent][WINS];
+    }
+
+    /**
+     * @param entrant the index of an entrant.
+     * @param opponent the index of the opponent.
+     * @return the number of games drawn between the entrant and the opponent.
+     */
+    public synchronized int getDraws(int entrant, int opponent) {
+        return results[entrant][opponent][DRAWS];
+    }
+
+    /**
+     * @param entrant the index of an entrant.
+     * @param opponent the index of the opponent.
+     * @return the number of games lost by the entrant against the opponent.
+     */
+    public synchronized int getLosses(int entrant, int opponent) {
+        return results[entrant][opponent][LOSSES];
+    }
+
+    /**
+     * @return the total number of games played.
+     */
+    public synchronized int getNumGames() {
+
+        int games = 0;
+        for(int i = 0; i < names.size(); i++) {
+            for(int j = 0; j < names.size(); j++) {
+                for(int result : results[i][j]) games += result;
+            }
+        }
+        return games / 2;
+    }
+
+    /**
+     * @return the number of games which ended with a player throwing an exception.
+     */
+    public synchronized int getNumErrors() { return errors; }
+
+    /**
+     * @return the average number of games completed per second.
+     */
+    public synchronized double getGamesPerSecond() {
+        return 1000.0 * getNumGames() / Math.max(endTime - startTime, 1);
+    }
+
+    /**
+     * @return a table of the total wins, draws and losses of each entrant,
+     * followed by the result of each pairing.
+     */
+    @Override
+    public synchronized String toString() {
+
+        StringBuilder sb = new StringBuilder();
+        int width = 4;
+        for(String name : names) width = Math.max(width, name.length());
+
+        sb.append(String.format("%-" + width + "s  %6s  %6s  %6s  %6s%n",
+                "Name", "Wins", "Draws", "Losses", "Score"));
+
+        for(int i = 0; i < names.size(); i++) {
+
+            int[] total = new int[3];
+            for(int j = 0; j < names.size(); j++) {
+                for(int r = 0; r < 3; r++) total[r] += results[i][j][r];
+            }
+            sb.append(format(names.get(i), width, total));
+        }
+
+        sb.append(System.lineSeparator());
+
+        for(int i = 0; i < names.size(); i++) {
+            for(int j = i + 1; j < names.size(); j++) {
+
+                int[] result = results[i][j];
+                if(result[WINS] + result[DRAWS] + result[LOSSES] == 0) continue;
+                sb.append(format(names.get(i) + " vs " + names.get(j), width, result));
+            }
+        }
+
+        sb.append(String.format("%nGames: %d (%.2f/s), errors: %d%n",
+                getNumGames(), getGamesPerSecond(), errors));
+        return sb.toString();
+    }
+
+    /**
+     * @param name the label of the row.
+     * @param width the minimum width of the label.
+     * @param result the wins, draws and losses.
+     * @return a single row of the table.
+     */
+    private static String format(String name, int width, int[] result) {
+
+        int games = result[WINS] + result[DRAWS] + result[LOSSES];
+        double score = (result[WINS] + 0.5 * result[DRAWS]) / Math.max(games, 1);
+
+        return String.format("%-" + width + "s  %6d  %6d  %6d  %5.1f%%%n", name,
+                result[WINS], result[DRAWS], result[LOSSES], 100 * score);
+    }
+}
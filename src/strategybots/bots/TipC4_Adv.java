@@ -3,9 +3,12 @@ package strategybots.bots;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
+import strategybots.bots.mcts.ConnectFourPlayout;
 import strategybots.games.ConnectFour;
 import strategybots.games.base.Game.Player;
+import strategybots.games.bitboard.MNKBitboard;
 
 public class TipC4_Adv implements Player<ConnectFour> {
     
@@ -20,6 +23,10 @@ public class TipC4_Adv implements Player<ConnectFour> {
     
     private Node root = null;
     
+    /** Shared rules engine, using the same 7-bit column layout as the bitmaps below. */
+    private static final MNKBitboard RULES = new MNKBitboard(7, 6, 4, true);
+    private static final ConnectFourPlayout PLAYOUT = new ConnectFourPlayout(7, 6);
+    
     public TipC4_Adv() {}
     
     public TipC4_Adv(long time) { this.time = time; }
@@ -159,19 +166,10 @@ public class TipC4_Adv implements Player<ConnectFour> {
      
     private boolean isFull(long mask) {
     	
-    	return getValidMoves(mask).size() == 0;
+    	return (mask & PLAYOUT.getBoardMask()) == PLAYOUT.getBoardMask();
     	
     }
     
-	private int getRandomMove(long mask) {
-		
-		ArrayList<Integer> moves = getValidMoves(mask);
-		
-		int index = rand.nextInt(moves.size());
-		return moves.get(index);
-		
-	}
-	
 	private ArrayList<Integer> getValidMoves(long mask) {
 		
 		ArrayList<Integer> moves = new ArrayList<Integer>();
@@ -246,43 +244,19 @@ public class TipC4_Adv implements Player<ConnectFour> {
     
     // Returns 0 for draw, 1 for win 1, and b+1 for win 2
     private Integer moveResult(Node tempNode) {
-    	Integer result = 0;
     	
-    	int playerMove = tempNode.player;
-    	int xMove = 0, yMove = 0;
-    	// Check if the opposition has just placed a winning piece and the board is not Full
+    	// Check if the opposition has just placed a winning piece or the board is full
     	int winner = getWinner(tempNode.position, tempNode.mask, tempNode.player);
-    	boolean isFull = isFull(tempNode.mask);
     	
-    	//System.out.println("Entered");
-    	// Continue until someone wins
-    	while (winner == 0 && !isFull) {
-    		
-    		// Starting at the base child node, select a move and update the playerID and last position as well as board
-    		// Get column move, randomly
-    		xMove = getRandomMove(tempNode.mask);
-    		
-    		yMove = getStackSize(tempNode.mask, xMove);
-    		
-    		//System.out.println("No winner " + xMove + " " + yMove);
-    		// do move and swap PlayerID
-    		playerMove = 3 - tempNode.player;
-    		tempNode.position ^= tempNode.mask;
-    		tempNode.mask |= (tempNode.mask + (1l << (xMove * 7)));
-    		tempNode.x = xMove;
-    		tempNode.y = yMove;
-    		tempNode.player = playerMove;
-
-    		// Update the terminal condition
-    		winner = getWinner(tempNode.position, tempNode.mask, tempNode.player);
-        	isFull = isFull(tempNode.mask);
+    	// Otherwise play out the rest of the game on bitboards
+    	if (winner == 0 && !isFull(tempNode.mask)) {
+    		int result = PLAYOUT.play(tempNode.position, tempNode.mask, ThreadLocalRandom.current().nextLong());
+    		winner = result > 0 ? tempNode.player : result < 0 ? 3 - tempNode.player : 0;
     	}
     	
-    	// Check if the last valid move in the rollout was ours, and a win
-    	if (winner == 1) { result += 1; }
-    	if (winner == 2) { result += (b+1); }
-    	
-    	return result;
+    	if (winner == 1) { return 1; }
+    	if (winner == 2) { return b+1; }
+    	return 0;
     }
     
     public int[] rollout(Node child) {
@@ -388,32 +362,7 @@ public class TipC4_Adv implements Player<ConnectFour> {
     }
     
 	public boolean isWin(long pos) {
-		
-		// Horiz
-		long m = pos & (pos >> 7);
-		if ((m & (m >> 14)) >= 1) { 
-			return true;
-		}
-
-		// Diag \
-		m = pos & (pos >> 6);
-		if ((m & (m >> 12)) >= 1) { 
-			return true;
-		}
-		
-		// Diag / 
-		m = pos & (pos >> 8);
-		if ((m & (m >> 16)) >= 1) { 
-			return true;
-		}
-		
-		// Vert
-		m = pos & (pos >> 1);
-		if ((m & (m >> 2)) >= 1) { 
-			return true;
-		}
-		
-		return false;
+		return RULES.isWin(pos);
 	}
 	
 	public long[] placePiece(long pos, long mas, int col) {
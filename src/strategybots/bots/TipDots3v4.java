@@ -15,6 +15,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
+import strategybots.bots.search.TimeManager;
 import strategybots.games.DotsAndBoxes;
 import strategybots.games.DotsAndBoxes.Side;
 import strategybots.games.base.Game.Player;
@@ -31,6 +32,11 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 	private int width, height;
 	private int topMoves, topDepth;
 	
+	// Deadline polling, checked once every POLL_INTERVAL nodes
+	private static final int POLL_INTERVAL = 256;
+	private long deadline, nodes;
+	private boolean aborted;
+	
 	// Zobrist Variables
 	Zobrist zobrist;
 	
@@ -73,10 +79,20 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 		Board board = getGraph(game, playerId);
 		int[] scores = getScores(game);
 		
+		// Spend less time on stable or forced moves, and never more than the clock allows
+		int numEdges = board.getEdges().size();
+		TimeManager manager = new TimeManager(game, playerId, time, (numEdges + 1) / 2, numEdges);
+		manager.setScoreMargin(1);
+		
 		List<Edge> bestEdges = null;
-		int depth = 1, score = 0;
+		int depth = 1, score = 0, completedDepth = 0;
 		maxDepth = board.getEdges().size() + 1;
 		
+		// The first iteration always runs to completion, so that there is a move to play
+		deadline = Long.MAX_VALUE;
+		nodes = 0;
+		aborted = false;
+		
 		// Use iterative deepening to run negaMax until the board is searched or we run out of time.
         for(; depth <= maxDepth; depth++) {
         	
@@ -85,15 +101,20 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
         	topMoves = board.edges.size();
         	topDepth = depth;
         	Triple result = negamax(board.verts, board.edges, scores, playerId, depth, -Integer.MAX_VALUE, Integer.MAX_VALUE);
+        	
+        	// An aborted iteration is discarded, keeping the last completed one
+        	if (aborted) break;
         	score = result.score;
         	bestEdges = result.edges;
+        	completedDepth = depth;
+        	deadline = manager.getDeadline();
         	
-        	if(System.currentTimeMillis()-start > time) break;
+        	if(manager.shouldStop(bestEdges.isEmpty() ? -1 : bestEdges.get(0).UID, score)) break;
         }
 
         // Execute the best move and then display stats about this turn
 		playMove(game, bestEdges);
-		printStats(score, playerId, bestEdges, depth, start);
+		printStats(score, playerId, bestEdges, completedDepth, start);
 	}
 	
 	/**
@@ -207,6 +228,12 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 	 */
 	private Triple negamax(Set<Vertex> verts, List<Edge> edges, int[] captures, int playerId, int depth, int alpha, int beta) {
 		
+		// Abort the search once the deadline has passed
+		if (aborted || (++nodes % POLL_INTERVAL == 0 && System.currentTimeMillis() >= deadline)) {
+			aborted = true;
+			return new Triple(0, null);
+		}
+		
 		// Save original alpha
 		int previousAlpha = alpha;
 		
@@ -276,6 +303,12 @@ public class TipDots3v4 implements Player<DotsAndBoxes>{
 				}           		
 			}
 			
+			// Undo the move and leave the result of an aborted search unused
+			if (aborted) {
+				predecessor(move, captures, playerId);
+				return new Triple(0, null);
+			}
+			
 			// Update scores or set the score to the first element when first run
             if(s > score || bestMove == null ) {
                 score = s;
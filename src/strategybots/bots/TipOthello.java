@@ -6,27 +6,41 @@ package strategybots.bots;
  * A MCTS based Othello bot. Currently still in the debug and dev phase, however still plays well against a moderate human.
  */
 
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Random;
-import java.util.Set;
-
+import strategybots.bots.mcts.MonteCarloSearch;
+import strategybots.bots.mcts.MonteCarloSearch.Result;
+import strategybots.bots.mcts.NodePool;
+import strategybots.bots.search.AlphaBetaSearch;
+import strategybots.bots.search.ParallelSearch;
+import strategybots.bots.search.ReversiEvaluator;
+import strategybots.bots.search.ReversiPosition;
+import strategybots.bots.search.ReversiSolver;
+import strategybots.bots.search.Ponderer;
+import strategybots.bots.search.TimeManager;
+import strategybots.bots.search.TranspositionTable;
 import strategybots.games.Reversi;
+import strategybots.games.bitboard.ReversiBitboard;
 import strategybots.games.base.Game.Player;
 
 public class TipOthello implements Player<Reversi>{
 
 	private long time = 2000l;
-	private Random rand;
-	private int globalSims = 0;
-	private static float learningRate = 1.41f;
-	private static int branch = 64;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private int poolSize = 64;  // Megabytes
+	private NodePool pool = null;
+	private final Ponderer ponderer = new Ponderer();
+	private boolean pondering = false;
+	private int turn = 1;
+	
+	// Positions with at most this many empty tiles are solved exactly instead
+	private int endgameEmpties = 16;
+	private TranspositionTable endgameTable = null;
 	
-    private Node root = null;
+	// Pattern evaluation for an alpha-beta search of the middle game, or null to use MCTS
+	private ReversiEvaluator evaluator = null;
+	private int tableSize = 32;  // Megabytes
+	private TranspositionTable table = null;
 	
 	public TipOthello() {
-		rand = new Random();
 		System.out.println("Tip's Othello Bot Loaded");
 	}
 	
@@ -35,601 +49,208 @@ public class TipOthello implements Player<Reversi>{
 		this.time = millis;
 	}
 	
-	@Override
-	public void takeTurn(Reversi game, int playerId) {
-
-		long start = System.currentTimeMillis();
-		int[][] board = getBoard(game);
-        
-        globalSims = 0;
-        
-        Vec2 move = UCTSearch(board, playerId); //bestMove(board, playerId);
-        
-        for (Node child : root.children) {
-        	if (child == null) {
-        		System.out.println("Root's Child is null");
-        	} else {
-        		System.out.println("Root's Child has [" + child.wins[1] + " / " + child.wins[2] + "] of " + child.sims);
-        	}
-        }
-	            
-        game.placeDisc(move.x, move.y);
-		printStats(playerId, move, start, bestChild(root));
-		
+	public TipOthello(long millis, int threads) {
+		this(millis);
+		this.threads = threads;
 	}
 	
-	//Done
-	private Vec2 UCTSearch(int[][] board, int playerId) {
-		long start = System.currentTimeMillis();
-		int opp = 3-playerId;
-		root = new Node(board, opp, 0, 0);
-		root.populateChildren();
-		
-		// use up all the time
-		while (System.currentTimeMillis() - start < time) {
-
-			Node leaf = treePolicy(root);
-			
-			int[] result = defaultPolicyMulti(leaf);
-			leaf.visited = true;
-			
-			backup(leaf, result);
-		}
-		
-		return bestChild(root).move;
+	/**
+	 * @param pondering whether to search during the opponent's turn (default false).
+	 * @return this bot.
+	 */
+	public TipOthello setPondering(boolean pondering) {
+		this.pondering = pondering;
+		return this;
 	}
 	
-	//Done
-	private Node treePolicy(Node nodeIn) {
-		
-		Node node = nodeIn;
-		
-		if (node != null) {
-			while (generateTerminal(node) == -1) {
-							
-				if (node.hasUnexploredChildren()) {
-					
-					//System.out.println(node.pieces[0] + ", " + node.pieces[1]);
-					Node temp = expand(node);
-					if (temp == null) System.out.println("we got him boys");
-					return temp;
-					
-				} else {
-					
-					// This is some hacky workaround for a problem I dont understand
-					if (node.children.size() == 0) {
-						
-						// Swap Players
-						if (!node.subTerminal) {
-							Node flipChild = new Node(node.getBoard(), 3-node.player, node.move);
-							flipChild.pieces[0] = node.pieces[0];
-							flipChild.pieces[1] = node.pieces[1];
-							flipChild.subTerminal = true;
-							node.children.add(flipChild);
-						} else { 
-							node.terminal = node.pieces[0] > node.pieces[1] ? 1 : (node.pieces[0] == node.pieces[1] ? 0 : 2);
-						}
-
-					}
-					
-					Node temp = bestChildUTC(node);
-					if (temp == null) {
-						//System.out.println("better luck next time");
-						//System.out.println(node.pieces[0] + " , " + node.pieces[1]);
-						return node;
-					}
-					node = temp;
-				}
-							
-			}
-		}
-		
-		return node;
+	/**
+	 * @param endgameEmpties the number of empty tiles at or below which the rest of the
+	 * game is solved exactly, or 0 to always use MCTS (default 16).
+	 * @return this bot.
+	 */
+	public TipOthello setEndgameEmpties(int endgameEmpties) {
+		this.endgameEmpties = endgameEmpties;
+		return this;
 	}
 	
-	//Done
-	private Node expand(Node parent) {
-		
-		ArrayList<Node> children = parent.getUnexploredChildren();
-		int rando = rand.nextInt(children.size());
-		
-		Node child = children.get(rando);
-		child.visited = true;
-		
-		if (generateTerminal(child) == -1) { child.populateChildren(); }
-		
-		return child;
-		
+	/**
+	 * @param evaluator the pattern evaluation with which to search the middle game
+	 * using alpha-beta instead of MCTS, on the standard 8x8 board, or null to always
+	 * use MCTS (default null). See 'ReversiEvaluator.load()'.
+	 * @return this bot.
+	 */
+	public TipOthello setEvaluator(ReversiEvaluator evaluator) {
+		this.evaluator = evaluator;
+		return this;
 	}
 	
-	//Done
-	private Node bestChildUTC(Node parent) {
-		
-		Node bestChild = null;
-		double bestChildValue = -1.0f;
-		
-		if (parent.children.size() == 0) System.out.println("There are " + parent.children.size() + " childs");
-		
-		for (Node child : parent.children) {
-			
-			int parentSims = (child.parent == null ? globalSims : parent.sims) ;
-			double value = (child.wins[parent.player] / (double)child.sims) + learningRate * Math.sqrt(2.0 * Math.log(parentSims) / (double)child.sims);
-			
-			if (value > bestChildValue) {
-				bestChildValue = value;
-				bestChild = child;
-			}
-		}
-	
-		return bestChild;
+	/**
+	 * @param megabytes the memory used for the MCTS tree (default 64).
+	 * @return this bot.
+	 */
+	public TipOthello setPoolSize(int megabytes) {
+		this.poolSize = megabytes;
+		pool = null;
+		return this;
 	}
 	
-	private int[] defaultPolicyMulti(Node leafIn) {
-		int[] reward = new int[4];
-		
-		int player = 3-leafIn.player;
-		ArrayList<Vec2> moves = getValidPositions(leafIn.getBoard(), player);
-		reward[3] = moves.size();
-		
-		Integer multiResult = moves
-	    		.parallelStream()
-	    		.map(x -> defaultPolicy(leafIn, x))	
-	    		.reduce(0, (r1, r2) -> r1 + r2);
-	    	
-    	reward[1] = multiResult % (branch+1);
-    	reward[2] = multiResult / (branch+1);
-    	
-    	reward[0] = reward[3] - reward[1] - reward[2];
-    	
-    	globalSims += reward[3];
-		
-		return reward;
-		
+	/**
+	 * @param megabytes the memory used for the transposition table of the
+	 * pattern search (default 32).
+	 * @return this bot.
+	 */
+	public TipOthello setTableSize(int megabytes) {
+		this.tableSize = megabytes;
+		table = null;
+		return this;
 	}
 	
-	// Done
-	private int defaultPolicy(Node leafIn, Vec2 move) {
-		
-		Node leaf = new Node(leafIn.getBoard(), leafIn.player, leafIn.move);
-		
-		int reward = 0;
-
-		int terminal = generateTerminal(leaf);
-				
-		while (terminal == -1) {
-						
-			int player = 3-leaf.player;
+	@Override
+	public void init(Reversi game, int playerId) {
 		
-			if (move != null) {
-				
-				Set<Vec2> toFlip = getFlipped(leaf.getBoard(), player, move);
-				
-				leaf.getBoard()[move.x][move.y] = player;
-	    		leaf.pieces[player-1]++;
-	    		
-	    		for (Vec2 stone : toFlip) {
-	    			leaf.getBoard()[stone.x][stone.y] = player;
-	    			leaf.pieces[player-1]++;
-	    			leaf.pieces[(3-player)-1]--;
-	    		}	
-
-			}
-
-			leaf.player = player;
-	    	terminal = generateTerminal(leaf);
-	    	
+		// Allocate only what this game can use, once it begins
+		if(pool == null) pool = new NodePool(poolSize);
+		if(endgameTable == null && endgameEmpties > 0
+				&& ReversiBitboard.fits(game.getWidth(), game.getHeight())) {
+			endgameTable = new TranspositionTable(16);
 		}
-		
-    	if (terminal == 1) reward += 1;
-    	if (terminal == 2) reward += (branch+1);
-
-		return reward;
+		if(table == null && usePatterns(game)) table = new TranspositionTable(tableSize);
 	}
 	
-	// Done
-	private void backup(Node childIn, int[] result) {
-		
-		Node child = childIn;
+	@Override
+	public void takeTurn(Reversi game, int playerId) {
+
+		long start = System.currentTimeMillis();
 		
-		do {
-			child.sims += result[3];
-			child.updateWins(result);
-			
-			child = child.parent;
-		} while (child != null);
-	}
-	
-    // Get the bets child based on Wins / Sims
-    private Node bestChild(Node root) {
-    	
-    	Node maxChild = null; 
-    	float maxChildValue = -1.f;
-    	int player = 3-root.player;
-    	
-    	for (Node child : root.getChildren()) {
-    		
-    		float myWins = child.wins[player] + 0.0001f;
-			float mySims = child.sims + 0.0001f;
-			float finalScore = (float)myWins / (float)mySims;
-			
-			if (finalScore > maxChildValue) {
-				maxChild = child;
-				maxChildValue = finalScore;
-			}
-    	}
-    	
-    	return maxChild;
-    }
-    
-    
-	private ArrayList<Vec2> getValidPositions(int[][] board, int player) {
-		ArrayList<Vec2> adj = new ArrayList<Vec2>();
+		ReversiPosition position = new ReversiPosition(game.getState());
+		int numMoves = position.getMoves(new int[position.getMaxMoves()]);
+		TimeManager manager = new TimeManager(game, playerId, time,
+				(position.getMaxMoves() - 4) / 2 - turn++ + 1, numMoves);
 		
-        int[][] dirs = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
-        int[] signs = new int[] {-1, 1};
+		if(solveEndgame(game, playerId, position, manager, start)) return;
 		
-        int width = board.length;
-        int height = board[0].length;
-        int opp = 3-player;
-        
-		for (int x = 0 ; x < width; x++) {
-			for (int y = 0 ; y < height; y++) {
-				
-				if (board[x][y] != 0) continue;
-				
-				int streak = 0;
-				
-		        for(int[] dir : dirs) {
-		        	
-		            for(int sign : signs) {
-		                
-		            	int substreak = 0;
-		            	
-		                for(int i = 1; i < width; i++) {
-		                    
-		                    int xx = x+i*dir[0]*sign;
-		                    int yy = y+i*dir[1]*sign;
-		                    
-		                    if(xx < 0 || xx >= width) break;
-		                    if(yy < 0 || yy >= height) break;
-		                    
-		                    if(board[xx][yy] != opp) {
-		                    	if (board[xx][yy] == player && substreak > 0) {
-				                	streak += substreak;
-				                }
-		                    	break;
-		                    }
-		                    
-		                    substreak++;
-		                }
-		            }
-		        }
-		        
-		        if (streak > 0) {
-		        	adj.add(new Vec2(x, y, streak));
-		        }
-			}
-		}
+		// Give the search whatever time the solver left, measured afresh from now
+		manager = manager.remaining();
+		if(searchPatterns(game, playerId, manager, start)) return;
 		
-		return adj;
+		Result result = new MonteCarloSearch(position, pool, threads).search(manager);
+		int x = position.getState().getX(result.getMove());
+		int y = position.getState().getY(result.getMove());
+	            
+        game.placeDisc(x, y);
+		printStats(playerId, x, y, start, result);
 	}
 	
-    /**
-     * Determines which discs are to be captured if a disc
-     * is placed at the given position by the given player.
-     * @param board the int array board
-     * @param playerId the ID of the player making the move.
-     * @param x the x position the disc is placed at.
-     * @param y the y position the disc is placed at.
-     * @return a set of all the opponent discs which are captured, if any.
-     */
-    private Set<Vec2> getFlipped(int[][] board, int playerId, Vec2 move) {
-        
-        Set<Vec2> flipped = new HashSet<>(), pending = new HashSet<>();
-        
-        //For each direction in which to check for captures.
-        for(int i = -1; i <= 1; i++) {
-            j_loop: for(int j = -1; j <= 1; j++) {
-                
-                if(i == 0 && j == 0) continue;
-                
-                pending.clear();
-                
-                //Continue searching in this direction.
-                for(int dist = 1;; dist++) {
-                    
-                    //Determine the current position to check for a disc.
-                    //Position = Placement + Direction * Distance.
-                    int xx = move.x + i * dist;
-                    int yy = move.y + j * dist;
-                    
-                    //If this tile is in bounds and not empty.
-                    if(xx >= 0 && xx < board.length && yy >= 0 && yy < board[0].length
-                            && board[xx][yy] != 0) {
-                        
-                        //If this tile is occupied by the opponent player.
-                        if(board[xx][yy] != playerId) {
-                            //Add the disc to the set of discs which MIGHT be added.
-                            pending.add(new Vec2(xx, yy));
-                            
-                        //If this tile is occupied by the current player.
-                        } else {
-                            //An enclosed chain has been found.
-                            flipped.addAll(pending);
-                            continue j_loop;
-                        }
-                    //Empty tile/edge of board has been reached before a friendly piece.
-                    } else continue j_loop;
-                }
-            }
-        }
-        return flipped;
-    }
-    
-	// Play move
-	public Node generateChild(Node parent, Vec2 move) {
-		
-		// encode new child with its ID, a Move and a tempBoard.
-		Node newChild = new Node(parent, parent.getBoard(), 3-parent.player, move);
-		
-		// Board will now have been deepCopied, we can edit in place.
-		Set<Vec2> toFlip = getFlipped(newChild.getBoard(), newChild.player, move);
+	@Override
+	public void onOpponentTurn(Reversi game, int playerId) {
 		
-		newChild.getBoard()[move.x][move.y] = newChild.player;
-		newChild.pieces[newChild.player-1]++;
+		if(!pondering) return;
 		
-		for (Vec2 stone : toFlip) {
-			newChild.getBoard()[stone.x][stone.y] = newChild.player;
-			newChild.pieces[newChild.player-1]++;
-			newChild.pieces[(3-newChild.player)-1]--;
+		// Fill the transposition table with the replies to each opponent move
+		if(usePatterns(game)) {
+			ParallelSearch search = new ParallelSearch(
+					new ReversiPosition(game.getState(), evaluator), table, threads);
+			ponderer.start(() -> search.ponder(game.getWidth() * game.getHeight()), search::stop);
+			return;
 		}
 		
-		newChild.terminal = generateTerminal(newChild);
-		
-		return newChild;
+		// Grow the tree from the opponent's position, to be continued after their move
+		MonteCarloSearch search = new MonteCarloSearch(
+				new ReversiPosition(game.getState()), pool, threads);
+		ponderer.start(search::ponder, search::stop);
 	}
 	
-	private int generateTerminal(Node leaf) {
-		int terminal = -1;
-
-		if (leaf.pieces[0] + leaf.pieces[1] >= branch || 
-				(getValidPositions(leaf.getBoard(), 1).size() == 0) &&
-				(getValidPositions(leaf.getBoard(), 2).size() == 0)) {
-			if (leaf.pieces[0] > leaf.pieces[1]) {
-				terminal = 1;
-			} else if (leaf.pieces[0] == leaf.pieces[1]) {
-				terminal = 0;
-			} else {
-				terminal = 2;
-			}
-		}
-				
-		return terminal;
-		
+	@Override
+	public void stopPondering(Reversi game, int playerId) { ponderer.stop(); }
+	
+    @Override
+    public String getName() { return "TipTacos's Othello MCTS"; }
+	
+	/**
+	 * Solves the rest of the game exactly if there are few enough empty tiles,
+	 * using at most half of the maximum time for this turn. Should the solver run
+	 * out of time, the rest of the turn is left for the fallback search.
+	 * @return whether a move was played.
+	 */
+	private boolean solveEndgame(Reversi game, int playerId, ReversiPosition position,
+			TimeManager manager, long start) {
+		
+		int width = game.getWidth(), height = game.getHeight();
+		if(!ReversiBitboard.fits(width, height)) return false;
+		
+		ReversiBitboard board = ReversiBitboard.create(position.getState());
+		if(Long.bitCount(board.getEmpty()) > endgameEmpties) return false;
+		
+		// Fall back to MCTS if the solver runs out of time
+		ReversiSolver.Result result = new ReversiSolver(board, endgameTable, threads)
+				.solve(Math.max(manager.getMaximum() / 2, 1));
+		if(result == null || result.getMove() == ReversiBitboard.PASS) return false;
+		
+		int x = board.getX(result.getMove()), y = board.getY(result.getMove());
+		game.placeDisc(x, y);
+		
+		System.out.println("=======================");
+		System.out.println("TipSolver Statistics:");
+		System.out.println("Player:      " + playerId);
+		System.out.println("Move:        [" + x + ", " + y + "]");
+		System.out.println("Disc Diff.:  " + result.getScore());
+		System.out.println("Empties:     " + result.getEmpties());
+		System.out.println("Nodes:       " + result.getNodes());
+		System.out.println("Threads:     " + threads);
+		System.out.println("Time:        "
+				+ (System.currentTimeMillis() - start) + "ms");
+		return true;
 	}
 	
-	private int[][] getBoard(Reversi game) {
-
-		int[][] board = new int[game.getWidth()][game.getHeight()];
-		
-		for (int xx = 0 ; xx < game.getWidth(); xx++) {
-			for (int yy = 0 ; yy < game.getHeight(); yy++) {
-				board[xx][yy] = game.getDisc(xx, yy);
-			}
-			
-		}
-		
-		return board;
-		
+	/**
+	 * @return whether to search using the pattern evaluation rather than MCTS.
+	 */
+	private boolean usePatterns(Reversi game) {
+		return evaluator != null && game.getWidth() == 8 && game.getHeight() == 8;
 	}
 	
-    @Override
-    public String getName() { return "TipTacos's Othello MCTS"; }
+	/**
+	 * Searches using alpha-beta with the pattern evaluation, if one is given.
+	 * @return whether a move was played.
+	 */
+	private boolean searchPatterns(Reversi game, int playerId, TimeManager manager, long start) {
+		
+		if(!usePatterns(game)) return false;
+		
+		ReversiPosition position = new ReversiPosition(game.getState(), evaluator);
+		AlphaBetaSearch.Result result = new ParallelSearch(position, table, threads)
+				.search(manager, game.getWidth() * game.getHeight());
+		int x = position.getState().getX(result.getMove());
+		int y = position.getState().getY(result.getMove());
+		game.placeDisc(x, y);
+		
+		System.out.println("=======================");
+		System.out.println("TipPatterns Statistics:");
+		System.out.println("Player:      " + playerId);
+		System.out.println("Move:        [" + x + ", " + y + "]");
+		System.out.println("Disc Diff.:  " + (AlphaBetaSearch.isDecisive(result.getScore())
+				? result.getScore() > 0 ? "Win" : "Loss"
+				: Math.round(10.0 * result.getScore() / ReversiEvaluator.SCALE) / 10.0));
+		System.out.println("Depth:       " + result.getDepth());
+		System.out.println("Nodes:       " + result.getNodes());
+		System.out.println("Threads:     " + threads);
+		System.out.println("Time:        "
+				+ (System.currentTimeMillis() - start) + "ms");
+		return true;
+	}
 	
-	private void printStats(int playerId, Vec2 move, long start, Node best) {
+	private void printStats(int playerId, int x, int y, long start, Result result) {
         System.out.println("=======================");
-        System.out.println("TipMCTS Statistics:");
+        System.out.println("TipOthello Statistics:");
         System.out.println("Player:      " + playerId
-                + " ("+(playerId==1?"Yellow":"Red")+")");
-        //System.out.println("Turn:        " + turn++);
-        //System.out.println("Expectation: " + move[0]);
-        System.out.println("Move:        [" + move.x + ", " + move.y + "]"); 
-        System.out.println("Win Probab.  " + Math.round((best.wins[playerId] / (double)best.sims) * 1000.0) / 10.0 + "%"); 
-        //System.out.println("Depth:       " + move[2]);
-        System.out.println("Global Sims: " + globalSims);
+                + " ("+(playerId==1?"White":"Black")+")");
+        System.out.println("Move:        [" + x + ", " + y + "]"); 
+        System.out.println("Win Probab.  " + Math.round(result.getWinRate() * 1000.0) / 10.0 + "%"); 
+        System.out.println("Global Sims: " + result.getIterations());
+        System.out.println("Inherited:   " + result.getInherited());
+        System.out.println("Solved:      " + (result.isSolved() ? "Yes" : "No"));
+        System.out.println("Threads:     " + threads);
         System.out.println("Time:        "
                 + (System.currentTimeMillis() - start) + "ms");
 	}
-	
-    class Vec2 {
-    	
-    	int x = 0, y = 0;
-    	int prio = 0;
-    	
-    	public Vec2() {}
-    	
-    	public Vec2 (int x, int y) {
-    		this.x = x;
-    		this.y = y;
-    	}
-    	
-    	public Vec2 (int x, int y, int prio) {
-    		this(x, y);
-    		this.prio = prio;
-    	}
-    }
-    
-    // NODE CLASS
-	class Node {
-		
-		private Node parent;
-		private ArrayList<Node> children = new ArrayList<Node>();
-		private boolean visited = false;
-		private int[][] board;
-		private Vec2 move;
-		private int wins[] = new int[3], sims;
-		private int player;
-		private int[] pieces = new int[] {2, 2};
-		private int terminal = -1;
-		private boolean subTerminal = false;
-		
-		public Node(Node parent, int[][] board, int player, int x, int y) {
-			
-			this(board, player, x, y);
-			recount();
-		}
-		
-		public Node(Node parent, int[][] board, int player, Vec2 move) {
-			
-			this(board, player, move);
-			this.parent = parent;
-			recount();
-		}
-		
-		public Node(int[][] board, int player, int x, int y) {
-			
-			this(board, player, new Vec2(x, y));
-			
-		}
-		
-		public Node(int[][] board, int player, Vec2 move) {
-			
-			this.board = deepCopy(board);
-			this.player = player;
-			this.move = move;
-			this.pieces = new int[] {2, 2};
-			
-		}
-		
-		private void recount() {
-			pieces = new int[2];
-			
-			for (int xx = 0 ; xx < board.length; xx++ ) {
-				for (int yy = 0; yy < board[xx].length; yy++) {
-					if (board[xx][yy] == 1) pieces[0]++;
-					if (board[xx][yy] == 2) pieces[1]++;
-				}
-			}
-		}
-		
-		// Return the score including the learning rate parameter
-		public float score() {
-			
-			int parentSims = 0;
-			if (parent == null) {
-				parentSims = globalSims;
-			} else {
-				parentSims = parent.sims;
-			}
-			
-			return (float) (((float)(wins[player]) / (float)sims) + learningRate * Math.sqrt(2.0 * Math.log(parentSims) / (float)sims));
-			
-		}
-		
-		// If there is at least one unexplored child.
-		public boolean hasUnexploredChildren() {
-			
-			return getUnexploredChildren().size() > 0;
-			
-		}
-		
-		public void updateWins(int[] newWins) {
-			
-			for (int ii = 0; ii < 3; ii++) {
-				//System.out.print("chnaged from " + wins[ii]);
-				wins[ii] += newWins[ii];
-			}
-			
-		}
-		
-		// Get the integer for index of each of the non-null children
-		private ArrayList<Node> getUnexploredChildren() {
-			
-			ArrayList<Node> unexplored = new ArrayList<Node>();
-								
-			for (Node child : children) {
-								
-				if (!child.visited) { 
-					unexplored.add(child);
-				}
-
-			}
-						
-			return unexplored;
-			
-		}
-		
-		// Populate children
-		public void populateChildren() {
-			
-			ArrayList<Vec2> validMoves = getValidPositions(board, 3-player);
-			
-			for (Vec2 move : validMoves) {
-				Node newChild = generateChild(this, move);
-				children.add(newChild);
-			}
-			
-			// TODO
-			children.sort(movePriorityComparator);
-						
-		}
-		
-		// Return a random child that has been unexpored
-		public Node getRandomChild() {
-			
-			ArrayList<Node> unexplored = getUnexploredChildren();
-			int index = rand.nextInt(unexplored.size());
-			
-			return unexplored.get(index);
-			
-		}
-		
-		public Node getChildFromMove(Vec2 move) {
-			
-			for (Node child : children) {
-				
-				if (child.move.x == move.x && child.move.y == move.y) {
-					return child;
-				}
-
-			}
-			return null;
-		}
-		
-		public ArrayList<Node> getChildren() {
-			
-			return children;
-			
-		}
-		
-		public int[][] getBoard() {
-			
-			return board;
-			
-		}
-		
-		private int[][] deepCopy(int[][] board) {
-			
-			int[][] newBoard = new int[board.length][board[0].length];
-			
-			for (int xx = 0 ; xx < board.length; xx++ ) {
-				for (int yy = 0; yy < board[xx].length; yy++) {
-					newBoard[xx][yy] = board[xx][yy];
-				}
-			}
-			
-			return newBoard;
-			
-		}
-		
-		public final Comparator<Node> movePriorityComparator = new Comparator<Node>() {         
-			@Override         
-			public int compare(Node n1, Node n2) {             
-				return (n2.move.prio < n1.move.prio ? -1 :                     
-					(n2.move.prio == n1.move.prio ? 0 : 1));           
-			}     
-		}; 
-		
-	}
-	
 }
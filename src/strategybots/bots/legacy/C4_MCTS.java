@@ -13,8 +13,10 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 import strategybots.bots.legacy.zobrist.Zobrist;
+import strategybots.bots.mcts.ConnectFourPlayout;
 import strategybots.games.legacy.HyperMNK;
 import strategybots.games.legacy.HyperMNK.HyperMNKPlayer;
 
@@ -39,6 +41,8 @@ public class C4_MCTS implements HyperMNKPlayer, Serializable {
 	
 	private int type = 0, timeLimit = 2000;
 	
+	private transient ConnectFourPlayout playout = null;
+	
 	private class Vec2 {
 		public int x, y;
 		public Vec2(int x, int y) { this.x = x; this.y = y; }
@@ -243,24 +247,49 @@ public class C4_MCTS implements HyperMNKPlayer, Serializable {
 	
 	private int rollout2(GraphNode gn)
 	{
-		while (!isTerminal(gn.getState()))
-		{
-			gn = rolloutPolicy(gn);
-		}
-		
-		return checkWin(gn.getState());
+		return randomWinner(gn.getState());
 	}
 	
-	
-	private GraphNode rolloutPolicy(GraphNode gn)
+	/**
+	 * Plays random moves until the end of the game, using the bitboard playout
+	 * kernel where the board fits in a single word.
+	 * @param state the state from which to play
+	 * @return the ID of the winner, or 0 for a draw
+	 */
+	private int randomWinner(GameState state)
 	{
-		ArrayList<Vec2> actions = getActions(gn.getState());
+		int width = state.getWidth(), height = state.getHeight();
+		
+		if (state.getGame().getTarget() != ConnectFourPlayout.TARGET
+				|| width * (height + 1) > Long.SIZE || isTerminal(state))
+		{
+			while (!isTerminal(state))
+			{
+				ArrayList<Vec2> actions = getActions(state);
+				state = getResult(state, actions.get(ThreadLocalRandom.current().nextInt(actions.size())));
+			}
+			return checkWin(state);
+		}
+		
+		if (playout == null) playout = new ConnectFourPlayout(width, height);
 		
-		GameState nextState = getResult(gn.getState(), actions.get((new Random()).nextInt(actions.size())));
+		long current = 0, occupied = 0;
+		for (int xx = 0; xx < width; xx++)
+		{
+			for (int yy = 0; yy < height; yy++)
+			{
+				int piece = state.getGameState()[xx][yy];
+				if (piece != 0) occupied |= playout.getBit(xx, yy);
+				if (piece == state.getPlayer()) current |= playout.getBit(xx, yy);
+			}
+		}
 		
-		return new GraphNode(nextState);
+		int other = state.getPlayer() == state.getMe() ? state.getOp() : state.getMe();
+		int result = playout.play(current, occupied, ThreadLocalRandom.current().nextLong());
+		return result > 0 ? state.getPlayer() : result < 0 ? other : 0;
 	}
 	
+	
 	private void backpropogate(GraphNode gn, int winnerID)
 	{
 		if (gn.getState().getPlayer() != winnerID)
@@ -494,16 +523,7 @@ public class C4_MCTS implements HyperMNKPlayer, Serializable {
 	
 	private void rollout(GraphNode gn)
 	{
-		GameState currentState = new GameState(gn.getState());
-		
-		while (!isTerminal(currentState))
-		{
-			Random rand = new Random();
-			ArrayList<Vec2> actions = getActions(currentState);
-			currentState = getResult(currentState, actions.get(rand.nextInt(actions.size())));
-		}
-		
-		int winner = checkWin(currentState);
+		int winner = randomWinner(gn.getState());
 		int score = 0;
 		
 		if (winner == gn.getState().getMe())
@@ -0,0 +1,121 @@
+package strategybots.bots.mcts;
+
+/**
+ * Random playouts for Connect Four, played entirely on bitboards.<br>
+ * <br>
+ * Uses the same layout as 'MNKBitboard': tile (x, y) is bit 'x * (height + 1) + y',
+ * leaving an empty padding bit above each column, such that shifts never wrap
+ * between columns. A position is given by two words: the stones of the player
+ * to move, and every occupied tile. The legal moves are the lowest empty tile of
+ * each column, found in a single addition, and a win is detected with two shifts
+ * in each of the four directions.<br>
+ * <br>
+ * Each playout uses its own xorshift generator, seeded by the caller, so playouts
+ * allocate nothing and share no state, and may run concurrently on any number of threads.
+ *
+ * @author Alec Dorrington
+ */
+public final class ConnectFourPlayout {
+
+    /** The number of stones in a row required to win. */
+    public static final int TARGET = 4;
+
+    /** The shift between adjacent tiles in the same column. */
+    private final int stride;
+
+    /** Mask of every tile on the board, excluding padding bits. */
+    private final long boardMask;
+
+    /** Mask of the bottom tile in each column. */
+    private final long bottomMask;
+
+    /**
+     * Constructs a new playout kernel for boards of the given size.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     */
+    public ConnectFourPlayout(int width, int height) {
+
+        stride = height + 1;
+        if(width * stride > Long.SIZE) {
+            throw new IllegalArgumentException("Board too large for a single word: "
+                    + width + "x" + height);
+        }
+
+        long column = (1L << height) - 1, board = 0, bottom = 0;
+        for(int x = 0; x < width; x++) {
+            board |= column << (x * stride);
+            bottom |= 1L << (x * stride);
+        }
+        boardMask = board;
+        bottomMask = bottom;
+    }
+
+    /**
+     * Plays uniformly random moves until the game is over.<br>
+     * The position must not already be won.
+     * @param current the stones of the player to move.
+     * @param occupied every occupied tile.
+     * @param seed the seed for the random moves.
+     * @return 1 if the player to move wins, -1 if they lose, or 0 for a draw.
+     */
+    public int play(long current, long occupied, long seed) {
+
+        int sign = 1;
+        if(seed == 0) seed = 1;
+
+        for(long legal = (occupied + bottomMask) & boardMask; legal != 0;
+                legal = (occupied + bottomMask) & boardMask) {
+
+            //Xorshift, then scale the high bits to the number of moves without division.
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            int k = (int) (((seed >>> 32) * Long.bitCount(legal)) >>> 32);
+
+            //Drop the k lowest legal moves, then take the lowest remaining one.
+            for(; k > 0; k--) legal &= legal - 1;
+            long move = legal & -legal;
+
+            current |= move;
+            occupied |= move;
+            if(isWin(current)) return sign;
+
+            //Pass the turn to the other player.
+            current ^= occupied;
+            sign = -sign;
+        }
+        return 0;
+    }
+
+    /**
+     * @param stones the stones of a single player.
+     * @return whether these stones contain four in a row.
+     */
+    public boolean isWin(long stones) {
+        return isWin(stones, 1) || isWin(stones, stride)
+                || isWin(stones, stride + 1) || isWin(stones, stride - 1);
+    }
+
+    /**
+     * @param stones the stones of a single player.
+     * @param shift the shift between adjacent tiles in the direction to check.
+     * @return whether these stones contain four in a row in this direction.
+     */
+    private static boolean isWin(long stones, int shift) {
+        long pairs = stones & (stones >>> shift);
+        return (pairs & (pairs >>> (2 * shift))) != 0;
+    }
+
+    /**
+     * @return mask of every tile on the board, excluding padding bits.
+     */
+    public long getBoardMask() { return boardMask; }
+
+    /**
+     * @param x the column of a tile.
+     * @param y the row of a tile.
+     * @return the bit of the given tile.
+     */
+    public long getBit(int x, int y) { return 1L << (x * stride + y); }
+}
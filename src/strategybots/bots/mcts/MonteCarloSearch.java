@@ -0,0 +1,630 @@
+package strategybots.bots.mcts;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import strategybots.bots.search.Position;
+import strategybots.bots.search.TimeManager;
+
+/**
+ * Generic tree-parallel Monte Carlo tree search, for use with any 'Position'.<br>
+ * <br>
+ * Any number of worker threads descend a single shared tree concurrently,
+ * selecting children by UCT. Each worker plays a random game to completion from
+ * the leaf it reaches, then adds the result to every node along its path.
+ * Node statistics are atomic, and virtual losses are applied along the path
+ * while a worker is in progress, so that workers spread out over the tree.<br>
+ * <br>
+ * Nodes are stored in a 'NodePool', so the search allocates nothing once the
+ * workers are started. Workers reach each node by applying moves from the root,
+ * so no positions are stored in the tree. If the position is that of the previous
+ * search on the same pool, or follows from it by up to two moves, the search
+ * continues from the existing subtree rather than starting afresh, and the rest
+ * of the tree is released. In particular, the tree of a search which was run
+ * during the opponent's turn (see 'ponder()') is reused once the opponent has moved.<br>
+ * <br>
+ * The 'evaluate()' method of the position is used only in terminal positions,
+ * to determine the winner. Positions may provide faster playouts of their own
+ * by implementing 'Playout'.<br>
+ * <br>
+ * Game-theoretic values are proven as in MCTS-Solver. A terminal node is proven by
+ * its result, and is backed up the tree as in minimax: a node is lost for the player
+ * who moved into it if any child is won, and is otherwise decided once every child
+ * is proven. Proven children are never selected, as their values are already certain,
+ * and the search ends as soon as the root is proven.<br>
+ * <br>
+ * Optionally, selection blends the value of each child with its all-moves-as-first
+ * (AMAF) value, as in RAVE. This counts every playout in which the same player made
+ * the same move at any later turn, which gives a rough estimate of each move after
+ * very few playouts, in games where the value of a move depends little on when
+ * it is played (e.g. m,n,k-games). The weight of the AMAF value decreases as the
+ * child is visited, according to an equivalence parameter: the number of visits
+ * at which both values are given about equal weight. As AMAF requires the moves of
+ * each playout, specialised playouts are not used while RAVE is enabled.
+ *
+ * @author Alec Dorrington
+ */
+public class MonteCarloSearch {
+
+    /** The size of the node pool used if none is given, in megabytes. */
+    private static final int DEFAULT_POOL_SIZE = 64;
+
+    /** The number of moves after the previous root within which the tree may be reused. */
+    private static final int REUSE_DEPTH = 2;
+
+    /** The number of visits to the root after which the search stops, to avoid overflow. */
+    private static final int MAX_VISITS = Integer.MAX_VALUE / 4;
+
+    /** The number of times per optimum time that progress is reported to a time manager. */
+    private static final int REPORTS = 8;
+
+    /** The position from which to search. */
+    private final Position position;
+
+    /** Storage for the nodes of the tree, which is reset by each search. */
+    private final NodePool pool;
+    
+    /** The number of threads to use, including the calling thread. */
+    private final int numThreads;
+
+    /** The exploration constant used by UCT. */
+    private double exploration = 1.41;
+
+    /** The number of losses added to each node on the path of a worker in progress. */
+    private int virtualLoss = 3;
+
+    /** The RAVE equivalence parameter, or 0 if RAVE is disabled. */
+    private int rave = 0;
+
+    /** The number of iterations after which the search stops, regardless of time. */
+    private long maxIterations = Long.MAX_VALUE;
+
+    /** Whether the current search has finished. */
+    private volatile boolean stopped = false;
+
+    /**
+     * Constructs a new search for the given position.
+     * @param position the position from which to search.
+     * @param numThreads the number of threads to use, including the calling thread.
+     */
+    public MonteCarloSearch(Position position, int numThreads) {
+        this(position, new NodePool(DEFAULT_POOL_SIZE), numThreads);
+    }
+
+    /**
+     * Constructs a new search for the given position.
+     * @param position the position from which to search.
+     * @param pool storage for the nodes of the tree, which may be reused between searches.
+     * @param numThreads the number of threads to use, including the calling thread.
+     */
+    public MonteCarloSearch(Position position, NodePool pool, int numThreads) {
+        this.position = position;
+        this.pool = pool;
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    /**
+     * Searches for the best move until the time limit has passed.<br>
+     * The calling thread acts as one of the workers.
+     * @param time the time limit for the search, in milliseconds.
+     * @return the most visited move from the root.
+     */
+    public Result search(long time) { return search(time, null); }
+
+    /**
+     * Searches for the best move for as long as the given time manager allows.<br>
+     * The most visited move and its win rate (in thousandths) are reported to the
+     * manager several times per optimum time, in place of search iterations.
+     * The calling thread acts as one of the workers.
+     * @param manager decides how long to search.
+     * @return the most visited move from the root.
+     */
+    public Result search(TimeManager manager) { return search(Long.MAX_VALUE, manager); }
+
+    /**
+     * Searches for the best move until stopped from another thread using 'stop()'.<br>
+     * The calling thread acts as one of the workers.
+     * @return the most visited move from the root.
+     */
+    public Result ponder() { return search(Long.MAX_VALUE, null); }
+
+    /**
+     * Stops the search in progress, which will return once the current
+     * iteration of each worker is complete.
+     */
+    public void stop() { stopped = true; }
+
+    /**
+     * Searches for the best move.
+     * @param time the time limit for the search, in milliseconds.
+     * @param manager decides how long to search in place of the time limit, or null.
+     * @return the most visited move from the root.
+     */
+    private Result search(long time, TimeManager manager) {
+
+        long start = System.currentTimeMillis();
+        if(!reuseTree()) pool.reset(position);
+        int inherited = pool.visits.get(pool.root);
+        stopped = false;
+
+        Worker[] workers = new Worker[numThreads];
+        Thread[] threads = new Thread[numThreads];
+        workers[0] = new Worker(position);
+
+        for(int i = 1; i < numThreads; i++) {
+            workers[i] = new Worker(position.copy());
+            threads[i] = new Thread(workers[i], "MCTS Worker " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        long interval = manager == null ? 0 : Math.max(manager.getOptimum() / REPORTS, 1);
+        long nextReport = interval;
+
+        while(true) {
+
+            workers[0].iterate();
+
+            if(stopped || pool.visits.get(pool.root) >= MAX_VISITS) break;
+            if(pool.visits.get(pool.root) - inherited >= maxIterations) break;
+            if(pool.proofs.get(pool.root) != NodePool.UNKNOWN) break;
+            if(manager == null) {
+                if(System.currentTimeMillis() - start >= time) break;
+                continue;
+            }
+
+            long elapsed = manager.getElapsed();
+            if(elapsed >= manager.getMaximum()) break;
+
+            if(elapsed >= nextReport) {
+                nextReport += interval;
+                int best = bestChild();
+                if(best == NodePool.NONE) continue;
+                int winRate = (int) (1000L * pool.scores.get(best)
+                        / (2 * Math.max(pool.visits.get(best), 1)));
+                if(manager.shouldStop(pool.moves[best], winRate)) break;
+            }
+        }
+        stopped = true;
+
+        long iterations = workers[0].iterations;
+        for(int i = 1; i < numThreads; i++) {
+            try {
+                threads[i].join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            iterations += workers[i].iterations;
+        }
+
+        //The root may not have been expanded, if the pool is full or the search was stopped.
+        int best = bestChild();
+        int move = best != NodePool.NONE ? pool.moves[best] : anyMove();
+        return new Result(pool, best, move, iterations, inherited,
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Moves the root of the tree to the current position, if it can be found
+     * within two plies of the root of the previous search (e.g. after our move
+     * and the opponent's reply). Positions are identified by their hash.
+     * The rest of the tree is released.
+     * @return whether the existing tree can be reused.
+     */
+    private boolean reuseTree() {
+
+        Position previous = pool.rootPosition;
+        if(previous == null) return false;
+
+        long key = position.hash();
+        int node = previous.hash() == key ? pool.root : find(pool.root, previous, key, REUSE_DEPTH);
+        if(node == NodePool.NONE) return false;
+
+        if(node != pool.root) pool.retain(node);
+        pool.rootPosition = position.copy();
+        return true;
+    }
+
+    /**
+     * Searches the existing tree for the node of the given position.
+     * @param node the index of the node from which to search.
+     * @param position the position at the node, which is restored before returning.
+     * @param key the hash of the position to find.
+     * @param depth the maximum number of moves from the node.
+     * @return the index of the node with the given hash, or 'NONE' if there is none.
+     */
+    private int find(int node, Position position, long key, int depth) {
+
+        int first = pool.firstChild.get(node);
+        if(depth == 0 || first <= 0) return NodePool.NONE;
+
+        //Search shallower nodes first, as they are more likely to be correct.
+        int found = NodePool.NONE;
+        for(int child = first; child < first + pool.numChildren[node]
+                && found == NodePool.NONE; child++) {
+
+            position.apply(pool.moves[child]);
+            if(position.hash() == key) found = child;
+            position.undo(pool.moves[child]);
+        }
+
+        for(int child = first; child < first + pool.numChildren[node]
+                && found == NodePool.NONE; child++) {
+
+            position.apply(pool.moves[child]);
+            found = find(child, position, key, depth - 1);
+            position.undo(pool.moves[child]);
+        }
+        return found;
+    }
+
+    /**
+     * The most visited move is the most reliable, as its value is the most certain.
+     * A proven win is always played, and a proven loss is avoided where possible.
+     * A proven draw is played unless the most visited unproven move is expected to win,
+     * as proven moves are no longer visited, so can't be compared by their visits.
+     * @return the index of the best child of the root, or 'NONE' if it has no children.
+     */
+    private int bestChild() {
+
+        int root = pool.root, first = pool.firstChild.get(root);
+        if(first <= 0) return NodePool.NONE;
+
+        int best = NodePool.NONE, draw = NodePool.NONE, loss = NodePool.NONE;
+        for(int child = first; child < first + pool.numChildren[root]; child++) {
+            switch(pool.proofs.get(child)) {
+                case NodePool.WIN: return child;
+                case NodePool.DRAW: draw = child; break;
+                case NodePool.LOSS: loss = child; break;
+                default:
+                    if(best == NodePool.NONE || pool.visits.get(child) > pool.visits.get(best))
+                        best = child;
+            }
+        }
+
+        //Settle for a draw unless the best unproven move scores more than half of the points.
+        if(draw != NodePool.NONE && (best == NodePool.NONE
+                || pool.scores.get(best) <= pool.visits.get(best))) best = draw;
+        return best != NodePool.NONE ? best : loss;
+    }
+
+    /**
+     * @return a legal move from the root, for use where the tree has none,
+     * or 'NONE' if there are no legal moves.
+     */
+    private int anyMove() {
+        int[] moves = new int[position.getMaxMoves()];
+        return position.getMoves(moves) > 0 ? moves[0] : NodePool.NONE;
+    }
+
+    /**
+     * Attempts to prove the value of a node from the proven values of its children.
+     * @param node the index of the node, whose children have been expanded.
+     * @return whether the value of the node is now proven.
+     */
+    private boolean prove(int node) {
+
+        if(pool.proofs.get(node) != NodePool.UNKNOWN) return true;
+        int first = pool.firstChild.get(node);
+        if(first <= 0) return false;
+
+        //The player to move picks the best child, which is the worst for the other player.
+        boolean draw = false;
+        for(int child = first; child < first + pool.numChildren[node]; child++) {
+            switch(pool.proofs.get(child)) {
+                case NodePool.WIN: pool.proofs.set(node, NodePool.LOSS); return true;
+                case NodePool.DRAW: draw = true; break;
+                case NodePool.UNKNOWN: return false;
+            }
+        }
+        pool.proofs.set(node, draw ? NodePool.DRAW : NodePool.WIN);
+        return true;
+    }
+
+    /**
+     * @param exploration the exploration constant used by UCT.
+     */
+    public void setExploration(double exploration) { this.exploration = exploration; }
+
+    /**
+     * @param virtualLoss the number of losses added to each node on the path of a worker.
+     */
+    public void setVirtualLoss(int virtualLoss) { this.virtualLoss = virtualLoss; }
+
+    /**
+     * @param equivalence the number of visits to a child at which its AMAF value and
+     * its own value are weighted equally, or 0 to disable RAVE (default 0).
+     */
+    public void setRave(int equivalence) { rave = Math.max(equivalence, 0); }
+
+    /**
+     * Limits the number of iterations of each search, e.g. to compare searches by
+     * the number of playouts rather than by time. Other limits still apply.
+     * @param maxIterations the maximum number of iterations per search.
+     */
+    public void setMaxIterations(long maxIterations) { this.maxIterations = maxIterations; }
+
+    /**
+     * A single search thread, with its own copy of the position.
+     * @author Alec Dorrington
+     */
+    private final class Worker implements Runnable {
+
+        /** The position, which is returned to the root after each iteration. */
+        private final Position position;
+
+        /** The specialised playout of the position, or null if it has none. */
+        private final Playout playout;
+
+        /** Buffer for the legal moves of a position. */
+        private final int[] moves;
+
+        /** The moves applied in the current iteration. */
+        private int[] applied = new int[64];
+
+        /** The earliest ply at which each move was played, where its stamp is current. */
+        private int[] plies = new int[0], stamps = new int[0];
+
+        /** Identifies the entries of 'plies' which belong to the current backpropagation. */
+        private int stamp = 0;
+
+        /** Source of random moves for playouts. */
+        private final Random random = new Random();
+
+        /** The number of iterations completed by this worker. */
+        private long iterations = 0;
+
+        private Worker(Position position) {
+            this.position = position;
+            playout = position instanceof Playout ? (Playout) position : null;
+            moves = new int[position.getMaxMoves()];
+        }
+
+        @Override
+        public void run() { while(!stopped) iterate(); }
+
+        /**
+         * Runs a single iteration of selection, expansion, playout and backpropagation.
+         */
+        private void iterate() {
+
+            int root = pool.root, node = root, numApplied = 0;
+            pool.visits.addAndGet(node, virtualLoss);
+
+            //Selection and expansion.
+            while(!position.isTerminal()) {
+
+                int first = pool.firstChild.get(node);
+                if(first == NodePool.EXPANDING) break;
+                if(first == NodePool.UNEXPANDED) {
+
+                    int numMoves = position.getMoves(moves);
+                    if(numMoves == 0 || !pool.expand(node, moves, numMoves)) break;
+                    first = pool.firstChild.get(node);
+                }
+
+                //Once every child is proven, so is this node, which needn't be searched further.
+                int child = select(node, first, pool.numChildren[node]);
+                if(child == NodePool.NONE) {
+                    prove(node);
+                    break;
+                }
+                node = child;
+                position.apply(pool.moves[node]);
+                numApplied = push(pool.moves[node], numApplied);
+
+                //Stop at the first node which no other thread has visited.
+                if(pool.visits.getAndAdd(node, virtualLoss) == 0) break;
+            }
+            int treeMoves = numApplied, score;
+
+            //Terminal nodes are proven by their result.
+            if(position.isTerminal()) {
+                int value = position.evaluate();
+                pool.proofs.set(node, value < 0 ? NodePool.WIN
+                        : value > 0 ? NodePool.LOSS : NodePool.DRAW);
+            }
+            boolean proven = pool.proofs.get(node) != NodePool.UNKNOWN;
+
+            //Use the specialised playout of the position if it has one.
+            int result = proven || playout == null || rave > 0 ? Playout.UNAVAILABLE
+                    : playout.playout(random.nextLong());
+
+            if(proven) {
+
+                //The value of a proven node is known, so needs no playout.
+                score = pool.proofs.get(node) == NodePool.WIN ? 2
+                        : pool.proofs.get(node) == NodePool.DRAW ? 1 : 0;
+
+            } else if(result != Playout.UNAVAILABLE) {
+
+                //Score for the player who moved into the leaf, in half-points.
+                score = result > 0 ? 0 : result < 0 ? 2 : 1;
+
+            } else {
+
+                int numMoves;
+                while(!position.isTerminal() && (numMoves = position.getUnorderedMoves(moves)) > 0) {
+                    int move = moves[random.nextInt(numMoves)];
+                    position.apply(move);
+                    numApplied = push(move, numApplied);
+                }
+
+                //Score for the player who moved into the leaf, in half-points.
+                result = position.evaluate();
+                score = result > 0 ? 0 : result < 0 ? 2 : 1;
+                if((numApplied - treeMoves) % 2 == 1) score = 2 - score;
+            }
+
+            int ply = numApplied, depth = treeMoves;
+            while(numApplied > 0) position.undo(applied[--numApplied]);
+            stamp++;
+
+            //Backpropagation, replacing each virtual loss with the real result.
+            for(;; node = pool.parents[node], depth--) {
+                pool.scores.addAndGet(node, score);
+                pool.visits.addAndGet(node, 1 - virtualLoss);
+
+                //Include the moves from this node onwards, then update its children.
+                if(rave > 0) {
+                    while(ply > depth) mark(applied[--ply], ply);
+                    updateAmaf(node, depth, 2 - score);
+                }
+                score = 2 - score;
+                if(node == root) break;
+
+                //Proofs are backed up for as long as each parent can be proven.
+                if(proven) proven = prove(pool.parents[node]);
+            }
+            iterations++;
+        }
+
+        /**
+         * Chooses the child with the highest upper confidence bound.<br>
+         * With RAVE, the value of each child is first blended with its AMAF value,
+         * and unvisited children are ranked by their AMAF value alone.
+         * @param node the index of the parent node.
+         * @param first the index of the first child.
+         * @param numChildren the number of children.
+         * @return the index of the selected child, or 'NodePool.NONE' if every child is proven.
+         */
+        private int select(int node, int first, int numChildren) {
+
+            double logVisits = Math.log(Math.max(pool.visits.get(node), 1));
+            double bestValue = Double.NEGATIVE_INFINITY;
+            int best = NodePool.NONE;
+
+            for(int child = first; child < first + numChildren; child++) {
+
+                //There is nothing more to learn about proven nodes.
+                if(pool.proofs.get(child) != NodePool.UNKNOWN) continue;
+
+                int visits = pool.visits.get(child);
+                int raveVisits = rave > 0 ? pool.raveVisits.get(child) : 0;
+                if(visits == 0 && raveVisits == 0) return child;
+
+                double value = visits == 0 ? 0 : pool.scores.get(child) / (2.0 * visits);
+                if(raveVisits > 0) {
+                    double beta = Math.sqrt(rave / (3.0 * visits + rave));
+                    value = (1 - beta) * value
+                            + beta * pool.raveScores.get(child) / (2.0 * raveVisits);
+                }
+                value += exploration * Math.sqrt(logVisits / Math.max(visits, 1));
+                if(value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Updates the AMAF statistics of each child of a node whose move was
+         * played by the player to move at the node, at this or any later turn.
+         * @param node the index of the node.
+         * @param depth the number of moves from the root to the node.
+         * @param score the result for the player to move at the node, in half-points.
+         */
+        private void updateAmaf(int node, int depth, int score) {
+
+            int first = pool.firstChild.get(node);
+            if(first <= 0) return;
+
+            for(int child = first; child < first + pool.numChildren[node]; child++) {
+                int move = pool.moves[child];
+                if(move >= 0 && move < stamps.length && stamps[move] == stamp
+                        && (plies[move] - depth) % 2 == 0) {
+                    pool.raveVisits.incrementAndGet(child);
+                    pool.raveScores.addAndGet(child, score);
+                }
+            }
+        }
+
+        /**
+         * Records the ply at which a move was played, for the AMAF statistics.
+         * Plies are marked in descending order, so the earliest one is kept.
+         * @param move the move which was played.
+         * @param ply the number of moves from the root before it was played.
+         */
+        private void mark(int move, int ply) {
+
+            if(move < 0) return;
+            if(move >= stamps.length) {
+                plies = Arrays.copyOf(plies, Math.max(2 * stamps.length, move + 1));
+                stamps = Arrays.copyOf(stamps, plies.length);
+            }
+            plies[move] = ply;
+            stamps[move] = stamp;
+        }
+
+        /**
+         * Records an applied move, so that it can later be undone.
+         * @param move the move which was applied.
+         * @param numApplied the number of moves applied before this one.
+         * @return the new number of moves applied.
+         */
+        private int push(int move, int numApplied) {
+            if(numApplied == applied.length) applied = Arrays.copyOf(applied, 2 * numApplied);
+            applied[numApplied] = move;
+            return numApplied + 1;
+        }
+    }
+
+    /**
+     * The result of a completed search.
+     * @author Alec Dorrington
+     */
+    public static final class Result {
+
+        private final int move, visits, inherited;
+        private final double winRate;
+        private final long iterations, time;
+        private final boolean solved;
+
+        private Result(NodePool pool, int best, int move,
+                long iterations, int inherited, long time) {
+            this.move = move;
+            visits = best == NodePool.NONE ? 0 : pool.visits.get(best);
+            winRate = best == NodePool.NONE ? 0.5 : pool.scores.get(best) / (2.0 * Math.max(visits, 1));
+            solved = pool.proofs.get(pool.root) != NodePool.UNKNOWN;
+            this.iterations = iterations;
+            this.inherited = inherited;
+            this.time = time;
+        }
+
+        /**
+         * @return the best move found.
+         */
+        public int getMove() { return move; }
+
+        /**
+         * @return the number of visits to the best move.
+         */
+        public int getVisits() { return visits; }
+
+        /**
+         * @return the proportion of points scored by the best move, counting draws as half.
+         */
+        public double getWinRate() { return winRate; }
+
+        /**
+         * @return the total number of iterations completed by all threads.
+         */
+        public long getIterations() { return iterations; }
+
+        /**
+         * @return the number of visits to the root carried over from previous searches.
+         */
+        public int getInherited() { return inherited; }
+
+        /**
+         * @return the time taken by the search, in milliseconds.
+         */
+        public long getTime() { return time; }
+
+        /**
+         * @return whether the value of the root was proven, in which case the best move is certain.
+         */
+        public boolean isSolved() { return solved; }
+    }
+}
@@ -0,0 +1,226 @@
+package strategybots.bots.mcts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import strategybots.bots.search.Position;
+
+/**
+ * Preallocated storage for the nodes of a 'MonteCarloSearch'.<br>
+ * <br>
+ * Nodes are identified by their index, and each property of every node is stored
+ * in its own primitive array, such that growing the tree allocates no objects.
+ * The children of a node occupy a contiguous block of indices, allocated
+ * atomically when the node is expanded. Once the pool is full, the tree stops
+ * growing and the search continues using the existing nodes.<br>
+ * <br>
+ * Statistics are updated atomically. Scores are counted in half-points
+ * (2 for a win, 1 for a draw) from the perspective of the player who made
+ * the move leading to each node, as are proven game-theoretic values.
+ * A proven value never changes once set, but is still published atomically, so that
+ * a proof seen by one worker implies the proofs of the children from which it was made.
+ * All-moves-as-first (AMAF) statistics are kept alongside the usual ones,
+ * counting the playouts in which the move of each node was played at any later
+ * turn of the same player, for use by RAVE.<br>
+ * <br>
+ * A pool may be reused for consecutive searches, but not concurrently. The tree
+ * is kept between searches, so that a later search may continue from any node,
+ * in which case the rest of the tree is released using 'retain()'.
+ *
+ * @author Alec Dorrington
+ */
+public final class NodePool {
+    
+    /** The parent of the root. */
+    static final int NONE = -1;
+    
+    /** Values of 'firstChild' for nodes which have no children yet. */
+    static final int UNEXPANDED = 0, EXPANDING = -1;
+    
+    /** Proven values of a node, for the player who made the move leading to it. */
+    static final int UNKNOWN = 0, WIN = 1, DRAW = 2, LOSS = 3;
+    
+    /** The number of bytes used by each node. */
+    private static final int NODE_SIZE = 40;
+    
+    /** The move leading to each node from its parent. */
+    final int[] moves;
+    
+    /** The index of the parent of each node. */
+    final int[] parents;
+    
+    /** The number of children of each expanded node. */
+    final int[] numChildren;
+    
+    /** The index of the first child of each node, or 'UNEXPANDED' or 'EXPANDING'. */
+    final AtomicIntegerArray firstChild;
+    
+    /** The number of visits to each node, including virtual losses still in progress. */
+    final AtomicIntegerArray visits;
+    
+    /** The total score of all completed visits to each node, in half-points. */
+    final AtomicIntegerArray scores;
+    
+    /** The number of playouts counted by the AMAF statistics of each node. */
+    final AtomicIntegerArray raveVisits;
+    
+    /** The total AMAF score of each node, in half-points. */
+    final AtomicIntegerArray raveScores;
+    
+    /** The proven value of each node, or 'UNKNOWN'. */
+    final AtomicIntegerArray proofs;
+    
+    /** The new index of each node during compaction, or -1 if it is being released. */
+    private final int[] remap;
+    
+    /** The index of the node from which the current search begins. */
+    int root = 0;
+    
+    /** A copy of the position at the root, or null if the pool has never been used. */
+    Position rootPosition = null;
+    
+    /** The maximum number of nodes. */
+    private final int capacity;
+    
+    /** The number of nodes allocated, which may exceed the capacity once full. */
+    private final AtomicInteger size = new AtomicInteger();
+    
+    /**
+     * Constructs a new node pool.
+     * @param megabytes the maximum size of the pool, in megabytes.
+     */
+    public NodePool(int megabytes) {
+        
+        capacity = (int) Math.min(Math.max(((long) megabytes << 20) / NODE_SIZE, 1),
+                Integer.MAX_VALUE / 2);
+        moves = new int[capacity];
+        parents = new int[capacity];
+        numChildren = new int[capacity];
+        firstChild = new AtomicIntegerArray(capacity);
+        visits = new AtomicIntegerArray(capacity);
+        scores = new AtomicIntegerArray(capacity);
+        raveVisits = new AtomicIntegerArray(capacity);
+        raveScores = new AtomicIntegerArray(capacity);
+        proofs = new AtomicIntegerArray(capacity);
+        remap = new int[capacity];
+    }
+    
+    /**
+     * Removes all nodes from the pool, and allocates a new root at index 0.
+     * @param position the position at the new root.
+     */
+    void reset(Position position) {
+        size.set(1);
+        init(0, NONE, 0);
+        root = 0;
+        rootPosition = position.copy();
+    }
+    
+    /**
+     * Makes the given node the root, releasing every node outside of its subtree.<br>
+     * The remaining nodes are moved to the front of the pool, keeping their
+     * statistics, and the new root is moved to index 0.
+     * @param node the index of the new root.
+     */
+    void retain(int node) {
+        
+        int numNodes = getSize(), next = 0;
+        
+        //Each node is allocated after its parent, so one pass finds the whole subtree.
+        for(int i = 0; i < numNodes; i++) {
+            remap[i] = i == node || (i > node && isKept(i)) ? next++ : -1;
+        }
+        
+        //Nodes only ever move to lower indices, so they may be moved in place.
+        for(int i = node; i < numNodes; i++) {
+            
+            int j = remap[i];
+            if(j == -1) continue;
+            
+            int first = firstChild.get(i);
+            moves[j] = moves[i];
+            parents[j] = i == node ? NONE : remap[parents[i]];
+            numChildren[j] = first > 0 ? numChildren[i] : 0;
+            
+            //Nodes left unexpanded by a full pool may now be expanded.
+            firstChild.set(j, first > 0 ? remap[first] : UNEXPANDED);
+            visits.set(j, visits.get(i));
+            scores.set(j, scores.get(i));
+            raveVisits.set(j, raveVisits.get(i));
+            raveScores.set(j, raveScores.get(i));
+            proofs.set(j, proofs.get(i));
+        }
+        
+        size.set(next);
+        root = 0;
+    }
+    
+    /**
+     * Creates a child for each of the given moves, unless another thread
+     * has already started doing so, or there is no space left.
+     * @param node the index of the node to expand.
+     * @param moves the legal moves from the node.
+     * @param numMoves the number of legal moves.
+     * @return whether this thread expanded the node.
+     */
+    boolean expand(int node, int[] moves, int numMoves) {
+        
+        if(!firstChild.compareAndSet(node, UNEXPANDED, EXPANDING)) return false;
+        
+        //Once full, nodes are left marked as expanding, so that they remain leaves.
+        if(size.get() > capacity - numMoves) return false;
+        int first = size.getAndAdd(numMoves);
+        if(first > capacity - numMoves) return false;
+        
+        for(int i = 0; i < numMoves; i++) init(first + i, node, moves[i]);
+        numChildren[node] = numMoves;
+        
+        //Publish the children only once they are initialised.
+        firstChild.set(node, first);
+        return true;
+    }
+    
+    /**
+     * @return the maximum number of nodes.
+     */
+    public int getCapacity() { return capacity; }
+    
+    /**
+     * @return the number of nodes currently in use.
+     */
+    public int getSize() { return Math.min(size.get(), capacity); }
+    
+    /**
+     * Used during compaction to determine whether a node is in the retained subtree.<br>
+     * Space claimed by a failed expansion once the pool is full is never initialised,
+     * so the node must also be among the published children of its parent.
+     * @param node the index of the node.
+     * @return whether the parent of the node is kept, and the node is its child.
+     */
+    private boolean isKept(int node) {
+        
+        int parent = parents[node];
+        if(parent < 0 || parent >= node || remap[parent] == -1) return false;
+        
+        int first = firstChild.get(parent);
+        return first > 0 && node >= first && node < first + numChildren[parent];
+    }
+    
+    /**
+     * Initialises a newly allocated node.
+     * @param node the index of the node.
+     * @param parent the index of its parent.
+     * @param move the move leading to the node from its parent.
+     */
+    private void init(int node, int parent, int move) {
+        moves[node] = move;
+        parents[node] = parent;
+        numChildren[node] = 0;
+        firstChild.lazySet(node, UNEXPANDED);
+        visits.lazySet(node, 0);
+        scores.lazySet(node, 0);
+        raveVisits.lazySet(node, 0);
+        raveScores.lazySet(node, 0);
+        proofs.lazySet(node, UNKNOWN);
+    }
+}
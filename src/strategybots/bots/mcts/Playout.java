@@ -0,0 +1,25 @@
+package strategybots.bots.mcts;
+
+/**
+ * A position which provides its own random playouts, for use by 'MonteCarloSearch'
+ * in place of the generic playout, which applies and undoes each move in turn.<br>
+ * <br>
+ * A specialised playout may be much faster, but must choose moves uniformly at
+ * random, so that it doesn't change the results of the search.
+ *
+ * @author Alec Dorrington
+ */
+public interface Playout {
+
+    /** Returned by 'playout()' when no specialised playout is available. */
+    int UNAVAILABLE = Integer.MIN_VALUE;
+
+    /**
+     * Plays random moves from this position until the game is over,
+     * without modifying the position.
+     * @param seed the seed for the random moves.
+     * @return 1 if the player to move wins, -1 if they lose, 0 for a draw,
+     * or 'UNAVAILABLE' to use the generic playout for this position.
+     */
+    int playout(long seed);
+}
@@ -0,0 +1,105 @@
+package strategybots.bots.mcts;
+
+import strategybots.bots.search.MNKPosition;
+import strategybots.games.TicTacToe;
+import strategybots.games.base.Game;
+import strategybots.games.base.TileGame;
+
+/**
+ * Measures the strength of RAVE against plain UCT on a large m,n,k-game.<br>
+ * <br>
+ * Plays a match between two 'MonteCarloSearch' instances which differ only in
+ * whether RAVE is enabled, alternating which side moves first. The match is played
+ * twice: once with a fixed number of playouts per move, which shows how much more
+ * each playout is worth, and once with a fixed time per move, which also accounts
+ * for the cost of maintaining the AMAF statistics. Prints the score of RAVE in each.<br>
+ * <br>
+ * Usage: RaveBenchmark [width] [height] [target] [games] [playouts per move] [time per move in ms]
+ *
+ * @author Alec Dorrington
+ */
+public class RaveBenchmark {
+    
+    /** The RAVE equivalence parameter to test. */
+    private static final int EQUIVALENCE = 1000;
+    
+    /** The exploration constant used by the RAVE search. */
+    private static final double RAVE_EXPLORATION = 0.25;
+    
+    public static void main(String[] args) {
+        
+        int width = args.length > 0 ? Integer.parseInt(args[0]) : 15;
+        int height = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+        int target = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        int games = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        long playouts = args.length > 4 ? Long.parseLong(args[4]) : 2000;
+        long time = args.length > 5 ? Long.parseLong(args[5]) : 200;
+        
+        TileGame.setHeadless(true);
+        Game.setSynchronous(true);
+        
+        MNKPosition position = new MNKPosition(
+                new TicTacToe(width, height, target, null, null).getState());
+        String name = width + "x" + height + " k=" + target;
+        
+        match(name + ", " + playouts + " playouts/move", position, games, playouts, Long.MAX_VALUE);
+        match(name + ", " + time + "ms/move", position, games, Long.MAX_VALUE, time);
+    }
+    
+    /**
+     * Plays a match between RAVE and plain UCT, and prints the result.
+     * @param name the name of the match.
+     * @param start the starting position.
+     * @param games the number of games to play.
+     * @param playouts the number of playouts per move.
+     * @param time the time limit per move, in milliseconds.
+     */
+    private static void match(String name, MNKPosition start, int games, long playouts, long time) {
+        
+        System.out.println("=======================");
+        System.out.println(name + ":");
+        
+        int wins = 0, draws = 0, losses = 0;
+        long raveIterations = 0, plainIterations = 0;
+        
+        for(int game = 0; game < games; game++) {
+            
+            MNKPosition position = start.copy();
+            boolean raveFirst = game % 2 == 0;
+            int[] moves = new int[position.getMaxMoves()];
+            
+            //Each side has its own pool, so that neither reuses the other's tree.
+            NodePool ravePool = new NodePool(64), plainPool = new NodePool(64);
+            
+            for(int ply = 0; !position.isTerminal()
+                    && position.getMoves(moves) > 0; ply++) {
+                
+                boolean raveTurn = (ply % 2 == 0) == raveFirst;
+                MonteCarloSearch search = new MonteCarloSearch(
+                        position.copy(), raveTurn ? ravePool : plainPool, 1);
+                search.setMaxIterations(playouts);
+                if(raveTurn) {
+                    search.setRave(EQUIVALENCE);
+                    search.setExploration(RAVE_EXPLORATION);
+                }
+                
+                MonteCarloSearch.Result result = search.search(time);
+                if(raveTurn) raveIterations += result.getIterations();
+                else plainIterations += result.getIterations();
+                position.apply(result.getMove());
+            }
+            
+            //The player to move in a won position has lost.
+            int value = position.evaluate();
+            boolean raveToMove = (position.getBoard().getCurrentPlayerId() == 1) == raveFirst;
+            if(value == 0) draws++;
+            else if((value < 0) == raveToMove) losses++;
+            else wins++;
+        }
+        
+        System.out.println(String.format("RAVE +%d =%d -%d (%.1f%%)", wins, draws, losses,
+                100.0 * (wins + draws / 2.0) / Math.max(games, 1)));
+        System.out.println(String.format("Playouts: RAVE %d, UCT %d",
+                raveIterations, plainIterations));
+    }
+}
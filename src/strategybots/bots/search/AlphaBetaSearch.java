@@ -0,0 +1,458 @@
+package strategybots.bots.search;
+
+import java.util.Arrays;
+
+/**
+ * Generic game tree search engine, for use with any 'Position'.<br>
+ * <br>
+ * Uses iterative deepening negamax with alpha-beta pruning, principal variation
+ * search (null-window searches for all but the first move), and aspiration windows
+ * around the score of the previous iteration. Moves are ordered by the best move
+ * from the previous iteration (at the root), then killer moves, then the history
+ * heuristic, then the order given by the position.<br>
+ * <br>
+ * If a 'TranspositionTable' is given, it is used both for cutoffs at null-window
+ * nodes and to order the stored best move first.<br>
+ * <br>
+ * An engine may be reused for consecutive searches from the same position.
+ * A search in progress may be aborted from another thread using 'stop()'.
+ *
+ * @author Alec Dorrington
+ */
+public class AlphaBetaSearch {
+    
+    /** Score of a won position, before adjustment for distance from the root. */
+    public static final int WIN = 1_000_000;
+    
+    /** The maximum depth which may be searched. */
+    public static final int MAX_PLY = 256;
+    
+    /** Value greater than any possible score. */
+    private static final int INFINITY = WIN + MAX_PLY + 1;
+    
+    /** Value used in place of a move where there is none. */
+    private static final int NO_MOVE = Integer.MIN_VALUE;
+    
+    /** Size of the history table, must be a power of 2. */
+    private static final int HISTORY_SIZE = 1 << 14;
+    
+    /** The number of nodes between each check of the deadline, must be a power of 2. */
+    private static final int POLL_INTERVAL = 1 << 10;
+    
+    /** Ordering bonuses for the best known move and killer moves. */
+    private static final int PV_BONUS = 3 << 24, KILLER_BONUS = 1 << 24;
+    
+    /** The position being searched, which is modified during the search. */
+    private final Position position;
+    
+    /** The transposition table, or null if none is used. */
+    private final TranspositionTable table;
+    
+    /** Buffers for the moves at each ply, and the ordering score of each move. */
+    private final int[][] moves, orders;
+    
+    /** The two most recent moves at each ply which caused a cutoff. */
+    private final int[][] killers = new int[MAX_PLY][2];
+    
+    /** The accumulated cutoff count of each move, indexed by the low bits of the move. */
+    private final int[] history = new int[HISTORY_SIZE];
+    
+    /** Half-width of the aspiration window, or 0 to disable aspiration windows. */
+    private int aspirationWindow = 50;
+    
+    /** The number of plies added to the depth of each iteration. */
+    private int depthOffset = 0;
+    
+    /** The number of nodes visited in the current search. */
+    private long nodes;
+    
+    /** Whether the current search has been aborted. */
+    private volatile boolean stopped = false;
+    
+    /** The time at which the current search is aborted, in milliseconds. */
+    private long deadline = Long.MAX_VALUE;
+    
+    /** The best move found at the root in the current iteration. */
+    private int rootMove = NO_MOVE;
+    
+    /**
+     * Constructs a new search engine for the given position.
+     * @param position the position from which to search.
+     */
+    public AlphaBetaSearch(Position position) { this(position, null); }
+    
+    /**
+     * Constructs a new search engine for the given position.
+     * @param position the position from which to search.
+     * @param table the transposition table to use, which may be shared and reused.
+     */
+    public AlphaBetaSearch(Position position, TranspositionTable table) {
+        this.position = position;
+        this.table = table;
+        moves = new int[MAX_PLY][position.getMaxMoves()];
+        orders = new int[MAX_PLY][position.getMaxMoves()];
+    }
+    
+    /**
+     * Searches for the best move using iterative deepening.<br>
+     * The search is aborted once the time limit has passed, returning the result
+     * of the last completed iteration; the first iteration is always completed.
+     * The search also ends once the result of the game is known.
+     * @param time the time limit for the search, in milliseconds.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @return the result of the deepest completed iteration,
+     * or null if the search was stopped before any iteration completed.
+     */
+    public Result search(long time, int maxDepth) {
+        prepare();
+        if(table != null) table.newSearch();
+        return iterate(time, maxDepth, null);
+    }
+    
+    /**
+     * Searches for the best move using iterative deepening, for as long as
+     * the given time manager allows.<br>
+     * The result of each iteration is reported to the manager, which decides
+     * whether to begin another. The search is aborted at the maximum time of the manager.
+     * @param manager decides how long to search.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @return the result of the deepest completed iteration,
+     * or null if the search was stopped before any iteration completed.
+     */
+    public Result search(TimeManager manager, int maxDepth) {
+        prepare();
+        if(table != null) table.newSearch();
+        return iterate(Long.MAX_VALUE, maxDepth, manager);
+    }
+    
+    /**
+     * Allows a new search to run, having previously been stopped.<br>
+     * Must be called before the search is started on another thread, such that
+     * a call to 'stop()' cannot be missed.
+     */
+    void prepare() { stopped = false; }
+    
+    /**
+     * Runs iterative deepening, without first clearing the stop flag
+     * or ageing the transposition table.
+     * @param time the time limit for the search, in milliseconds.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @param manager decides how long to search in place of the time limit, or null.
+     * @return the result of the deepest completed iteration,
+     * or null if the search was stopped before any iteration completed.
+     */
+    Result iterate(long time, int maxDepth, TimeManager manager) {
+        
+        long start = System.currentTimeMillis();
+        nodes = 0;
+        for(int[] k : killers) Arrays.fill(k, NO_MOVE);
+        for(int i = 0; i < HISTORY_SIZE; i++) history[i] /= 8;
+        
+        Result result = null;
+        int score = 0;
+        rootMove = NO_MOVE;
+        deadline = Long.MAX_VALUE;
+        maxDepth = Math.min(maxDepth, MAX_PLY - 1);
+        
+        for(int depth = 1 + depthOffset; depth <= maxDepth; depth++) {
+            
+            int alpha = -INFINITY, beta = INFINITY, window = aspirationWindow;
+            
+            //Search a narrow window around the previous score, widening on failure.
+            if(depth >= 4 && window > 0 && !isDecisive(score)) {
+                alpha = score - window;
+                beta = score + window;
+            }
+            
+            while(true) {
+                
+                score = pvs(depth, 0, alpha, beta);
+                if(stopped) return result;
+                
+                if(score <= alpha) alpha = Math.max(score - window, -INFINITY);
+                else if(score >= beta) beta = Math.min(score + window, INFINITY);
+                else break;
+                window *= 4;
+            }
+            
+            long elapsed = System.currentTimeMillis() - start;
+            result = new Result(rootMove, score, depth, nodes, elapsed);
+            if(manager != null) deadline = manager.getDeadline();
+            else deadline = time > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + time;
+            
+            //There is no need to search further if the result is known.
+            if(isDecisive(score) || rootMove == NO_MOVE) break;
+            
+            if(manager != null ? manager.shouldStop(rootMove, score) : elapsed > time) break;
+        }
+        return result;
+    }
+    
+    /**
+     * Aborts the current search, which will return the result of the
+     * deepest iteration completed so far.
+     */
+    public void stop() { stopped = true; }
+    
+    /**
+     * @param depthOffset the number of plies added to the depth of each iteration.
+     */
+    public void setDepthOffset(int depthOffset) { this.depthOffset = depthOffset; }
+    
+    /**
+     * @param aspirationWindow half-width of the aspiration window, or 0 to disable.
+     */
+    public void setAspirationWindow(int aspirationWindow) {
+        this.aspirationWindow = aspirationWindow;
+    }
+    
+    /**
+     * @return the number of nodes visited in the current or most recent search.
+     */
+    public long getNodes() { return nodes; }
+    
+    /**
+     * Principal variation search.
+     * @param depth the remaining depth to search.
+     * @param ply the distance from the root.
+     * @param alpha the lower bound of the search window.
+     * @param beta the upper bound of the search window.
+     * @return the score of the position, from the perspective of the current player.
+     */
+    private int pvs(int depth, int ply, int alpha, int beta) {
+        
+        //Poll the clock only occasionally, as it is relatively expensive.
+        if((++nodes & (POLL_INTERVAL-1)) == 0
+                && System.currentTimeMillis() >= deadline) stopped = true;
+        
+        if(stopped) return 0;
+        if(position.isTerminal()) return adjust(position.evaluate(), ply);
+        if(depth == 0) return position.evaluate();
+        
+        int[] moves = this.moves[ply], orders = this.orders[ply];
+        int numMoves = position.getMoves(moves);
+        if(numMoves == 0) return adjust(position.evaluate(), ply);
+        
+        int hashMove = NO_MOVE;
+        long key = 0;
+        
+        if(table != null) {
+            
+            key = position.hash();
+            long entry = table.probe(key);
+            
+            if(entry != 0) {
+                hashMove = TranspositionTable.getMove(entry);
+                
+                //Only use stored scores at null-window nodes, to keep the principal variation intact.
+                if(ply > 0 && beta - alpha == 1
+                        && TranspositionTable.getDepth(entry) >= depth) {
+                    
+                    int score = fromTable(TranspositionTable.getScore(entry), ply);
+                    int bound = TranspositionTable.getBound(entry);
+                    
+                    if(bound == TranspositionTable.EXACT
+                            || (bound == TranspositionTable.LOWER && score >= beta)
+                            || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                        return score;
+                    }
+                }
+            }
+        }
+        
+        orderMoves(moves, orders, numMoves, ply, hashMove);
+        
+        int best = -INFINITY, bestMove = NO_MOVE, alpha0 = alpha;
+        
+        for(int i = 0; i < numMoves; i++) {
+            
+            int move = nextMove(moves, orders, numMoves, i);
+            int score;
+            
+            position.apply(move);
+            
+            //Search the first move with a full window, and the rest with a null window.
+            if(i == 0) score = -pvs(depth-1, ply+1, -beta, -alpha);
+            else {
+                score = -pvs(depth-1, ply+1, -alpha-1, -alpha);
+                if(score > alpha && score < beta) {
+                    score = -pvs(depth-1, ply+1, -beta, -alpha);
+                }
+            }
+            position.undo(move);
+            if(stopped) return 0;
+            
+            if(score > best) {
+                best = score;
+                bestMove = move;
+                if(ply == 0) rootMove = move;
+            }
+            if(score > alpha) alpha = score;
+            
+            if(alpha >= beta) {
+                storeCutoff(move, depth, ply);
+                break;
+            }
+        }
+        
+        if(table != null) {
+            
+            //After failing low, no move is known to be best, so keep the previous one.
+            int bound = best <= alpha0 ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            if(bound == TranspositionTable.UPPER) bestMove = hashMove;
+            table.store(key, bestMove, toTable(best, ply), depth, bound);
+        }
+        return best;
+    }
+    
+    /**
+     * Assigns an ordering score to each move.
+     * @param moves the moves to order.
+     * @param orders the array in which to store the ordering scores.
+     * @param numMoves the number of moves.
+     * @param ply the distance from the root.
+     * @param hashMove the best move stored in the transposition table, if any.
+     */
+    private void orderMoves(int[] moves, int[] orders, int numMoves, int ply, int hashMove) {
+        
+        for(int i = 0; i < numMoves; i++) {
+            
+            int move = moves[i];
+            
+            //Moves given earlier by the position are preferred in the case of a tie.
+            int order = history[move & (HISTORY_SIZE-1)] * 64 + 63 - Math.min(i, 63);
+            
+            if((ply == 0 && move == rootMove) || move == hashMove) order += PV_BONUS;
+            else if(move == killers[ply][0]) order += 2 * KILLER_BONUS;
+            else if(move == killers[ply][1]) order += KILLER_BONUS;
+            
+            orders[i] = order;
+        }
+    }
+    
+    /**
+     * Moves the best remaining move to the given index, using selection sort.
+     * @param moves the moves being searched.
+     * @param orders the ordering score of each move.
+     * @param numMoves the number of moves.
+     * @param i the index of the next move to search.
+     * @return the next move to search.
+     */
+    private static int nextMove(int[] moves, int[] orders, int numMoves, int i) {
+        
+        int best = i;
+        for(int j = i + 1; j < numMoves; j++) {
+            if(orders[j] > orders[best]) best = j;
+        }
+        
+        int move = moves[best], order = orders[best];
+        moves[best] = moves[i];
+        orders[best] = orders[i];
+        moves[i] = move;
+        orders[i] = order;
+        return move;
+    }
+    
+    /**
+     * Records a move which caused a cutoff, for use in ordering future moves.
+     * @param move the move which caused the cutoff.
+     * @param depth the remaining depth at which the cutoff occurred.
+     * @param ply the distance from the root.
+     */
+    private void storeCutoff(int move, int depth, int ply) {
+        
+        if(killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        
+        //Keep history scores well below the killer bonus.
+        int i = move & (HISTORY_SIZE-1);
+        history[i] += depth * depth;
+        if(history[i] >= KILLER_BONUS / 64) {
+            for(int j = 0; j < HISTORY_SIZE; j++) history[j] /= 2;
+        }
+    }
+    
+    /**
+     * Adjusts a terminal score such that quicker wins and slower losses are preferred.
+     * @param score the score given by the position.
+     * @param ply the distance from the root.
+     * @return the adjusted score.
+     */
+    private static int adjust(int score, int ply) {
+        return score >= WIN ? score - ply : score <= -WIN ? score + ply : score;
+    }
+    
+    /**
+     * Converts a score relative to the root into one relative to the current position.
+     * @param score the score relative to the root.
+     * @param ply the distance from the root.
+     * @return the score to store in the transposition table.
+     */
+    private static int toTable(int score, int ply) {
+        return isDecisive(score) ? score + Integer.signum(score) * ply : score;
+    }
+    
+    /**
+     * Converts a score relative to the current position into one relative to the root.
+     * @param score the score stored in the transposition table.
+     * @param ply the distance from the root.
+     * @return the score relative to the root.
+     */
+    private static int fromTable(int score, int ply) {
+        return isDecisive(score) ? score - Integer.signum(score) * ply : score;
+    }
+    
+    /**
+     * @param score a score returned by the search.
+     * @return whether this score indicates a forced win or loss.
+     */
+    public static boolean isDecisive(int score) {
+        return Math.abs(score) >= WIN - MAX_PLY;
+    }
+    
+    /**
+     * The result of a completed search iteration.
+     * @author Alec Dorrington
+     */
+    public static final class Result {
+        
+        private final int move, score, depth;
+        private final long nodes, time;
+        
+        Result(int move, int score, int depth, long nodes, long time) {
+            this.move = move;
+            this.score = score;
+            this.depth = depth;
+            this.nodes = nodes;
+            this.time = time;
+        }
+        
+        /**
+         * @return the best move found.
+         */
+        public int getMove() { return move; }
+        
+        /**
+         * @return the score of the best move, from the perspective of the current player.
+         */
+        public int getScore() { return score; }
+        
+        /**
+         * @return the depth of the completed iteration, in plies.
+         */
+        public int getDepth() { return depth; }
+        
+        /**
+         * @return the total number of nodes visited.
+         */
+        public long getNodes() { return nodes; }
+        
+        /**
+         * @return the time taken to complete this iteration, in milliseconds.
+         */
+        public long getTime() { return time; }
+    }
+}
@@ -0,0 +1,300 @@
+package strategybots.bots.search;
+
+import java.util.Arrays;
+
+import strategybots.bots.mcts.ConnectFourPlayout;
+import strategybots.bots.mcts.Playout;
+import strategybots.games.TicTacToe.TicTacToeState;
+import strategybots.games.bitboard.MNKBitboard;
+import strategybots.games.bitboard.MNKBoard;
+
+/**
+ * Search adapter for Tic-Tac-Toe (m,n,k-games) and Connect Four.<br>
+ * <br>
+ * Wins are detected by the shared 'MNKBoard' engine. Positions are evaluated by
+ * summing, over every window of 'target' tiles through each stone placed during
+ * the search, a score rewarding windows which can still be completed and
+ * windows in which an opponent streak is blocked. The evaluation is updated
+ * incrementally as moves are applied.<br>
+ * <br>
+ * On boards without gravity, moves are ordered by the number of stones within
+ * 'PROXIMITY' tiles, which is also updated incrementally, such that moves near
+ * the existing stones are searched and expanded first.<br>
+ * <br>
+ * Connect Four positions which fit in a single word provide fast random playouts
+ * for Monte Carlo search, using 'ConnectFourPlayout'.
+ *
+ * @author Alec Dorrington
+ */
+public class MNKPosition implements Position, Playout {
+    
+    /** The four directions in which a streak can occur. */
+    private static final int[][] DIRS = new int[][] {{1, 0}, {1, 1}, {0, 1}, {-1, 1}};
+    
+    /** The distance within which stones count towards the order of a move. */
+    private static final int PROXIMITY = 2;
+    
+    /** The greatest number of stones within 'PROXIMITY' tiles of an empty tile. */
+    private static final int MAX_NEARBY = (2*PROXIMITY + 1) * (2*PROXIMITY + 1) - 1;
+    
+    /** The dimensions of the board, and the number of stones in a row required to win. */
+    private final int width, height, target;
+    
+    /** The rules engine, used for move generation and win detection. */
+    private final MNKBoard board;
+    
+    /** Plays random games on bitboards, or null if the game isn't Connect Four. */
+    private final ConnectFourPlayout kernel;
+    
+    /** The owner of the stone on each tile, indexed by 'x * height + y'. */
+    private final byte[] cells;
+    
+    /** The columns of the board, ordered from the centre outwards. */
+    private final int[] columnOrder;
+    
+    /** The evaluation at each ply, from the perspective of the player to move. */
+    private final int[] scores;
+    
+    /** The number of stones near each tile, indexed by move, or null with gravity. */
+    private final byte[] nearby;
+    
+    /** Buffers used to sort moves by the number of stones near them. */
+    private final int[] buckets, sorted;
+    
+    /** The number of moves applied since the root. */
+    private int ply = 0;
+    
+    /** Whether the last move won the game. */
+    private boolean won = false;
+    
+    /**
+     * Constructs a new position from a snapshot of a Tic-Tac-Toe or Connect Four game.
+     * @param state the snapshot from which to search.
+     */
+    public MNKPosition(TicTacToeState state) {
+        
+        width = state.getWidth();
+        height = state.getHeight();
+        target = state.getTarget();
+        board = MNKBoard.create(state);
+        kernel = board instanceof MNKBitboard && board.hasGravity()
+                && target == ConnectFourPlayout.TARGET ? new ConnectFourPlayout(width, height) : null;
+        
+        cells = new byte[width * height];
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < height; y++) {
+                cells[x * height + y] = (byte) state.get(x, y);
+            }
+        }
+        
+        columnOrder = new int[width];
+        for(int i = 0; i < width; i++) {
+            columnOrder[i] = width/2 + (i%2==0 ? i/2 : -(i+1)/2);
+        }
+        scores = new int[width * height + 1];
+        
+        if(board.hasGravity()) {
+            nearby = null;
+            buckets = sorted = null;
+        } else {
+            nearby = new byte[board.index(width, 0)];
+            buckets = new int[MAX_NEARBY + 2];
+            sorted = new int[width * height];
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    if(state.get(x, y) != 0) updateNearby(x, y, 1);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Constructs a new position as a copy of the given position.
+     * @param position the position to copy.
+     */
+    private MNKPosition(MNKPosition position) {
+        width = position.width;
+        height = position.height;
+        target = position.target;
+        board = position.board.copy();
+        kernel = position.kernel;
+        cells = position.cells.clone();
+        columnOrder = position.columnOrder;
+        scores = position.scores.clone();
+        nearby = position.nearby == null ? null : position.nearby.clone();
+        buckets = position.buckets == null ? null : new int[position.buckets.length];
+        sorted = position.sorted == null ? null : new int[position.sorted.length];
+        ply = position.ply;
+        won = position.won;
+    }
+    
+    @Override
+    public int getMoves(int[] moves) {
+        
+        if(!board.hasGravity()) return sortByNearby(moves, board.getLegalMoves(moves));
+        
+        //Columns closer to the centre are usually better in Connect Four.
+        int numMoves = 0;
+        for(int x : columnOrder) {
+            if(board.getStackHeight(x) < height) moves[numMoves++] = board.dropIndex(x);
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public int getUnorderedMoves(int[] moves) {
+        return board.hasGravity() ? getMoves(moves) : board.getLegalMoves(moves);
+    }
+    
+    @Override
+    public void apply(int move) {
+        
+        int playerId = board.getCurrentPlayerId();
+        int x = board.getX(move), y = board.getY(move);
+        
+        board.apply(move);
+        cells[x * height + y] = (byte) playerId;
+        if(nearby != null) updateNearby(x, y, 1);
+        
+        scores[ply+1] = -(scores[ply] + heuristic(playerId, x, y));
+        ply++;
+        won = board.isWin(playerId);
+    }
+    
+    @Override
+    public void undo(int move) {
+        
+        board.undo(move);
+        int x = board.getX(move), y = board.getY(move);
+        cells[x * height + y] = 0;
+        if(nearby != null) updateNearby(x, y, -1);
+        ply--;
+        won = false;
+    }
+    
+    @Override
+    public boolean isTerminal() { return won || board.isFull(); }
+    
+    @Override
+    public int evaluate() {
+        return won ? -AlphaBetaSearch.WIN : board.isFull() ? 0 : scores[ply];
+    }
+    
+    @Override
+    public long hash() { return board.hash(); }
+    
+    @Override
+    public int playout(long seed) {
+        
+        if(kernel == null || isTerminal()) return UNAVAILABLE;
+        
+        MNKBitboard bits = (MNKBitboard) board;
+        return kernel.play(bits.getStones(bits.getCurrentPlayerId()), bits.getOccupied(), seed);
+    }
+    
+    @Override
+    public int getMaxMoves() { return width * height; }
+    
+    @Override
+    public MNKPosition copy() { return new MNKPosition(this); }
+    
+    /**
+     * @return the rules engine underlying this position, used to decode moves.
+     */
+    public MNKBoard getBoard() { return board; }
+    
+    /**
+     * Determines the value of a newly placed stone to the player who placed it.
+     * @param playerId the ID of the player who placed the stone.
+     * @param x the x position of the stone.
+     * @param y the y position of the stone.
+     * @return the change in evaluation caused by the stone.
+     */
+    private int heuristic(int playerId, int x, int y) {
+        
+        int score = 0;
+        
+        for(int[] dir : DIRS) {
+            
+            //The extent of the line through this stone in each direction.
+            int back = reach(x, y, -dir[0], -dir[1]);
+            int len = back + reach(x, y, dir[0], dir[1]) + 1;
+            int x0 = x - dir[0]*back, y0 = y - dir[1]*back;
+            
+            int myPieces = 0, otherPieces = 0;
+            
+            //Slide a window of the target length along the line.
+            for(int i = 0; i < len; i++) {
+                
+                int owner = cells[(x0 + dir[0]*i) * height + y0 + dir[1]*i];
+                if(owner == playerId) myPieces++;
+                else if(owner != 0) otherPieces++;
+                
+                if(i >= target) {
+                    
+                    int end = cells[(x0 + dir[0]*(i-target)) * height + y0 + dir[1]*(i-target)];
+                    if(end == playerId) myPieces--;
+                    else if(end != 0) otherPieces--;
+                }
+                
+                if(i >= target-1) {
+                    
+                    if(myPieces == 1)
+                        score += otherPieces*otherPieces;
+                    if(otherPieces == 0)
+                        score += 2*myPieces-1;
+                }
+            }
+        }
+        return score;
+    }
+    
+    /**
+     * Orders moves by the number of stones near them, from most to fewest,
+     * keeping the existing order among moves with the same number.
+     * @param moves the moves to sort.
+     * @param numMoves the number of moves.
+     * @return the number of moves.
+     */
+    private int sortByNearby(int[] moves, int numMoves) {
+        
+        //Counting sort, in which each bucket holds the moves with one number of stones.
+        Arrays.fill(buckets, 0);
+        for(int i = 0; i < numMoves; i++) buckets[MAX_NEARBY - nearby[moves[i]] + 1]++;
+        for(int i = 1; i < buckets.length; i++) buckets[i] += buckets[i-1];
+        for(int i = 0; i < numMoves; i++) sorted[buckets[MAX_NEARBY - nearby[moves[i]]]++] = moves[i];
+        
+        System.arraycopy(sorted, 0, moves, 0, numMoves);
+        return numMoves;
+    }
+    
+    /**
+     * Adds to the number of stones near each tile within 'PROXIMITY' tiles of a stone.
+     * @param x the x position of the stone.
+     * @param y the y position of the stone.
+     * @param change 1 if the stone was placed, or -1 if removed.
+     */
+    private void updateNearby(int x, int y, int change) {
+        
+        for(int xx = Math.max(x - PROXIMITY, 0); xx <= Math.min(x + PROXIMITY, width - 1); xx++) {
+            for(int yy = Math.max(y - PROXIMITY, 0); yy <= Math.min(y + PROXIMITY, height - 1); yy++) {
+                nearby[board.index(xx, yy)] += change;
+            }
+        }
+    }
+    
+    /**
+     * Determines how many tiles a line may extend from a stone, up to 'target - 1'.
+     * @param x the x position of the stone.
+     * @param y the y position of the stone.
+     * @param dx the x component of the direction.
+     * @param dy the y component of the direction.
+     * @return the number of tiles in bounds in this direction.
+     */
+    private int reach(int x, int y, int dx, int dy) {
+        
+        int xLen = dx > 0 ? width-x-1 : dx < 0 ? x : target;
+        int yLen = dy > 0 ? height-y-1 : dy < 0 ? y : target;
+        return Math.min(Math.min(xLen, yLen), target-1);
+    }
+}
@@ -0,0 +1,146 @@
+package strategybots.bots.search;
+
+import strategybots.bots.search.AlphaBetaSearch.Result;
+
+/**
+ * Multi-threaded search using Lazy SMP.<br>
+ * <br>
+ * Each thread runs an independent 'AlphaBetaSearch' on its own copy of the
+ * position, and the threads cooperate only through a shared 'TranspositionTable'.
+ * Half of the helper threads search one ply deeper than the main thread at each
+ * iteration, such that the threads tend to explore different parts of the tree.<br>
+ * <br>
+ * The time limit applies only to the main thread; helpers are stopped once the
+ * main thread is finished. The deepest completed iteration of any thread is returned.
+ *
+ * @author Alec Dorrington
+ */
+public class ParallelSearch {
+    
+    /** The search engine used by each thread, of which the first is the main thread. */
+    private final AlphaBetaSearch[] engines;
+    
+    /** The transposition table shared by all threads. */
+    private final TranspositionTable table;
+    
+    /**
+     * Constructs a new parallel search for the given position.
+     * @param position the position from which to search.
+     * @param table the transposition table shared by all threads.
+     * @param numThreads the number of threads to use, including the calling thread.
+     */
+    public ParallelSearch(Position position, TranspositionTable table, int numThreads) {
+        
+        this.table = table;
+        engines = new AlphaBetaSearch[Math.max(numThreads, 1)];
+        engines[0] = new AlphaBetaSearch(position, table);
+        
+        for(int i = 1; i < engines.length; i++) {
+            engines[i] = new AlphaBetaSearch(position.copy(), table);
+            engines[i].setDepthOffset(i % 2);
+        }
+    }
+    
+    /**
+     * Searches for the best move using all threads.<br>
+     * The main search runs on the calling thread.
+     * @param time the time limit for the search, in milliseconds.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @return the result of the deepest iteration completed by any thread,
+     * or null if the search was stopped before any iteration completed.
+     */
+    public Result search(long time, int maxDepth) {
+        table.newSearch();
+        return run(time, maxDepth, null);
+    }
+    
+    /**
+     * Searches for the best move using all threads, for as long as the given
+     * time manager allows.<br>
+     * The main search runs on the calling thread, and reports to the manager.
+     * @param manager decides how long to search.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @return the result of the deepest iteration completed by any thread,
+     * or null if the search was stopped before any iteration completed.
+     */
+    public Result search(TimeManager manager, int maxDepth) {
+        table.newSearch();
+        return run(Long.MAX_VALUE, maxDepth, manager);
+    }
+    
+    /**
+     * Searches using all threads until stopped from another thread using 'stop()',
+     * for use during the turn of the opponent.<br>
+     * The transposition table isn't aged, so that the entries stored remain
+     * preferred during the search of the following turn.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @return the result of the deepest iteration completed by any thread,
+     * or null if the search was stopped before any iteration completed.
+     */
+    public Result ponder(int maxDepth) { return run(Long.MAX_VALUE, maxDepth, null); }
+    
+    /**
+     * Searches for the best move using all threads, without ageing the table.
+     * @param time the time limit for the search, in milliseconds.
+     * @param maxDepth the maximum depth to search, in plies.
+     * @param manager decides how long to search in place of the time limit, or null.
+     * @return the result of the deepest iteration completed by any thread,
+     * or null if the search was stopped before any iteration completed.
+     */
+    private Result run(long time, int maxDepth, TimeManager manager) {
+        
+        Thread[] threads = new Thread[engines.length];
+        Result[] results = new Result[engines.length];
+        
+        for(int i = 1; i < engines.length; i++) {
+            
+            int id = i;
+            engines[id].prepare();
+            threads[id] = new Thread(() -> {
+                results[id] = engines[id].iterate(Long.MAX_VALUE, maxDepth, null);
+            }, "Search Helper " + id);
+            threads[id].setDaemon(true);
+            threads[id].start();
+        }
+        
+        engines[0].prepare();
+        results[0] = engines[0].iterate(time, maxDepth, manager);
+        
+        //Stop all helpers before waiting for them, so that they finish together.
+        for(int i = 1; i < engines.length; i++) engines[i].stop();
+        
+        for(int i = 1; i < engines.length; i++) {
+            try {
+                threads[i].join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        Result best = results[0];
+        long nodes = 0;
+        
+        for(int i = 0; i < engines.length; i++) {
+            
+            nodes += engines[i].getNodes();
+            if(results[i] != null && (best == null
+                    || results[i].getDepth() > best.getDepth())) {
+                best = results[i];
+            }
+        }
+        if(best == null) return null;
+        return new Result(best.getMove(), best.getScore(), best.getDepth(),
+                nodes, results[0] == null ? best.getTime() : results[0].getTime());
+    }
+    
+    /**
+     * Aborts the search in progress, which will return the result of the
+     * deepest iteration completed so far.
+     */
+    public void stop() { engines[0].stop(); }
+    
+    /**
+     * @return the number of threads used, including the calling thread.
+     */
+    public int getNumThreads() { return engines.length; }
+}
@@ -0,0 +1,63 @@
+package strategybots.bots.search;
+
+/**
+ * Runs a search in the background during the turns of the opponent.<br>
+ * <br>
+ * The search itself is given by the bot, and should run until it is stopped,
+ * leaving behind anything of use to the next turn (e.g. the entries of a
+ * 'TranspositionTable', or the tree of a Monte Carlo search). It must search
+ * its own copy of the position, as the game may change while it runs.
+ *
+ * @author Alec Dorrington
+ */
+public class Ponderer {
+
+    /** The thread running the current search, or null if there is none. */
+    private Thread thread = null;
+
+    /** Aborts the current search. */
+    private Runnable stop = null;
+
+    /**
+     * Starts a new search in the background, stopping any previous search first.
+     * @param search the search to run, which should run until stopped.
+     * @param stop aborts the search, causing it to return soon after.
+     */
+    public synchronized void start(Runnable search, Runnable stop) {
+
+        stop();
+        this.stop = stop;
+        thread = new Thread(search, "Ponder");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the current search, if any, and waits for it to finish.<br>
+     * Keeps waiting even if interrupted, as the search may share its tree or table
+     * with the next, but the interrupt is restored before returning.
+     */
+    public synchronized void stop() {
+
+        if(thread == null) return;
+
+        //Keep stopping the search, in case it hadn't yet started when first stopped.
+        boolean interrupted = false;
+        while(thread.isAlive()) {
+            stop.run();
+            try {
+                thread.join(10);
+            } catch(InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        thread = null;
+        stop = null;
+        if(interrupted) Thread.currentThread().interrupt();
+    }
+
+    /**
+     * @return whether a search is currently running.
+     */
+    public synchronized boolean isRunning() { return thread != null && thread.isAlive(); }
+}
@@ -0,0 +1,70 @@
+package strategybots.bots.search;
+
+/**
+ * A game position which can be searched by 'AlphaBetaSearch'.<br>
+ * <br>
+ * Implementations adapt a specific game to the search engine. Moves are
+ * encoded as integers, and are applied and undone in place, such that the
+ * search can run without allocation. All scores are given from the perspective
+ * of the player whose turn it currently is.
+ *
+ * @author Alec Dorrington
+ */
+public interface Position {
+    
+    /**
+     * Fills the given array with every legal move in this position.<br>
+     * Moves which are more likely to be good should be given first.
+     * @param moves the array in which to store the moves, of length at least 'getMaxMoves()'.
+     * @return the number of legal moves.
+     */
+    int getMoves(int[] moves);
+    
+    /**
+     * Fills the given array with every legal move in this position, in any order.<br>
+     * Used by random playouts, for which ordering the moves would be wasted.
+     * @param moves the array in which to store the moves, of length at least 'getMaxMoves()'.
+     * @return the number of legal moves.
+     */
+    default int getUnorderedMoves(int[] moves) { return getMoves(moves); }
+    
+    /**
+     * Applies the given move, passing the turn to the next player.
+     * @param move the move to apply.
+     */
+    void apply(int move);
+    
+    /**
+     * Undoes the given move, which must have been the last move applied.
+     * @param move the move to undo.
+     */
+    void undo(int move);
+    
+    /**
+     * @return whether the game is over in this position.
+     */
+    boolean isTerminal();
+    
+    /**
+     * Evaluates this position from the perspective of the current player.<br>
+     * In terminal positions, this must be 'AlphaBetaSearch.WIN' for a win,
+     * '-AlphaBetaSearch.WIN' for a loss, or 0 for a draw.
+     * @return the estimated value of this position.
+     */
+    int evaluate();
+    
+    /**
+     * @return a 64-bit hash of this position, including the current player.
+     */
+    long hash();
+    
+    /**
+     * @return an upper bound on the number of legal moves in any position.
+     */
+    int getMaxMoves();
+    
+    /**
+     * @return an independent copy of this position, for use by another search thread.
+     */
+    Position copy();
+}
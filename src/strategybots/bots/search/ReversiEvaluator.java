@@ -0,0 +1,320 @@
+package strategybots.bots.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Static evaluation of standard 8x8 Reversi positions using pattern tables.<br>
+ * <br>
+ * Each pattern is a fixed set of up to 10 tiles along an edge, around a corner, or
+ * along a line or diagonal of the board. The contents of the tiles of a pattern
+ * (empty, own disc or opponent disc) form a base-3 index into a table of weights,
+ * and the evaluation is the sum of the weights of every pattern. Rather than listing
+ * each pattern in all of its orientations, the board itself is reflected into each
+ * of its symmetries, and the same tiles are read from each, such that every
+ * orientation of a pattern shares one table. Each pattern is read only from enough
+ * symmetries to cover every distinct placement of its tiles, such that no placement
+ * is counted twice (e.g. the main diagonal has only two, and each line only four).<br>
+ * <br>
+ * The tiles of a pattern are read as two bit strings (own and opponent discs),
+ * using only shifts, masks and multiplications, which are then converted to a
+ * base-3 index by table lookup. A full evaluation sums 46 weights.<br>
+ * <br>
+ * The game is divided into stages by the number of empty tiles, with separate
+ * weights for each stage. Weights are in units of '1 / SCALE' discs, such that the
+ * evaluation estimates the final disc differential of the player to move.
+ * Weights are fitted by 'ReversiTrainer', and stored as a file. The file is only
+ * memory-mapped while it is read, and the weights are copied into arrays on the heap,
+ * such that evaluation reads plain arrays rather than the mapped buffer.<br>
+ * <br>
+ * Boards use the layout of 'ReversiBitboard', and evaluators are immutable once
+ * loaded, so they may be shared freely between threads.
+ *
+ * @author Alec Dorrington
+ */
+public final class ReversiEvaluator {
+
+    /** The number of weight units per disc. */
+    public static final int SCALE = 128;
+
+    /** The number of game stages, each with its own weights. */
+    public static final int NUM_STAGES = 12;
+
+    /** The number of empty tiles covered by each stage. */
+    static final int STAGE_SIZE = 5;
+
+    /** The number of distinct patterns, each with its own table. */
+    static final int NUM_PATTERNS = 11;
+
+    /** The number of patterns read from all symmetries of the board. */
+    static final int NUM_FEATURES = 46;
+
+    /**
+     * The number of tiles in each pattern: the 2x5 corner, the 3x3 corner, the diagonals
+     * starting 0 to 4 tiles from the corner, the edge, and the lines 1 to 3 tiles from the edge.
+     */
+    private static final int[] PATTERN_SIZES = {10, 9, 8, 7, 6, 5, 4, 10, 8, 8, 8};
+
+    /** The index of the table of each pattern within the weights of a stage. */
+    static final int[] OFFSETS = new int[NUM_PATTERNS];
+
+    /** The number of weights in each stage. */
+    static final int STAGE_WEIGHTS;
+
+    /** The base-3 number with the same digits as each 10-bit binary number. */
+    private static final int[] TERNARY = new int[1 << 10];
+
+    /** Identifies weight files, followed by the number of stages and weights per stage. */
+    private static final int MAGIC = 0x52565054;
+
+    /** The size of the header of a weight file, in bytes. */
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /** The default location of the weight file. */
+    public static final String DEFAULT_PATH = "res/reversi/patterns.dat";
+
+    static {
+        int offset = 0;
+        for(int i = 0; i < NUM_PATTERNS; i++) {
+            OFFSETS[i] = offset;
+            offset += pow3(PATTERN_SIZES[i]);
+        }
+        STAGE_WEIGHTS = offset;
+
+        for(int i = 0; i < TERNARY.length; i++) {
+            for(int bit = 9; bit >= 0; bit--) TERNARY[i] = 3 * TERNARY[i] + (i >>> bit & 1);
+        }
+    }
+
+    /** The weights of each stage. */
+    private final short[][] weights;
+
+    /**
+     * Constructs a new evaluator with the given weights.
+     * @param weights the weights of each stage, which are not copied.
+     */
+    ReversiEvaluator(short[][] weights) {
+
+        if(weights.length != NUM_STAGES) {
+            throw new IllegalArgumentException("Expected " + NUM_STAGES + " stages.");
+        }
+        for(short[] stage : weights) {
+            if(stage.length != STAGE_WEIGHTS) {
+                throw new IllegalArgumentException("Expected " + STAGE_WEIGHTS + " weights per stage.");
+            }
+        }
+        this.weights = weights;
+    }
+
+    /**
+     * Loads the evaluator from the default weight file.
+     * @return the evaluator.
+     * @throws IOException if the file is missing or invalid.
+     */
+    public static ReversiEvaluator load() throws IOException { return load(Paths.get(DEFAULT_PATH)); }
+
+    /**
+     * Loads an evaluator from a weight file written by 'save()'.
+     * @param path the location of the weight file.
+     * @return the evaluator.
+     * @throws IOException if the file is missing or invalid.
+     */
+    public static ReversiEvaluator load(Path path) throws IOException {
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            long size = HEADER_SIZE + (long) NUM_STAGES * STAGE_WEIGHTS * Short.BYTES;
+            if(channel.size() != size) throw new IOException("Invalid weight file: " + path);
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if(buffer.getInt() != MAGIC || buffer.getInt() != NUM_STAGES
+                    || buffer.getInt() != STAGE_WEIGHTS) {
+                throw new IOException("Invalid weight file: " + path);
+            }
+
+            ShortBuffer shorts = buffer.asShortBuffer();
+            short[][] weights = new short[NUM_STAGES][STAGE_WEIGHTS];
+            for(short[] stage : weights) shorts.get(stage);
+            return new ReversiEvaluator(weights);
+        }
+    }
+
+    /**
+     * Saves the weights of this evaluator, to be loaded later by 'load()'.
+     * @param path the location of the weight file, which is replaced if it exists.
+     * @throws IOException if the file couldn't be written.
+     */
+    public void save(Path path) throws IOException {
+
+        if(path.getParent() != null) Files.createDirectories(path.getParent());
+
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + STAGE_WEIGHTS * Short.BYTES);
+            buffer.putInt(MAGIC).putInt(NUM_STAGES).putInt(STAGE_WEIGHTS).flip();
+            while(buffer.hasRemaining()) channel.write(buffer);
+
+            for(short[] stage : weights) {
+                buffer.clear();
+                buffer.asShortBuffer().put(stage);
+                buffer.limit(STAGE_WEIGHTS * Short.BYTES);
+                while(buffer.hasRemaining()) channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the given position.
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @return the estimated final disc differential for the player to move, in units of '1 / SCALE' discs.
+     */
+    public int evaluate(long own, long opp) {
+
+        short[] stage = weights[getStage(own, opp)];
+        long ownT = transpose(own), oppT = transpose(opp);
+        int score = 0;
+
+        for(int i = 0; i < 4; i++) {
+
+            long o = reflect(own, i), p = reflect(opp, i);
+            long oT = reflect(ownT, i), pT = reflect(oppT, i);
+
+            score += stage[OFFSETS[0] + index(corner2x5(o), corner2x5(p))]
+                   + stage[OFFSETS[0] + index(corner2x5(oT), corner2x5(pT))]
+                   + stage[OFFSETS[1] + index(corner3x3(o), corner3x3(p))];
+            //The two longest diagonals are covered by the first two symmetries alone.
+            for(int d = i < 2 ? 0 : 1; d <= 4; d++) {
+                score += stage[OFFSETS[2 + d] + index(diagonal(o, d), diagonal(p, d))];
+            }
+
+            //Reflecting a line along its length gives the same tiles, so only reflect across it.
+            if(i < 2) {
+                score += stage[OFFSETS[7] + index(edge(o), edge(p))]
+                       + stage[OFFSETS[7] + index(edge(oT), edge(pT))];
+                for(int l = 1; l <= 3; l++) {
+                    score += stage[OFFSETS[7 + l] + index(line(o, l), line(p, l))]
+                           + stage[OFFSETS[7 + l] + index(line(oT, l), line(pT, l))];
+                }
+            }
+        }
+        return score;
+    }
+
+    /**
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @return the stage of the game, used to select the weights.
+     */
+    static int getStage(long own, long opp) {
+        return Math.min((Long.SIZE - Long.bitCount(own | opp)) / STAGE_SIZE, NUM_STAGES - 1);
+    }
+
+    /**
+     * Finds the index of every pattern within the weights of the stage, in the same
+     * order as they are summed by 'evaluate()', for use in fitting the weights.
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @param features the array in which to store the indices, of length at least 'NUM_FEATURES'.
+     */
+    static void getFeatures(long own, long opp, int[] features) {
+
+        long ownT = transpose(own), oppT = transpose(opp);
+        int n = 0;
+
+        for(int i = 0; i < 4; i++) {
+
+            long o = reflect(own, i), p = reflect(opp, i);
+            long oT = reflect(ownT, i), pT = reflect(oppT, i);
+
+            features[n++] = OFFSETS[0] + index(corner2x5(o), corner2x5(p));
+            features[n++] = OFFSETS[0] + index(corner2x5(oT), corner2x5(pT));
+            features[n++] = OFFSETS[1] + index(corner3x3(o), corner3x3(p));
+            for(int d = i < 2 ? 0 : 1; d <= 4; d++) {
+                features[n++] = OFFSETS[2 + d] + index(diagonal(o, d), diagonal(p, d));
+            }
+
+            if(i < 2) {
+                features[n++] = OFFSETS[7] + index(edge(o), edge(p));
+                features[n++] = OFFSETS[7] + index(edge(oT), edge(pT));
+                for(int l = 1; l <= 3; l++) {
+                    features[n++] = OFFSETS[7 + l] + index(line(o, l), line(p, l));
+                    features[n++] = OFFSETS[7 + l] + index(line(oT, l), line(pT, l));
+                }
+            }
+        }
+    }
+
+    /**
+     * @param own the tiles of a pattern which hold discs of the player to move.
+     * @param opp the tiles of a pattern which hold discs of the opponent.
+     * @return the base-3 index of the pattern.
+     */
+    private static int index(int own, int opp) { return TERNARY[own] + 2 * TERNARY[opp]; }
+
+    /** The first column, and the two tiles diagonally adjacent to its corners (X-squares). */
+    private static int edge(long b) {
+        return (int) (b & 0xFF) | (int) (b >>> 1 & 0x100) | (int) (b >>> 5 & 0x200);
+    }
+
+    /** The first 5 tiles of the first two columns. */
+    private static int corner2x5(long b) {
+        return (int) (b & 0x1F) | (int) (b >>> 3 & 0x3E0);
+    }
+
+    /** The 3x3 square at the corner. */
+    private static int corner3x3(long b) {
+        return (int) (b & 0x7) | (int) (b >>> 5 & 0x38) | (int) (b >>> 10 & 0x1C0);
+    }
+
+    /** The column at the given distance from the edge. */
+    private static int line(long b, int column) {
+        return (int) (b >>> 8 * column & 0xFF);
+    }
+
+    /** The diagonal starting at the given column of the first row, gathered into a byte. */
+    private static int diagonal(long b, int column) {
+        return (int) (((b >>> 8 * column) & 0x8040201008040201L >>> 9 * column)
+                * 0x0101010101010101L >>> 56);
+    }
+
+    /** Reflects the board from left to right (bit 0 of 'i') and from top to bottom (bit 1). */
+    private static long reflect(long b, int i) {
+
+        if((i & 1) != 0) b = Long.reverseBytes(b);
+        if((i & 2) != 0) {
+            b = b >>> 1 & 0x5555555555555555L | (b & 0x5555555555555555L) << 1;
+            b = b >>> 2 & 0x3333333333333333L | (b & 0x3333333333333333L) << 2;
+            b = b >>> 4 & 0x0F0F0F0F0F0F0F0FL | (b & 0x0F0F0F0F0F0F0F0FL) << 4;
+        }
+        return b;
+    }
+
+    /** Reflects the board about its main diagonal. */
+    private static long transpose(long b) {
+        long t = 0x0F0F0F0F00000000L & (b ^ b << 28);
+        b ^= t ^ t >>> 28;
+        t = 0x3333000033330000L & (b ^ b << 14);
+        b ^= t ^ t >>> 14;
+        t = 0x5500550055005500L & (b ^ b << 7);
+        return b ^ t ^ t >>> 7;
+    }
+
+    /**
+     * @param n a non-negative integer.
+     * @return 3 to the power of n.
+     */
+    private static int pow3(int n) {
+        int result = 1;
+        for(int i = 0; i < n; i++) result *= 3;
+        return result;
+    }
+}
@@ -0,0 +1,191 @@
+package strategybots.bots.search;
+
+import java.util.Random;
+
+import strategybots.games.Reversi.ReversiState;
+import strategybots.games.bitboard.ReversiBitboard;
+
+/**
+ * Search adapter for Reversi.<br>
+ * <br>
+ * Moves are tile indices as used by 'ReversiState', or 'ReversiState.PASS'
+ * when the current player has no legal moves but the opponent does.
+ * The game is over once neither player can move. Positions are evaluated
+ * by the difference in the number of discs, or on the standard 8x8 board by
+ * a 'ReversiEvaluator' if one is given.<br>
+ * <br>
+ * Boards of up to 64 tiles are searched using a 'ReversiBitboard', which uses
+ * the same move encoding, in which case the state itself is left unchanged.
+ *
+ * @author Alec Dorrington
+ */
+public class ReversiPosition implements Position {
+
+    /**
+     * Random values used to hash the owner of each tile, for boards too large for a bitboard.
+     * Grown as larger boards are searched, keeping the values already used.
+     */
+    private static volatile long[][] zobrist = new long[3][0];
+
+    /** The underlying game state, which is modified during the search unless 'bits' is used. */
+    private final ReversiState state;
+
+    /** The bitboard on which to search, or null if the board is too large. */
+    private final ReversiBitboard bits;
+
+    /** The evaluation of non-terminal positions, or null to count discs. */
+    private final ReversiEvaluator evaluator;
+
+    /** The hash values of each tile, used only without a bitboard. */
+    private final long[][] keys;
+
+    /**
+     * Constructs a new position from a snapshot of a Reversi game.
+     * @param state the snapshot from which to search.
+     */
+    public ReversiPosition(ReversiState state) { this(state, null); }
+
+    /**
+     * Constructs a new position from a snapshot of a Reversi game.
+     * @param state the snapshot from which to search.
+     * @param evaluator the evaluation of non-terminal positions, which is used
+     * only on the standard 8x8 board, or null to count discs.
+     */
+    public ReversiPosition(ReversiState state, ReversiEvaluator evaluator) {
+        this(state, ReversiBitboard.fits(state.getWidth(), state.getHeight()) ?
+                ReversiBitboard.create(state) : null,
+                state.getWidth() == 8 && state.getHeight() == 8 ? evaluator : null);
+    }
+
+    /**
+     * @param state the underlying game state.
+     * @param bits the bitboard on which to search, or null.
+     * @param evaluator the evaluation of non-terminal positions, or null.
+     */
+    private ReversiPosition(ReversiState state, ReversiBitboard bits, ReversiEvaluator evaluator) {
+        this.state = state;
+        this.bits = bits;
+        this.evaluator = evaluator;
+        keys = bits == null ? getZobrist(state.getWidth() * state.getHeight()) : null;
+    }
+
+    @Override
+    public int getMoves(int[] moves) {
+
+        if(bits != null) return bits.getLegalMoves(moves);
+
+        int numMoves = 0;
+        int size = state.getWidth() * state.getHeight();
+        for(int i = 0; i < size; i++) {
+            if(state.isLegal(i)) moves[numMoves++] = i;
+        }
+
+        //Pass only if the opponent would be able to move.
+        if(numMoves == 0 && opponentHasMoves()) moves[numMoves++] = ReversiState.PASS;
+        return numMoves;
+    }
+
+    @Override
+    public void apply(int move) {
+        if(bits != null) bits.apply(move);
+        else state.apply(move);
+    }
+
+    @Override
+    public void undo(int move) {
+        if(bits != null) bits.undo(move);
+        else state.undo(move);
+    }
+
+    @Override
+    public boolean isTerminal() {
+
+        if(bits != null) return bits.getEmpty() == 0 || bits.isGameOver();
+        return state.getScore(0) == 0 || (!state.hasMoves() && !opponentHasMoves());
+    }
+
+    @Override
+    public int evaluate() {
+
+        boolean terminal = isTerminal();
+        if(evaluator != null && !terminal) {
+            int playerId = bits.getCurrentPlayerId();
+            return evaluator.evaluate(bits.getStones(playerId), bits.getStones(3 - playerId));
+        }
+
+        int score;
+        if(bits != null) {
+            int playerId = bits.getCurrentPlayerId();
+            score = bits.getScore(playerId) - bits.getScore(3 - playerId);
+        } else {
+            int playerId = state.getCurrentPlayerId();
+            score = state.getScore(playerId) - state.getScore(playerId % 2 + 1);
+        }
+
+        if(!terminal) return score;
+        return score > 0 ? AlphaBetaSearch.WIN : score < 0 ? -AlphaBetaSearch.WIN : 0;
+    }
+
+    @Override
+    public long hash() {
+
+        if(bits != null) return bits.hash();
+
+        long hash = state.getCurrentPlayerId();
+        for(int x = 0; x < state.getWidth(); x++) {
+            for(int y = 0; y < state.getHeight(); y++) {
+                hash ^= keys[state.get(x, y)][state.index(x, y)];
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public int getMaxMoves() { return state.getWidth() * state.getHeight(); }
+
+    @Override
+    public ReversiPosition copy() {
+        return bits != null ? new ReversiPosition(state, bits.copy(), evaluator)
+                : new ReversiPosition(state.copy());
+    }
+
+    /**
+     * @param size the number of tiles on the board.
+     * @return the hash values of at least this many tiles, the same for every board of this size.
+     */
+    private static long[][] getZobrist(int size) {
+
+        long[][] table = zobrist;
+        if(table[0].length >= size) return table;
+
+        synchronized(ReversiPosition.class) {
+            if(zobrist[0].length >= size) return zobrist;
+
+            //The same seed is used each time, so that existing values don't change.
+            table = new long[3][size];
+            Random random = new Random(0);
+            for(int i = 0; i < size; i++) {
+                table[1][i] = random.nextLong();
+                table[2][i] = random.nextLong();
+            }
+            zobrist = table;
+        }
+        return table;
+    }
+
+    /**
+     * @return the underlying game state, used to decode moves.
+     */
+    public ReversiState getState() { return state; }
+
+    /**
+     * @return whether the opponent of the current player has any legal moves.
+     */
+    private boolean opponentHasMoves() {
+
+        state.apply(ReversiState.PASS);
+        boolean hasMoves = state.hasMoves();
+        state.undo(ReversiState.PASS);
+        return hasMoves;
+    }
+}
@@ -0,0 +1,523 @@
+package strategybots.bots.search;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import strategybots.games.bitboard.ReversiBitboard;
+
+/**
+ * Exact endgame solver for Reversi, for boards of up to 64 tiles.<br>
+ * <br>
+ * Searches every line to the end of the game using negamax with alpha-beta pruning,
+ * returning the best move and the exact final disc differential under perfect play.
+ * Positions are pairs of words (the discs of the player to move, and of the opponent),
+ * and moves are generated using the Kogge-Stone fills of 'ReversiBitboard'.<br>
+ * <br>
+ * Far from the end, moves are ordered fastest-first: the move leaving the opponent
+ * with the fewest replies is searched first, as it is the most likely to cause a
+ * cutoff, and the best move from the transposition table before that. Close to the
+ * end, where ordering costs more than it saves, moves are ordered by parity:
+ * moves into quadrants with an odd number of empty tiles are searched first, since
+ * the player who moves first into such a region can usually also move last.
+ * The final empty tile is resolved directly, without generating moves.<br>
+ * <br>
+ * The root is split between threads: the first move is searched alone to establish
+ * a bound, then the remaining moves are shared out, each searched with a null window
+ * around the best score so far and searched again only if it proves better.
+ * The table is shared between threads.
+ *
+ * @author Alec Dorrington
+ */
+public class ReversiSolver {
+
+    /** Value greater than any possible disc differential. */
+    private static final int INFINITY = 1000;
+
+    /** Value used in place of a move where there is none. */
+    private static final int NO_MOVE = -1;
+
+    /** The number of empty tiles at or below which moves are ordered only by parity. */
+    private static final int PARITY_DEPTH = 5;
+
+    /** The number of empty tiles at or above which the transposition table is used. */
+    private static final int TABLE_DEPTH = 7;
+
+    /** The number of nodes between each check of the deadline, must be a power of 2. */
+    private static final int POLL_INTERVAL = 1 << 12;
+
+    /** The board, which gives the dimensions and move generation, and the position to solve. */
+    private final ReversiBitboard board;
+
+    /** The transposition table, which may be shared and reused. */
+    private final TranspositionTable table;
+
+    /** The number of threads to use, including the calling thread. */
+    private final int numThreads;
+
+    /** Masks of the tiles in each quadrant of the board. */
+    private final long[] regions = new long[4];
+
+    /** Mask of the corners of the board, which can never be flipped. */
+    private final long corners;
+
+    /** Whether the current solve has been aborted. */
+    private volatile boolean stopped = false;
+
+    /** The time at which the current solve is aborted, in milliseconds. */
+    private long deadline = Long.MAX_VALUE;
+
+    /**
+     * Constructs a new solver for the position on the given board.
+     * @param board the position to solve, from the perspective of the current player.
+     * @param table the transposition table to use, which may be shared and reused.
+     * @param numThreads the number of threads to use, including the calling thread.
+     */
+    public ReversiSolver(ReversiBitboard board, TranspositionTable table, int numThreads) {
+
+        this.board = board;
+        this.table = table;
+        this.numThreads = Math.max(numThreads, 1);
+
+        int width = board.getWidth(), height = board.getHeight();
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < height; y++) {
+                int region = (2 * x >= width ? 1 : 0) + (2 * y >= height ? 2 : 0);
+                regions[region] |= 1L << board.index(x, y);
+            }
+        }
+        corners = 1L << board.index(0, 0) | 1L << board.index(0, height - 1)
+                | 1L << board.index(width - 1, 0) | 1L << board.index(width - 1, height - 1);
+    }
+
+    /**
+     * Solves the position, unless the time limit passes first.
+     * The calling thread acts as one of the workers.
+     * @param time the time limit, in milliseconds.
+     * @return the best move and its exact score, or null if the time limit passed.
+     */
+    public Result solve(long time) {
+
+        long start = System.currentTimeMillis();
+        deadline = time > Long.MAX_VALUE - start ? Long.MAX_VALUE : start + time;
+        stopped = false;
+        table.newSearch();
+
+        int playerId = board.getCurrentPlayerId();
+        long own = board.getStones(playerId), opp = board.getStones(3 - playerId);
+        int empties = Long.bitCount(board.getEmpty());
+
+        Worker[] workers = new Worker[numThreads];
+        for(int i = 0; i < numThreads; i++) workers[i] = new Worker();
+
+        //With no moves, either the game is over or the turn must be passed.
+        if(board.getLegalMask(own, opp) == 0) {
+            int score = workers[0].solve(own, opp, -INFINITY, INFINITY, empties);
+            return stopped ? null : new Result(ReversiBitboard.PASS, score,
+                    empties, workers[0].nodes, System.currentTimeMillis() - start);
+        }
+
+        int[] moves = new int[Long.SIZE];
+        int numMoves = workers[0].order(own, opp, empties, NO_MOVE, moves);
+
+        //Search the first move alone, to find a good bound for the rest.
+        Split split = new Split(moves, numMoves);
+        split.update(moves[0], workers[0].searchMove(own, opp, moves[0], -INFINITY, INFINITY, empties));
+
+        Thread[] threads = new Thread[numThreads];
+        for(int i = 1; i < numThreads; i++) {
+            Worker worker = workers[i];
+            threads[i] = new Thread(() -> worker.searchSplit(split, own, opp, empties),
+                    "Solver Worker " + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        workers[0].searchSplit(split, own, opp, empties);
+
+        long nodes = workers[0].nodes;
+        for(int i = 1; i < numThreads; i++) {
+            try {
+                threads[i].join();
+            } catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            nodes += workers[i].nodes;
+        }
+
+        if(stopped) return null;
+        return new Result(split.bestMove, split.bestScore, empties,
+                nodes, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Aborts the solve in progress, which will then return null.
+     */
+    public void stop() { stopped = true; }
+
+    /**
+     * @param own the discs of one player.
+     * @param opp the discs of the other player.
+     * @return a 64-bit hash of the position, from the perspective of the first player.
+     */
+    private static long hash(long own, long opp) {
+        return mix(own) ^ mix(~opp);
+    }
+
+    /**
+     * Mixes the bits of a 64-bit value, for use in hashing.
+     * @param z the value to mix.
+     * @return the mixed value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * The moves at the root which remain to be searched, and the best found so far.
+     * Shared between all threads.
+     * @author Alec Dorrington
+     */
+    private static final class Split {
+
+        /** The moves at the root, in order. */
+        private final int[] moves;
+
+        /** The number of moves at the root. */
+        private final int numMoves;
+
+        /** The index of the next move to be searched. */
+        private final AtomicInteger next = new AtomicInteger(1);
+
+        /** The best move so far, and its exact score. */
+        private int bestMove = NO_MOVE, bestScore = -INFINITY;
+
+        private Split(int[] moves, int numMoves) {
+            this.moves = moves;
+            this.numMoves = numMoves;
+        }
+
+        /**
+         * @param move a move which has been searched.
+         * @param score its exact score, if better than the best so far.
+         */
+        private synchronized void update(int move, int score) {
+            if(score > bestScore) {
+                bestScore = score;
+                bestMove = move;
+            }
+        }
+
+        /**
+         * @return the best score so far.
+         */
+        private synchronized int getBestScore() { return bestScore; }
+    }
+
+    /**
+     * A single search thread, with its own buffers.
+     * @author Alec Dorrington
+     */
+    private final class Worker {
+
+        /** Buffers for the moves at each number of empty tiles, and their ordering keys. */
+        private final int[][] moves = new int[Long.SIZE + 1][Long.SIZE],
+                keys = new int[Long.SIZE + 1][Long.SIZE];
+
+        /** Buffers for the discs flipped by each move, so they needn't be found again. */
+        private final long[][] flips = new long[Long.SIZE + 1][Long.SIZE];
+
+        /** The number of nodes visited by this worker. */
+        private long nodes = 0;
+
+        /**
+         * Searches moves from the root until there are none left.
+         * @param split the moves shared between threads.
+         * @param own the discs of the player to move at the root.
+         * @param opp the discs of their opponent.
+         * @param empties the number of empty tiles at the root.
+         */
+        private void searchSplit(Split split, long own, long opp, int empties) {
+
+            for(int i = split.next.getAndIncrement(); i < split.numMoves && !stopped;
+                    i = split.next.getAndIncrement()) {
+
+                int move = split.moves[i], alpha = split.getBestScore();
+
+                //Most moves are worse, which a null window proves cheaply.
+                int score = searchMove(own, opp, move, alpha, alpha + 1, empties);
+                if(score > alpha) score = searchMove(own, opp, move, alpha, INFINITY, empties);
+                if(!stopped) split.update(move, score);
+            }
+        }
+
+        /**
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @param move the move to search, which must be legal.
+         * @param alpha the lower bound of the search window.
+         * @param beta the upper bound of the search window.
+         * @param empties the number of empty tiles before the move.
+         * @return the score of the move, from the perspective of the player making it.
+         */
+        private int searchMove(long own, long opp, int move, int alpha, int beta, int empties) {
+            return searchMove(own, opp, move, board.getFlips(own, opp, move), alpha, beta, empties);
+        }
+
+        /**
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @param move the move to search, which must be legal.
+         * @param flips the discs flipped by the move.
+         * @param alpha the lower bound of the search window.
+         * @param beta the upper bound of the search window.
+         * @param empties the number of empty tiles before the move.
+         * @return the score of the move, from the perspective of the player making it.
+         */
+        private int searchMove(long own, long opp, int move, long flips,
+                int alpha, int beta, int empties) {
+            return -solve(opp & ~flips, own | flips | 1L << move, -beta, -alpha, empties - 1);
+        }
+
+        /**
+         * Negamax search to the end of the game, with fastest-first move ordering.
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @param alpha the lower bound of the search window.
+         * @param beta the upper bound of the search window.
+         * @param empties the number of empty tiles.
+         * @return the final disc differential, from the perspective of the player to move.
+         */
+        private int solve(long own, long opp, int alpha, int beta, int empties) {
+
+            if(empties <= PARITY_DEPTH) return solveParity(own, opp, alpha, beta, empties);
+
+            //Poll the clock only occasionally, as it is relatively expensive.
+            if((++nodes & (POLL_INTERVAL - 1)) == 0
+                    && System.currentTimeMillis() >= deadline) stopped = true;
+            if(stopped) return 0;
+
+            if(board.getLegalMask(own, opp) == 0) {
+                if(board.getLegalMask(opp, own) == 0) return score(own, opp);
+                return -solve(opp, own, -beta, -alpha, empties);
+            }
+
+            long key = 0;
+            int hashMove = NO_MOVE, originalAlpha = alpha;
+
+            if(empties >= TABLE_DEPTH) {
+
+                key = hash(own, opp);
+                long data = table.probe(key);
+
+                if(data != 0 && TranspositionTable.getDepth(data) == empties) {
+
+                    int score = TranspositionTable.getScore(data);
+                    switch(TranspositionTable.getBound(data)) {
+                        case TranspositionTable.EXACT: return score;
+                        case TranspositionTable.LOWER: alpha = Math.max(alpha, score); break;
+                        case TranspositionTable.UPPER: beta = Math.min(beta, score); break;
+                    }
+                    if(alpha >= beta) return score;
+                    hashMove = TranspositionTable.getMove(data);
+                }
+            }
+
+            int[] moves = this.moves[empties];
+            long[] flips = this.flips[empties];
+            int numMoves = order(own, opp, empties, hashMove, moves);
+            int best = -INFINITY, bestMove = NO_MOVE;
+
+            for(int i = 0; i < numMoves; i++) {
+
+                int move = moves[i], score;
+
+                //Principal variation search.
+                if(i == 0) {
+                    score = searchMove(own, opp, move, flips[i], alpha, beta, empties);
+                } else {
+                    score = searchMove(own, opp, move, flips[i], alpha, alpha + 1, empties);
+                    if(score > alpha && score < beta) {
+                        score = searchMove(own, opp, move, flips[i], alpha, beta, empties);
+                    }
+                }
+                if(stopped) return 0;
+
+                if(score > best) {
+                    best = score;
+                    bestMove = move;
+                }
+                if(score > alpha) alpha = score;
+                if(alpha >= beta) break;
+            }
+
+            if(empties >= TABLE_DEPTH) {
+                int bound = best <= originalAlpha ? TranspositionTable.UPPER
+                        : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+                table.store(key, bestMove, best, empties, bound);
+            }
+            return best;
+        }
+
+        /**
+         * Negamax search to the end of the game, with moves ordered only by parity,
+         * for the last few empty tiles.
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @param alpha the lower bound of the search window.
+         * @param beta the upper bound of the search window.
+         * @param empties the number of empty tiles.
+         * @return the final disc differential, from the perspective of the player to move.
+         */
+        private int solveParity(long own, long opp, int alpha, int beta, int empties) {
+
+            nodes++;
+            long empty = ~(own | opp) & board.getBoardMask();
+            if(empties == 1) return solveLast(own, opp, Long.numberOfTrailingZeros(empty));
+
+            //Odd regions first, then even regions.
+            long odd = 0;
+            for(long region : regions) {
+                if((Long.bitCount(empty & region) & 1) != 0) odd |= region;
+            }
+
+            int best = -INFINITY;
+            for(int pass = 0; pass < 2; pass++) {
+                for(long tiles = empty & (pass == 0 ? odd : ~odd); tiles != 0; tiles &= tiles - 1) {
+
+                    int move = Long.numberOfTrailingZeros(tiles);
+                    long flips = board.getFlips(own, opp, move);
+                    if(flips == 0) continue;
+
+                    int score = -solveParity(opp & ~flips, own | flips | 1L << move,
+                            -beta, -alpha, empties - 1);
+                    if(score > best) best = score;
+                    if(score > alpha) alpha = score;
+                    if(alpha >= beta) return best;
+                }
+            }
+            if(best != -INFINITY) return best;
+
+            //With no moves, either the game is over or the turn must be passed.
+            for(long tiles = empty; tiles != 0; tiles &= tiles - 1) {
+                if(board.getFlips(opp, own, Long.numberOfTrailingZeros(tiles)) != 0) {
+                    return -solveParity(opp, own, -beta, -alpha, empties);
+                }
+            }
+            return score(own, opp);
+        }
+
+        /**
+         * Resolves the final empty tile directly.
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @param move the last empty tile.
+         * @return the final disc differential, from the perspective of the player to move.
+         */
+        private int solveLast(long own, long opp, int move) {
+
+            int score = score(own, opp);
+
+            long flips = board.getFlips(own, opp, move);
+            if(flips != 0) return score + 1 + 2 * Long.bitCount(flips);
+
+            flips = board.getFlips(opp, own, move);
+            if(flips != 0) return score - 1 - 2 * Long.bitCount(flips);
+            return score;
+        }
+
+        /**
+         * Fills the given array with the legal moves, fastest-first.
+         * The discs flipped by each move are stored in the same order in 'flips'.
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @param empties the number of empty tiles.
+         * @param hashMove the move to search first, or 'NO_MOVE'.
+         * @param moves the array in which to store the moves.
+         * @return the number of legal moves.
+         */
+        private int order(long own, long opp, int empties, int hashMove, int[] moves) {
+
+            int[] keys = this.keys[empties];
+            long[] flipped = this.flips[empties];
+            long empty = ~(own | opp) & board.getBoardMask(), odd = 0;
+            for(long region : regions) {
+                if((Long.bitCount(empty & region) & 1) != 0) odd |= region;
+            }
+
+            int numMoves = 0;
+            for(long legal = board.getLegalMask(own, opp); legal != 0; legal &= legal - 1) {
+
+                int move = Long.numberOfTrailingZeros(legal);
+                long flips = board.getFlips(own, opp, move);
+
+                //Fewest opponent replies first, counting corners twice,
+                //and preferring odd regions between equals.
+                long replies = board.getLegalMask(opp & ~flips, own | flips | 1L << move);
+                int key = move == hashMove ? -1 : 2 * (Long.bitCount(replies)
+                        + Long.bitCount(replies & corners)) + ((odd >>> move & 1) == 0 ? 1 : 0);
+
+                //Insertion sort, as there are few moves.
+                int i = numMoves++;
+                for(; i > 0 && keys[i - 1] > key; i--) {
+                    moves[i] = moves[i - 1];
+                    keys[i] = keys[i - 1];
+                    flipped[i] = flipped[i - 1];
+                }
+                moves[i] = move;
+                keys[i] = key;
+                flipped[i] = flips;
+            }
+            return numMoves;
+        }
+
+        /**
+         * @param own the discs of the player to move.
+         * @param opp the discs of their opponent.
+         * @return the disc differential, from the perspective of the player to move.
+         */
+        private int score(long own, long opp) { return Long.bitCount(own) - Long.bitCount(opp); }
+    }
+
+    /**
+     * The result of a completed solve.
+     * @author Alec Dorrington
+     */
+    public static final class Result {
+
+        private final int move, score, empties;
+        private final long nodes, time;
+
+        private Result(int move, int score, int empties, long nodes, long time) {
+            this.move = move;
+            this.score = score;
+            this.empties = empties;
+            this.nodes = nodes;
+            this.time = time;
+        }
+
+        /**
+         * @return the best move, or 'ReversiBitboard.PASS' if there are no legal moves.
+         */
+        public int getMove() { return move; }
+
+        /**
+         * @return the final disc differential under perfect play, for the player to move.
+         */
+        public int getScore() { return score; }
+
+        /**
+         * @return the number of empty tiles at the root.
+         */
+        public int getEmpties() { return empties; }
+
+        /**
+         * @return the total number of nodes visited by all threads.
+         */
+        public long getNodes() { return nodes; }
+
+        /**
+         * @return the time taken, in milliseconds.
+         */
+        public long getTime() { return time; }
+    }
+}
@@ -0,0 +1,279 @@
+package strategybots.bots.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import strategybots.games.bitboard.ReversiBitboard;
+
+/**
+ * Fits the weights of a 'ReversiEvaluator' from games of self-play.<br>
+ * <br>
+ * Games are played directly on a 'ReversiBitboard', without a user interface.
+ * The first few moves of each game are random, so that the games are varied, after
+ * which moves are chosen by a one-ply search using the weights of the previous
+ * generation, with an occasional random move. Once few enough empty tiles remain,
+ * each position is solved exactly using 'ReversiSolver', and every earlier position
+ * of the game is labelled with the final disc differential of perfect play from the
+ * first position solved. The first generation, having no weights yet, plays randomly.<br>
+ * <br>
+ * After each generation, the weights are fitted to every position played so far by
+ * stochastic gradient descent on the squared error, then rounded and saved, such that
+ * the training may be stopped at any time. The step of each weight is divided by the
+ * square root of the number of positions in which it occurs, so that weights which
+ * are seen rarely aren't fitted to the noise in the labels of a few games.<br>
+ * <br>
+ * Usage: ReversiTrainer [weight file] [games per generation] [generations] [solve empties]
+ *
+ * @author Alec Dorrington
+ */
+public class ReversiTrainer {
+
+    /** The number of random moves at the start of each game. */
+    private static final int OPENING_MOVES = 8;
+
+    /** The probability of a random move after the opening. */
+    private static final double EXPLORATION = 0.1;
+
+    /** The fraction of the error corrected by each feature of each position, before scaling. */
+    private static final float LEARNING_RATE = 0.01f;
+
+    /** The number of passes over the positions in each generation. */
+    private static final int EPOCHS = 4;
+
+    /** The board on which games are played. */
+    private final ReversiBitboard board = new ReversiBitboard(8, 8);
+
+    /** Solves the end of each game, sharing a table between positions. */
+    private final ReversiSolver solver = new ReversiSolver(board, new TranspositionTable(16), 1);
+
+    /** The number of empty tiles at or below which positions are solved exactly. */
+    private final int solveEmpties;
+
+    /** Source of random moves, and of the order in which positions are fitted. */
+    private final Random random = new Random(0);
+
+    /** The weights being fitted, in discs. */
+    private final float[][] weights = new float[ReversiEvaluator.NUM_STAGES][ReversiEvaluator.STAGE_WEIGHTS];
+
+    /** The discs of the player to move in each position. */
+    private long[] owns = new long[1 << 16];
+    /** The discs of the opponent in each position. */
+    private long[] opps = new long[owns.length];
+    /** The final disc differential of each position, for the player to move. */
+    private byte[] labels = new byte[owns.length];
+    /** The player to move in each position, until the label is known. */
+    private byte[] players = new byte[owns.length];
+    /** The number of positions. */
+    private int size = 0;
+
+    /**
+     * @param solveEmpties the number of empty tiles at or below which positions are solved exactly.
+     */
+    public ReversiTrainer(int solveEmpties) { this.solveEmpties = solveEmpties; }
+
+    public static void main(String[] args) throws IOException {
+
+        Path path = Paths.get(args.length > 0 ? args[0] : ReversiEvaluator.DEFAULT_PATH);
+        int games = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int generations = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        int solveEmpties = args.length > 3 ? Integer.parseInt(args[3]) : 12;
+
+        ReversiTrainer trainer = new ReversiTrainer(solveEmpties);
+        ReversiEvaluator evaluator = null;
+
+        for(int generation = 1; generation <= generations; generation++) {
+
+            long start = System.currentTimeMillis();
+            for(int game = 0; game < games; game++) trainer.play(evaluator);
+            long played = System.currentTimeMillis();
+            double error = trainer.fit();
+
+            evaluator = trainer.getEvaluator();
+            evaluator.save(path);
+
+            System.out.println("=======================");
+            System.out.println("Generation:  " + generation);
+            System.out.println("Positions:   " + trainer.size);
+            System.out.println("RMS Error:   " + Math.round(error * 100.0) / 100.0 + " discs");
+            System.out.println("Play Time:   " + (played - start) + "ms");
+            System.out.println("Fit Time:    " + (System.currentTimeMillis() - played) + "ms");
+        }
+    }
+
+    /**
+     * Plays a game of self-play, storing each position along with its label.
+     * @param evaluator the evaluator used to choose moves, or null to play randomly.
+     */
+    public void play(ReversiEvaluator evaluator) {
+
+        board.reset();
+        int first = size, label = 0, labelPlayer = 0;
+
+        for(int ply = 0; !board.isGameOver(); ply++) {
+
+            int playerId = board.getCurrentPlayerId();
+            long own = board.getStones(playerId), opp = board.getStones(3 - playerId);
+            long legal = board.getLegalMask(own, opp);
+
+            if(legal == 0) {
+                board.apply(ReversiBitboard.PASS);
+                continue;
+            }
+            add(own, opp, playerId);
+
+            int move;
+            if(Long.bitCount(board.getEmpty()) <= solveEmpties) {
+
+                //Solved positions are labelled exactly, and the first solve labels the rest.
+                ReversiSolver.Result result = solver.solve(Long.MAX_VALUE);
+                labels[size - 1] = (byte) result.getScore();
+                players[size - 1] = 0;
+                if(labelPlayer == 0) {
+                    label = result.getScore();
+                    labelPlayer = playerId;
+                }
+                move = random.nextDouble() < EXPLORATION
+                        ? randomMove(legal) : result.getMove();
+
+            } else if(evaluator == null || ply < OPENING_MOVES || random.nextDouble() < EXPLORATION) {
+                move = randomMove(legal);
+            } else {
+                move = bestMove(evaluator, own, opp, legal);
+            }
+            board.apply(move);
+        }
+
+        //A game may end before any position is solved.
+        if(labelPlayer == 0) {
+            labelPlayer = board.getCurrentPlayerId();
+            label = board.getScore(labelPlayer) - board.getScore(3 - labelPlayer);
+        }
+        for(int i = first; i < size; i++) {
+            if(players[i] != 0) labels[i] = (byte) (players[i] == labelPlayer ? label : -label);
+        }
+    }
+
+    /**
+     * Fits the weights to every position stored so far.
+     * @return the root mean squared error of the final pass, in discs.
+     */
+    public double fit() {
+
+        int[] order = new int[size];
+        for(int i = 0; i < size; i++) order[i] = i;
+        int[] features = new int[ReversiEvaluator.NUM_FEATURES];
+        double error = 0;
+
+        float[][] rates = new float[ReversiEvaluator.NUM_STAGES][ReversiEvaluator.STAGE_WEIGHTS];
+        for(int i = 0; i < size; i++) {
+            ReversiEvaluator.getFeatures(owns[i], opps[i], features);
+            float[] stage = rates[ReversiEvaluator.getStage(owns[i], opps[i])];
+            for(int feature : features) stage[feature]++;
+        }
+        for(float[] stage : rates) {
+            for(int i = 0; i < stage.length; i++) {
+                stage[i] = stage[i] > 0 ? LEARNING_RATE / (float) Math.sqrt(stage[i]) : 0;
+            }
+        }
+
+        for(int epoch = 0; epoch < EPOCHS; epoch++) {
+
+            for(int i = size - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1), swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+
+            error = 0;
+            for(int i : order) {
+
+                int stageIndex = ReversiEvaluator.getStage(owns[i], opps[i]);
+                float[] stage = weights[stageIndex], rate = rates[stageIndex];
+                ReversiEvaluator.getFeatures(owns[i], opps[i], features);
+
+                float prediction = 0;
+                for(int feature : features) prediction += stage[feature];
+
+                float delta = labels[i] - prediction;
+                error += delta * delta;
+                for(int feature : features) stage[feature] += delta * rate[feature];
+            }
+        }
+        return Math.sqrt(error / Math.max(size, 1));
+    }
+
+    /**
+     * @return an evaluator using the current weights, rounded to the nearest unit.
+     */
+    public ReversiEvaluator getEvaluator() {
+
+        short[][] rounded = new short[ReversiEvaluator.NUM_STAGES][ReversiEvaluator.STAGE_WEIGHTS];
+        for(int stage = 0; stage < rounded.length; stage++) {
+            for(int i = 0; i < rounded[stage].length; i++) {
+                long weight = Math.round(weights[stage][i] * ReversiEvaluator.SCALE);
+                rounded[stage][i] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, weight));
+            }
+        }
+        return new ReversiEvaluator(rounded);
+    }
+
+    /**
+     * Finds the move leading to the best evaluation for the player to move.
+     * @param evaluator the evaluator used to compare moves.
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @param legal the legal moves, of which there is at least one.
+     * @return the best move.
+     */
+    private int bestMove(ReversiEvaluator evaluator, long own, long opp, long legal) {
+
+        int bestMove = -1, bestScore = Integer.MIN_VALUE;
+        for(long moves = legal; moves != 0; moves &= moves - 1) {
+
+            int move = Long.numberOfTrailingZeros(moves);
+            long flips = board.getFlips(own, opp, move);
+            long newOwn = own | flips | 1L << move, newOpp = opp & ~flips;
+
+            //If the opponent must pass, the position is evaluated for the same player.
+            int score = board.getLegalMask(newOpp, newOwn) != 0
+                    ? -evaluator.evaluate(newOpp, newOwn) : evaluator.evaluate(newOwn, newOpp);
+            if(score > bestScore) {
+                bestMove = move;
+                bestScore = score;
+            }
+        }
+        return bestMove;
+    }
+
+    /**
+     * @param legal the legal moves, of which there is at least one.
+     * @return one of the moves, chosen uniformly at random.
+     */
+    private int randomMove(long legal) {
+        for(int i = random.nextInt(Long.bitCount(legal)); i > 0; i--) legal &= legal - 1;
+        return Long.numberOfTrailingZeros(legal);
+    }
+
+    /**
+     * Stores a position, whose label is set once the game is over.
+     * @param own the discs of the player to move.
+     * @param opp the discs of the opponent.
+     * @param playerId the player to move.
+     */
+    private void add(long own, long opp, int playerId) {
+
+        if(size == owns.length) {
+            owns = Arrays.copyOf(owns, 2 * size);
+            opps = Arrays.copyOf(opps, 2 * size);
+            labels = Arrays.copyOf(labels, 2 * size);
+            players = Arrays.copyOf(players, 2 * size);
+        }
+        owns[size] = own;
+        opps[size] = opp;
+        players[size] = (byte) playerId;
+        size++;
+    }
+}
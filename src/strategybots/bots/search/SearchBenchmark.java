@@ -0,0 +1,69 @@
+package strategybots.bots.search;
+
+import strategybots.bots.search.AlphaBetaSearch.Result;
+import strategybots.games.ConnectFour;
+import strategybots.games.TicTacToe;
+import strategybots.games.base.Game;
+import strategybots.games.base.TileGame;
+
+/**
+ * Measures the scaling of 'ParallelSearch' with the number of threads.<br>
+ * <br>
+ * Searches the opening position of 7x6 Connect Four and of 7x7 Tic-Tac-Toe
+ * with 5 in a row, for each thread count 1, 2, 4, ... up to the maximum,
+ * and prints the depth reached, the number of nodes per second, and the speedup
+ * in nodes per second over a single thread. Thread counts above the number
+ * of available cores share cores, and so show no real scaling.<br>
+ * <br>
+ * Usage: SearchBenchmark [max threads] [time per search in ms]
+ *
+ * @author Alec Dorrington
+ */
+public class SearchBenchmark {
+    
+    public static void main(String[] args) {
+        
+        int maxThreads = args.length > 0 ? Integer.parseInt(args[0])
+                : Runtime.getRuntime().availableProcessors();
+        long time = args.length > 1 ? Long.parseLong(args[1]) : 5000;
+        
+        TileGame.setHeadless(true);
+        Game.setSynchronous(true);
+        
+        System.out.println("Available cores: " + Runtime.getRuntime().availableProcessors());
+        
+        benchmark("Connect Four 7x6",
+                new MNKPosition(new ConnectFour(null, null).getState()), maxThreads, time);
+        benchmark("Tic-Tac-Toe 7x7 k=5",
+                new MNKPosition(new TicTacToe(7, 7, 5, null, null).getState()), maxThreads, time);
+    }
+    
+    /**
+     * Searches the given position with each thread count and prints the results.
+     * @param name the name of the position.
+     * @param position the position to search.
+     * @param maxThreads the maximum number of threads to use.
+     * @param time the time limit for each search, in milliseconds.
+     */
+    private static void benchmark(String name, Position position, int maxThreads, long time) {
+        
+        System.out.println("=======================");
+        System.out.println(name + ", " + time + "ms:");
+        System.out.println("Threads  Depth       Nodes   Nodes/s  Speedup");
+        
+        long baseline = 0;
+        for(int threads = 1; threads <= maxThreads; threads *= 2) {
+            
+            //Use a new table each time, so that no search benefits from the last.
+            TranspositionTable table = new TranspositionTable(64);
+            Result result = new ParallelSearch(position.copy(), table, threads)
+                    .search(time, AlphaBetaSearch.MAX_PLY);
+            
+            long speed = 1000 * result.getNodes() / Math.max(result.getTime(), 1);
+            if(threads == 1) baseline = Math.max(speed, 1);
+            
+            System.out.println(String.format("%7d  %5d  %10d  %8d  %6.2fx", threads,
+                    result.getDepth(), result.getNodes(), speed, (double) speed / baseline));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package strategybots.bots.search;
+
+import strategybots.games.base.Clock;
+import strategybots.games.base.Game;
+
+/**
+ * Decides how long a bot should think about a single turn.<br>
+ * <br>
+ * A new manager is created at the start of each turn, which sets two limits:
+ * an optimum time, which is the expected share of the remaining clock for this turn,
+ * and a maximum time, which is never exceeded. If the game has a clock with a total
+ * budget, the optimum is the remaining time divided by the estimated number of turns
+ * left, plus most of the increment. Otherwise, both the optimum and the maximum
+ * are the time left for this turn (or the default time of the bot if there is
+ * no clock at all), as time left unused is not saved for later turns.<br>
+ * <br>
+ * The search reports its best move and score after each iteration using 'shouldStop()'.
+ * Less time is spent while the best move is stable, and more after the best move
+ * changes or the score drops. If there is only one legal move, the search
+ * stops after the first iteration.
+ *
+ * @author Alec Dorrington
+ */
+public class TimeManager {
+
+    /** Time reserved for the overhead of each turn, in milliseconds. */
+    private static final long SAFETY_MARGIN = 20;
+
+    /** The largest multiple of the optimum time which may be spent. */
+    private static final double MAX_FACTOR = 2.0;
+
+    /** The time at which the turn began, in milliseconds. */
+    private final long start;
+
+    /** The time limits for this turn, in milliseconds. */
+    private final long optimum, maximum;
+
+    /** The amount by which the score must drop for the extra time to be used. */
+    private int scoreMargin = 50;
+
+    /** Recent changes to the best move, decaying by half on each report. */
+    private double changes = 0;
+
+    /** The best move and score of the most recent report. */
+    private int lastMove, lastScore;
+
+    /** The number of reports so far. */
+    private int reports = 0;
+
+    /**
+     * Allocates time for the current turn of the given player.
+     * @param game the game being played.
+     * @param playerId the ID of the player whose turn it is.
+     * @param time the time to use per turn if the game has no clock, in milliseconds.
+     * @param movesLeft the estimated number of turns left for this player, including this one.
+     * @param numMoves the number of legal moves in the current position.
+     */
+    public TimeManager(Game game, int playerId, long time, int movesLeft, int numMoves) {
+
+        start = System.currentTimeMillis();
+
+        long remaining = game.getTimeRemaining(playerId);
+        Clock clock = game.getClock().orElse(null);
+
+        if(remaining == -1) {
+            maximum = time;
+            optimum = time;
+
+        } else if(clock.hasBudget()) {
+
+            //Share the remaining time evenly, but never risk too much of it on one turn.
+            long usable = Math.max(remaining - SAFETY_MARGIN, 1);
+            long share = usable / Math.max(movesLeft, 1) + clock.getIncrement() * 3 / 4;
+            maximum = Math.min(usable / 2 + clock.getIncrement() / 2, (long) (share * MAX_FACTOR));
+            optimum = Math.min(share, maximum);
+
+        } else {
+            maximum = Math.max(remaining - SAFETY_MARGIN, 1);
+            optimum = maximum;
+        }
+
+        //A forced move needs no thought.
+        if(numMoves <= 1) changes = -1;
+    }
+
+    /**
+     * Allocates the given time limits, measured from now.
+     * @param optimum the optimum time, in milliseconds.
+     * @param maximum the maximum time, in milliseconds.
+     */
+    private TimeManager(long optimum, long maximum) {
+        start = System.currentTimeMillis();
+        this.optimum = optimum;
+        this.maximum = maximum;
+    }
+
+    /**
+     * Hands the time left in this turn to another search, such as a fallback
+     * once an earlier search has given up. The limits of the new manager are
+     * measured from now, so that the time already spent isn't counted twice,
+     * while the deadline of the turn is unchanged.
+     * @return a new manager for the remainder of this turn.
+     */
+    public TimeManager remaining() {
+
+        long maximum = Math.max(getDeadline() - System.currentTimeMillis(), 1);
+        TimeManager manager = new TimeManager(Math.min(optimum, maximum), maximum);
+        manager.scoreMargin = scoreMargin;
+        if(changes < 0) manager.changes = -1;
+        return manager;
+    }
+
+    /**
+     * Reports the result of a completed iteration of the search.
+     * @param bestMove the best move found so far.
+     * @param score the score of the best move.
+     * @return whether the search should stop now.
+     */
+    public boolean shouldStop(int bestMove, int score) {
+
+        long elapsed = getElapsed();
+        if(elapsed >= maximum || changes < 0) return true;
+
+        changes /= 2;
+        if(reports > 0 && bestMove != lastMove) changes += 1;
+
+        //Spend as little as half the optimum if the best move has settled.
+        double factor = 0.5 + changes;
+        if(reports > 0 && score < lastScore - scoreMargin) factor *= 1.5;
+
+        lastMove = bestMove;
+        lastScore = score;
+        reports++;
+
+        return elapsed >= optimum * Math.min(factor, MAX_FACTOR);
+    }
+
+    /**
+     * @param scoreMargin the amount by which the score must drop for more time to be used.
+     */
+    public void setScoreMargin(int scoreMargin) { this.scoreMargin = scoreMargin; }
+
+    /**
+     * @return the time at which the search must be aborted, in milliseconds.
+     */
+    public long getDeadline() { return start + maximum; }
+
+    /**
+     * @return the time elapsed since the start of the turn, in milliseconds.
+     */
+    public long getElapsed() { return System.currentTimeMillis() - start; }
+
+    /**
+     * @return the optimum time for this turn, in milliseconds.
+     */
+    public long getOptimum() { return optimum; }
+
+    /**
+     * @return the maximum time for this turn, in milliseconds.
+     */
+    public long getMaximum() { return maximum; }
+}
@@ -0,0 +1,165 @@
+package strategybots.bots.search;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size hash table of search results, shared by any number of search threads.<br>
+ * <br>
+ * Entries are packed into a flat array of longs, such that the table causes no
+ * garbage collection during a search. Each bucket holds two entries: one which is
+ * only replaced by results of an equal or greater depth (or from an earlier search),
+ * and one which is always replaced.<br>
+ * <br>
+ * The table is lock-free. Each entry is stored as the pair (key ^ data, data), so
+ * that an entry torn by concurrent writes will fail verification and be ignored.
+ * <br><br>
+ * Entry data is laid out as follows:
+ * <ul>
+ * <li>Bits 0-31: the best move.</li>
+ * <li>Bits 32-52: the score (signed).</li>
+ * <li>Bits 53-60: the remaining depth.</li>
+ * <li>Bits 61-62: the bound type.</li>
+ * <li>Bit 63: the generation in which the entry was stored.</li>
+ * </ul>
+ *
+ * @author Alec Dorrington
+ */
+public final class TranspositionTable {
+
+    /** Bound types, indicating how the stored score relates to the true score. */
+    public static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** The number of longs per bucket (two entries, each a key and data). */
+    private static final int BUCKET_SIZE = 4;
+
+    /** The table itself, as consecutive buckets. */
+    private final long[] table;
+
+    /** Mask used to find the bucket of a key. */
+    private final long mask;
+
+    /** The generation of the current search, used to age out old entries. */
+    private volatile long generation = 0;
+
+    /**
+     * Constructs a new transposition table.<br>
+     * The number of buckets is rounded down to a power of 2.
+     * @param megabytes the maximum size of the table, in megabytes.
+     */
+    public TranspositionTable(int megabytes) {
+
+        long buckets = Math.max(1, ((long) megabytes << 20) / (BUCKET_SIZE * 8));
+        buckets = Math.min(Long.highestOneBit(buckets), 1L << 28);
+        table = new long[(int) buckets * BUCKET_SIZE];
+        mask = buckets - 1;
+    }
+
+    /**
+     * Finds the entry for the given position.
+     * @param key the hash of the position.
+     * @return the data of the entry, or 0 if there is none.
+     */
+    public long probe(long key) {
+
+        int i = bucket(key);
+
+        for(int j = i; j < i + BUCKET_SIZE; j += 2) {
+
+            long data = table[j + 1];
+            if((table[j] ^ data) == key && getBound(data) != 0) return data;
+        }
+        return 0;
+    }
+
+    /**
+     * Stores a search result.
+     * @param key the hash of the position.
+     * @param move the best move, or any value if unknown.
+     * @param score the score of the position, relative to this position.
+     * @param depth the remaining depth at which the position was searched.
+     * @param bound the type of bound given by the score.
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+
+        long data = (move & 0xFFFFFFFFL)
+                | (score & 0x1FFFFFL) << 32
+                | (long) Math.min(depth, 0xFF) << 53
+                | (long) bound << 61
+                | generation << 63;
+
+        int i = bucket(key);
+
+        //Replace the depth-preferred entry if it is shallower, stale, or the same position.
+        long old = table[i + 1];
+        if((table[i] ^ old) == key || getDepth(old) <= depth
+                || (old >>> 63) != generation) {
+
+            //Demote the previous occupant to the always-replace entry.
+            if((table[i] ^ old) != key && getBound(old) != 0) {
+                table[i + 2] = table[i];
+                table[i + 3] = old;
+            }
+            table[i] = key ^ data;
+            table[i + 1] = data;
+
+        } else {
+            table[i + 2] = key ^ data;
+            table[i + 3] = data;
+        }
+    }
+
+    /**
+     * To be called at the start of each search, such that entries from
+     * previous searches are preferred for replacement.
+     */
+    public void newSearch() { generation ^= 1; }
+
+    /**
+     * Removes all entries from the table.
+     */
+    public void clear() { Arrays.fill(table, 0); }
+
+    /**
+     * @return the approximate proportion of entries in use, in thousandths.
+     */
+    public int getHashFull() {
+
+        int used = 0, sample = Math.min(table.length, 4000);
+        for(int i = 1; i < sample; i += 2) {
+            if(getBound(table[i]) != 0) used++;
+        }
+        return 2000 * used / sample;
+    }
+
+    /**
+     * @param data the data of an entry.
+     * @return the best move stored in the entry.
+     */
+    public static int getMove(long data) { return (int) data; }
+
+    /**
+     * @param data the data of an entry.
+     * @return the score stored in the entry.
+     */
+    public static int getScore(long data) { return (int) (data << 11 >> 43); }
+
+    /**
+     * @param data the data of an entry.
+     * @return the remaining depth stored in the entry.
+     */
+    public static int getDepth(long data) { return (int) (data >>> 53) & 0xFF; }
+
+    /**
+     * @param data the data of an entry.
+     * @return the bound type stored in the entry, or 0 if there is no entry.
+     */
+    public static int getBound(long data) { return (int) (data >>> 61) & 0x3; }
+
+    /**
+     * @param key the hash of a position.
+     * @return the index of the first long in the bucket of the position.
+     */
+    private int bucket(long key) {
+        return (int) ((key ^ key >>> 32) & mask) * BUCKET_SIZE;
+    }
+}
@@ -0,0 +1,74 @@
+package strategybots.bots.search;
+
+import strategybots.bots.search.AlphaBetaSearch.Result;
+import strategybots.games.ConnectFour;
+import strategybots.games.ConnectFour.ConnectFourController;
+import strategybots.games.base.Game;
+import strategybots.games.base.TileGame;
+
+/**
+ * Measures the cost to a searching bot of a game waiting for a human player.<br>
+ * <br>
+ * Searches the opening position of 7x6 Connect Four to a fixed depth for the given
+ * time, first with no game running, and then while a game is waiting in its own
+ * thread for a controller to take its turn. Prints the number of nodes per second
+ * in each case. A game which blocks while waiting should leave the search speed
+ * unchanged, whereas one which polls will compete with the search for the core.<br>
+ * <br>
+ * Usage: TurnWaitBenchmark [time per search in ms] [search depth]
+ *
+ * @author Alec Dorrington
+ */
+public class TurnWaitBenchmark {
+
+    public static void main(String[] args) {
+
+        long time = args.length > 0 ? Long.parseLong(args[0]) : 3000;
+        int depth = args.length > 1 ? Integer.parseInt(args[1]) : 7;
+
+        TileGame.setHeadless(true);
+        Game.setSynchronous(true);
+        Position position = new MNKPosition(new ConnectFour(null, null).getState());
+
+        System.out.println("Available cores: " + Runtime.getRuntime().availableProcessors());
+        System.out.println("Game            Nodes/s");
+
+        //Warm up first, so that neither measurement includes compilation.
+        benchmark(position, time, depth);
+        long baseline = benchmark(position, time, depth);
+        System.out.println(String.format("None         %10d", baseline));
+
+        //Start a game in its own thread, waiting for a controller which never moves.
+        Game.setSynchronous(false);
+        new ConnectFour(new ConnectFourController(), new ConnectFourController());
+
+        long waiting = benchmark(position, time, depth);
+        System.out.println(String.format("Waiting      %10d", waiting));
+        System.out.println(String.format("Relative speed: %.2fx",
+                (double) waiting / Math.max(baseline, 1)));
+
+        //The game never ends by itself.
+        System.exit(0);
+    }
+
+    /**
+     * Repeatedly searches the given position to the given depth for the given time.
+     * @param position the position to search.
+     * @param time the time for which to search, in milliseconds.
+     * @param depth the depth to which to search each time.
+     * @return the number of nodes searched per second.
+     */
+    private static long benchmark(Position position, long time, int depth) {
+
+        long nodes = 0, start = System.currentTimeMillis(), elapsed;
+
+        do {
+            //Search without a table, so that each search does the same work.
+            Result result = new AlphaBetaSearch(position.copy()).search(Long.MAX_VALUE, depth);
+            nodes += result.getNodes();
+            elapsed = System.currentTimeMillis() - start;
+        } while(elapsed < time);
+
+        return 1000 * nodes / Math.max(elapsed, 1);
+    }
+}
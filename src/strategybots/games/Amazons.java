@@ -2,6 +2,7 @@ package strategybots.games;
 
 import java.util.Optional;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 
 /**
@@ -143,6 +144,11 @@ public class Amazons extends TileGame {
         else return getPieceInst(x, y).get().getOwnerId();
     }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized AmazonsState getState() { return new AmazonsState(this); }
+    
     @Override
     protected void init() {
         
@@ -200,6 +206,119 @@ public class Amazons extends TileGame {
         return getPlayer(playerId).getName() + " (" + COLOUR_NAMES[playerId - 1] + ")";
     }
     
+    /**
+     * Compact snapshot of a Game of the Amazons position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the amazon there,
+     * 'ARROW' if an arrow has been shot there, or 0 if empty.<br>
+     * A move consists of both an amazon movement and an arrow, encoded by 'encodeMove()'.
+     * @author Alec Dorrington
+     */
+    public static final class AmazonsState extends GameState {
+        
+        /** Value of tiles on which an arrow has been shot. */
+        public static final int ARROW = 3;
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private AmazonsState(Amazons game) {
+            
+            super(game.getWidth(), game.getHeight(), game.getCurrentPlayerId());
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    int piece = game.getPiece(x, y);
+                    cells[index(x, y)] = (byte) (piece==-1 ? 0 : piece==0 ? ARROW : piece);
+                }
+            }
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private AmazonsState(AmazonsState state) { super(state); }
+        
+        @Override
+        public void apply(int move) {
+            cells[(move>>>10) & 0x3FF] = cells[move & 0x3FF];
+            cells[move & 0x3FF] = 0;
+            cells[move>>>20] = ARROW;
+            nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            //The arrow may have been shot back to where the amazon started.
+            cells[move>>>20] = 0;
+            cells[move & 0x3FF] = cells[(move>>>10) & 0x3FF];
+            cells[(move>>>10) & 0x3FF] = 0;
+            prevPlayer();
+            moveUndone();
+        }
+        
+        @Override
+        public AmazonsState copy() { return new AmazonsState(this); }
+        
+        /**
+         * Encodes an amazon movement followed by an arrow shot as a single move.
+         * @param from the index of the tile the amazon moves from.
+         * @param to the index of the tile the amazon moves to.
+         * @param arrow the index of the tile at which the arrow is shot.
+         * @return the encoded move.
+         */
+        public static int encodeMove(int from, int to, int arrow) {
+            return from | to<<10 | arrow<<20;
+        }
+        
+        /**
+         * Determines whether there is an unobstructed straight line between two tiles.
+         * @param from the index of the tile at which the line starts.
+         * @param to the index of the tile at which the line ends.
+         * @param ignore the index of a tile to treat as empty, or -1 if none.
+         * @return whether a piece on the first tile could move to the second.
+         */
+        public boolean isReachable(int from, int to, int ignore) {
+            
+            int dx = getX(to) - getX(from), dy = getY(to) - getY(from);
+            
+            //Ensure movement is orthogonal or diagonal.
+            if((dx==0 && dy==0) || (dx!=0 && dy!=0 && Math.abs(dx)!=Math.abs(dy))) return false;
+            
+            //Ensure every tile along the path is empty.
+            int step = index(Integer.signum(dx), Integer.signum(dy)) - index(0, 0);
+            for(int i = from + step;; i += step) {
+                if(cells[i] != 0 && i != ignore) return false;
+                if(i == to) return true;
+            }
+        }
+        
+        /**
+         * @param playerId the ID of the player to check.
+         * @return whether any amazon owned by this player has an adjacent empty tile.
+         */
+        public boolean hasMoves(int playerId) {
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    
+                    if(cells[index(x, y)] != playerId) continue;
+                    
+                    //Look at all the surrounding tiles.
+                    for(int xx = Math.max(x-1, 0); xx <= Math.min(x+1, width-1); xx++) {
+                        for(int yy = Math.max(y-1, 0); yy <= Math.min(y+1, height-1); yy++) {
+                            if(cells[index(xx, yy)] == 0) return true;
+                        }
+                    }
+                }
+            }
+            return false;
+        }
+    }
+    
     /**
      * Implementation of Player<Amazons> for use in inserting a human-controlled player.<br>
      * Each AmazonsController will make moves based on mouse input on the game display window.
@@ -2,6 +2,7 @@ package strategybots.games;
 
 import java.util.Optional;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -169,6 +170,11 @@ public class Checkers extends TileGame {
         else return 2;
     }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized CheckersState getState() { return new CheckersState(this); }
+    
     @Override
     protected void init() {
         
@@ -254,6 +260,174 @@ public class Checkers extends TileGame {
         }
     }
     
+    /**
+     * Compact snapshot of a Checkers position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the piece there, plus 2 if the piece
+     * is a king, or 0 if empty.<br>
+     * Moves are encoded as 'from | to<<16', where each is the index of a tile.
+     * As in the game, the turn doesn't pass to the next player while further
+     * captures may be chained by the piece which just made a capture.
+     * @author Alec Dorrington
+     */
+    public static final class CheckersState extends GameState {
+        
+        /** The index of the piece which must continue capturing, or -1 if none. */
+        private int chained = -1;
+        
+        /** The number of pieces owned by each player. */
+        private final int[] numPieces = new int[3];
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private CheckersState(Checkers game) {
+            
+            super(game.getWidth(), game.getHeight(), game.getCurrentPlayerId());
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    
+                    int owner = game.getPieceOwner(x, y);
+                    if(owner != 0) {
+                        cells[index(x, y)] = (byte) (owner + 2*(game.getPieceType(x, y)-1));
+                        numPieces[owner]++;
+                    }
+                }
+            }
+            game.moved.ifPresent(p -> chained = index(p.getCol(), p.getRow()));
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private CheckersState(CheckersState state) {
+            super(state);
+            chained = state.chained;
+            System.arraycopy(state.numPieces, 0, numPieces, 0, numPieces.length);
+        }
+        
+        @Override
+        public void apply(int move) {
+            
+            int from = move & 0xFFFF, to = move >>> 16;
+            int piece = cells[from], captured = 0;
+            boolean jump = Math.abs(getX(to) - getX(from)) == 2;
+            
+            //Save the information which can't be recovered from the move.
+            long record = (long) currentPlayerId << 32 | (chained + 1) << 8;
+            
+            //Move the piece.
+            cells[to] = (byte) piece;
+            cells[from] = 0;
+            
+            //Delete the piece which was jumped over.
+            if(jump) {
+                int mid = (from + to) / 2;
+                captured = cells[mid];
+                cells[mid] = 0;
+                numPieces[(captured-1) % 2 + 1]--;
+                record |= captured;
+            }
+            
+            //If a man has reached the other end of the board, crown it.
+            boolean crowned = piece <= 2 &&
+                    getY(to) == (piece==1 ? 0 : height-1);
+            if(crowned) {
+                cells[to] += 2;
+                record |= 1 << 4;
+            }
+            push(record);
+            
+            //Continue the turn if a capture was made and more captures are possible.
+            if(jump && !crowned && canCapture(to)) chained = to;
+            else {
+                chained = -1;
+                nextPlayer();
+            }
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            
+            int from = move & 0xFFFF, to = move >>> 16;
+            long record = pop();
+            
+            currentPlayerId = (int) (record >>> 32);
+            chained = (int) ((record >>> 8) & 0xFFFFFF) - 1;
+            
+            //Move the piece back, uncrowning it if necessary.
+            cells[from] = (byte) (cells[to] - ((record & 1<<4) != 0 ? 2 : 0));
+            cells[to] = 0;
+            
+            //Restore the piece which was jumped over.
+            int captured = (int) (record & 0xF);
+            if(captured != 0) {
+                cells[(from + to) / 2] = (byte) captured;
+                numPieces[(captured-1) % 2 + 1]++;
+            }
+            moveUndone();
+        }
+        
+        @Override
+        public CheckersState copy() { return new CheckersState(this); }
+        
+        /**
+         * Encodes a move of a piece from one position to another.
+         * @param x_from the current x position of the piece.
+         * @param y_from the current y position of the piece.
+         * @param x_to the new x position of the piece.
+         * @param y_to the new y position of the piece.
+         * @return the encoded move.
+         */
+        public int encodeMove(int x_from, int y_from, int x_to, int y_to) {
+            return index(x_from, y_from) | index(x_to, y_to)<<16;
+        }
+        
+        /**
+         * Determines whether the piece at the given tile is able to make a capture.
+         * @param index the index of the tile to check.
+         * @return whether the piece on this tile can jump over an opponent piece.
+         */
+        public boolean canCapture(int index) {
+            
+            int piece = cells[index];
+            if(piece == 0) return false;
+            int owner = (piece-1) % 2 + 1, x = getX(index), y = getY(index);
+            
+            //Check if the diagonal jump in each permitted direction is valid.
+            for(int dy = -1; dy <= 1; dy += 2) {
+                
+                //Men may only move forwards.
+                if(piece <= 2 && dy != (owner==1 ? -1:1)) continue;
+                
+                for(int dx = -1; dx <= 1; dx += 2) {
+                    
+                    if(!inBounds(x + 2*dx, y + 2*dy)) continue;
+                    int jumped = cells[index(x + dx, y + dy)];
+                    
+                    if(jumped != 0 && (jumped-1) % 2 + 1 != owner
+                            && cells[index(x + 2*dx, y + 2*dy)] == 0) return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * @return the index of the piece which must continue capturing, or -1 if none.
+         */
+        public int getChainedPiece() { return chained; }
+        
+        /**
+         * @param playerId the ID of the player to check.
+         * @return the number of pieces owned by this player.
+         */
+        public int getNumPieces(int playerId) { return numPieces[playerId]; }
+    }
+    
     /**
      * Abstract supertype for checkers pieces (men and kings).<br>
      * Takes care of much of the move validation.
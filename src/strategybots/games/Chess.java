@@ -1,25 +1,27 @@
 package strategybots.games;
 
-import java.util.Optional;
-
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
+import strategybots.games.bitboard.ChessBitboard;
 
 /**
- * THIS IMPLEMENTATION IS INCOMPLETE. DO NOT USE.
- * 
  * <b>Chess implementation.</b><br>
  * <br>
  * Rules: <a href="https://en.wikipedia.org/wiki/Chess">Wikipedia</a><br>
  * <br>
+ * Moves are validated by a 'ChessBitboard', which applies the full rules, including
+ * castling, en passant and promotion. The game ends by checkmate or stalemate, or is
+ * drawn by threefold repetition, the fifty-move rule or insufficient material.<br>
+ * <br>
  * Bot players can be made by implementing 'Player<Chess>'.<br>
  * Human players can be made by instantiating 'ChessController'.
- * 
+ *
  * @author Alec Dorrington
  */
 public class Chess extends TileGame {
     
     private static final long serialVersionUID = 3768927483479016678L;
-
+    
     /** The set of piece types in chess. */
     public enum Chessman { PAWN, ROOK, KNIGHT, BISHOP, QUEEN, KING }
     
@@ -29,26 +31,24 @@ public class Chess extends TileGame {
     /** The dimensions of the board. */
     private static final int WIDTH = 8, HEIGHT = 8;
     
-    private static final String[] PAWN_TEXTURES = new String[] {
-            "res/chess/white_pawn.png", "res/chess/black_pawn.png"};
-    
-    private static final String[] ROOK_TEXTURES = new String[] {
-            "res/chess/white_rook.png", "res/chess/black_rook.png"};
-    
-    private static final String[] KNIGHT_TEXTURES = new String[] {
-            "res/chess/white_knight.png", "res/chess/black_knight.png"};
-    
-    private static final String[] BISHOP_TEXTURES = new String[] {
-            "res/chess/white_bishop.png", "res/chess/black_bishop.png"};
+    /** Textures used for each type of piece, for each player. */
+    private static final String[][] TEXTURES = new String[][] {
+            {"res/chess/white_pawn.png", "res/chess/black_pawn.png"},
+            {"res/chess/white_rook.png", "res/chess/black_rook.png"},
+            {"res/chess/white_knight.png", "res/chess/black_knight.png"},
+            {"res/chess/white_bishop.png", "res/chess/black_bishop.png"},
+            {"res/chess/white_queen.png", "res/chess/black_queen.png"},
+            {"res/chess/white_king.png", "res/chess/black_king.png"}};
     
-    private static final String[] QUEEN_TEXTURES = new String[] {
-            "res/chess/white_queen.png", "res/chess/black_queen.png"};
+    /** The display name of the colour of each player. */
+    private static final String[] COLOUR_NAMES = new String[] {
+            "White", "Black"};
     
-    private static final String[] KING_TEXTURES = new String[] {
-            "res/chess/white_king.png", "res/chess/black_king.png"};
+    /** Bitboard copy of the position, used to validate moves. */
+    private transient ChessBitboard bits;
     
-    /** The pawn to be promoted if one exists. */
-    private Optional<Piece> promotion = Optional.empty();
+    /** The move of the pawn waiting to be promoted, or -1 if none. */
+    private volatile int promotion = -1;
     
     /**
      * Asynchronously runs a new Chess instance.
@@ -63,73 +63,201 @@ public class Chess extends TileGame {
      * Moves the piece at the given position to a new position.<br>
      * Both positions must be within the bounds of the board.<br>
      * Can only be used while the turn is active and the game is running.<br>
+     * A king moving two spaces towards a rook castles.<br>
+     * A pawn moving to the last row doesn't end the turn until 'promotePawn()' is called.
+     * @param x_from the x position at which the piece currently resides.
+     * @param y_from the y position at which the piece currently resides.
+     * @param x_to the x position to which the piece should be moved.
+     * @param y_to the y position to which the piece should be moved.
+     * @return whether the move was valid and successful.
+     */
+    public synchronized boolean movePiece(int x_from, int y_from, int x_to, int y_to) {
+        
+        //Ensure move is valid, either as is or as a promotion.
+        if(!validateMove(x_from, y_from, x_to, y_to)) return false;
+        
+        int move = encodeMove(x_from, y_from, x_to, y_to, null);
+        if(bits.isLegal(move)) {
+            playMove(move);
+        
+        //Move the pawn, waiting for the type to which it is promoted.
+        } else {
+            getPieceInst(x_from, y_from).get().setBoardPos(x_to, y_to);
+            promotion = move;
+        }
+        return true;
+    }
+    
+    /**
+     * Moves the piece at the given position to a new position, promoting a pawn
+     * which reaches the last row, such that the turn ends immediately.<br>
+     * Can only be used while the turn is active and the game is running.<br>
      * @param x_from the x position at which the piece currently resides.
      * @param y_from the y position at which the piece currently resides.
      * @param x_to the x position to which the piece should be moved.
      * @param y_to the y position to which the piece should be moved.
+     * @param newType the type to which a pawn is promoted, or null if not a promotion.
      * @return whether the move was valid and successful.
      */
-    public boolean movePiece(int x_from, int y_from, int x_to, int y_to) {
+    public synchronized boolean movePiece(int x_from, int y_from, int x_to, int y_to, Chessman newType) {
         
         //Ensure game is running and turn hasn't already been taken.
-        if(!isRunning() || turnDone()) return false;
+        if(!isRunning() || turnDone() || promotion != -1) return false;
         
         //Ensure positions are in bounds.
         if(!inBounds(x_from, y_from) || !inBounds(x_to, y_to)) return false;
         
-        //Ensure there is a piece at the from location.
-        if(!getPieceInst(x_from, y_from).isPresent()) return false;
+        //Ensure move is legal.
+        int move = encodeMove(x_from, y_from, x_to, y_to, newType);
+        if(!bits.isLegal(move)) return false;
         
-        //Move the piece, subject to game constraints.
-        if(!getPieceInst(x_from, y_from).get().movePiece(x_to, y_to)) return false;
-        
-        endTurn();
+        playMove(move);
         return true;
     }
     
-    public boolean promotePawn(Chessman newType) {
+    /**
+     * Promotes the pawn which was moved to the last row on this turn, ending the turn.
+     * @param newType the type to which the pawn is promoted (not a pawn or king).
+     * @return whether the promotion was valid and successful.
+     */
+    public synchronized boolean promotePawn(Chessman newType) {
         
         //Ensure game is running and turn hasn't already been taken.
         if(!isRunning() || turnDone()) return false;
         
         //Ensure there is a piece ready to be promoted.
-        if(!promotion.isPresent()) return false;
+        if(promotion == -1) return false;
         
-        //switch(newType) {
-            
-            //TODO
-            
-            
-            
-            
-        //}
+        //Ensure the pawn may be promoted to this type.
+        int move = promotion | (newType.ordinal() + 1)<<12;
+        if(!bits.isLegal(move)) return false;
+        
+        //The pawn has already been moved, so only its type changes.
+        int to = move>>6 & 0x3F;
+        getPieceInst(to / HEIGHT, to % HEIGHT).get().delete();
+        new ChessPiece(newType, getCurrentPlayerId(), to / HEIGHT, to % HEIGHT);
         
+        promotion = -1;
+        bits.apply(move);
+        endTurn();
         return true;
     }
     
+    /**
+     * Determine whether a move is valid.<br>
+     * A pawn moving to the last row is valid without the type to which it is promoted.
+     * @param x_from the current x position of the piece.
+     * @param y_from the current y position of the piece.
+     * @param x_to the new x position of the piece.
+     * @param y_to the new y position of the piece.
+     * @return whether the given move is valid.
+     */
+    public boolean validateMove(int x_from, int y_from, int x_to, int y_to) {
+        
+        //Ensure game is running and turn hasn't already been taken.
+        if(!isRunning() || turnDone() || promotion != -1) return false;
+        
+        //Ensure positions are in bounds.
+        if(!inBounds(x_from, y_from) || !inBounds(x_to, y_to)) return false;
+        
+        //Ensure move is legal, without or with a promotion.
+        int move = encodeMove(x_from, y_from, x_to, y_to, null);
+        return bits.isLegal(move) || bits.isLegal(move | ChessBitboard.QUEEN<<12);
+    }
+    
+    /**
+     * @return whether a pawn has been moved to the last row and is waiting to be promoted.
+     */
+    public boolean isPromoting() { return promotion != -1; }
+    
+    /**
+     * @return whether the current player's king is attacked.
+     */
+    public boolean isInCheck() { return bits.isInCheck(); }
+    
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized ChessState getState() { return new ChessState(this); }
+    
     @Override
     protected void init() {
         
-        for(int i = 0; i < WIDTH; i++) {
-            new Pawn(1, i, 1);
-            new Pawn(2, i, HEIGHT - 2);
+        bits = new ChessBitboard();
+        promotion = -1;
+        
+        //Place the pieces of the starting position.
+        for(int x = 0; x < WIDTH; x++) {
+            for(int y = 0; y < HEIGHT; y++) {
+                
+                int piece = bits.get(x, y);
+                if(piece != 0) new ChessPiece(Chessman.values()[(piece & 7) - 1], (piece>>3) + 1, x, y);
+            }
+        }
+    }
+    
+    @Override
+    protected void checkEnd() {
+        
+        //The opponent loses if checkmated, and draws if stalemated.
+        if(bits.getLegalMoves(new int[ChessBitboard.MAX_MOVES]) == 0) {
+            endGame(bits.isInCheck() ? getCurrentPlayerId() : -1);
+        
+        //The game is drawn by repetition, the fifty-move rule or insufficient material.
+        } else if(bits.isDraw()) endGame(-1);
+    }
+    
+    @Override
+    protected String getPlayerName(int playerId) {
+        return getPlayer(playerId).getName() + " ("+COLOUR_NAMES[playerId-1]+")";
+    }
+    
+    /**
+     * Updates the pieces on the board to reflect the given move, which must be legal, and ends the turn.
+     * @param move the encoded move to play.
+     */
+    private void playMove(int move) {
+        
+        int from = move & 0x3F, to = move>>6 & 0x3F, newType = move>>12;
+        int x_from = from / HEIGHT, y_from = from % HEIGHT, x_to = to / HEIGHT, y_to = to % HEIGHT;
+        int type = bits.get(x_from, y_from) & 7;
+        
+        //A diagonal pawn move onto an empty tile captures the pawn beside it en passant.
+        if(type == ChessBitboard.PAWN && x_to != x_from && !getPieceInst(x_to, y_to).isPresent()) {
+            getPieceInst(x_to, y_from).get().delete();
         }
         
-        for(int i = 0; i < 2; i++) {
-            new Rook(i + 1, 0, i * 7);
-            new Knight(i + 1, 1, i * 7);
-            new Bishop(i + 1, 2, i * 7);
-            new King(i + 1, 3, i * 7);
-            new Queen(i + 1, 4, i * 7);
-            new Bishop(i + 1, 5, i * 7);
-            new Knight(i + 1, 6, i * 7);
-            new Rook(i + 1, 7, i * 7);
+        //Move the rook over which a castling king jumps.
+        if(type == ChessBitboard.KING && Math.abs(x_to - x_from) == 2) {
+            getPieceInst(x_to < x_from ? 0 : WIDTH - 1, y_from).get()
+                    .setBoardPos((x_from + x_to) / 2, y_from);
         }
+        
+        getPieceInst(x_from, y_from).get().setBoardPos(x_to, y_to);
+        
+        //Replace a promoted pawn with its new piece.
+        if(newType != 0) {
+            getPieceInst(x_to, y_to).get().delete();
+            new ChessPiece(Chessman.values()[newType - 1], getCurrentPlayerId(), x_to, y_to);
+        }
+        
+        bits.apply(move);
+        endTurn();
+    }
+    
+    /**
+     * @param promotion the type to which a pawn is promoted, or null if none.
+     * @return the encoded move, as in 'ChessState'.
+     */
+    private static int encodeMove(int x_from, int y_from, int x_to, int y_to, Chessman promotion) {
+        return (x_from * HEIGHT + y_from) | (x_to * HEIGHT + y_to)<<6
+                | (promotion==null ? 0 : promotion.ordinal()+1)<<12;
     }
     
     /**
      * Implementation of Player<Chess> for use in inserting a human-controlled player.<br>
-     * Each ChessController will make moves based on mouse input on the game display window.
+     * Each ChessController will make moves based on mouse input on the game display window.<br>
+     * Pawns are always promoted to queens.
      * @author Alec Dorrington
      */
     public static class ChessController extends Controller<Chess> {
@@ -147,7 +275,7 @@ public class Chess extends TileGame {
                 
                 //Select this piece.
                 selectPiece(game, game.getPieceInst(x, y).get());
-                
+            
             //If the current player has a piece selected.
             } else if(getSelected().isPresent()) {
                 
@@ -156,330 +284,175 @@ public class Chess extends TileGame {
                         getSelected().get().getRow(), x, y)) {
                     
                     unselectPiece(game);
+                    
+                    //Promote a pawn which reached the last row.
+                    if(game.isPromoting()) game.promotePawn(Chessman.QUEEN);
                 }
             }
         }
     }
     
     /**
-     * Represents a pawn chess piece.
+     * Compact snapshot of a Chess position, for use in searching.<br>
+     * <br>
+     * Each tile holds 0 if empty, or otherwise the piece there encoded
+     * as '(type.ordinal() + 1) | (owner - 1)<<3'.<br>
+     * Moves are encoded as 'from | to<<6 | promotion<<12', where 'from' and 'to' are
+     * tile indices, and 'promotion' is 'type.ordinal() + 1' for the piece to which
+     * a pawn is promoted, or 0 if none. Castling is encoded as a two-space king move.<br>
+     * <br>
+     * The position is backed by a 'ChessBitboard', which generates the legal moves.
      * @author Alec Dorrington
      */
-    private class Pawn extends Piece {
-         
-        private static final long serialVersionUID = -761873584935853190L;
+    public static final class ChessState extends GameState {
         
-        /** Whether the pawn moved forwards 2 spaces on the previous turn. Used for en passant. */
-        private boolean movedDouble = false;
+        /** The position, in which moves are applied before being copied to the tiles. */
+        private final ChessBitboard board;
         
-        Pawn(int ownerId, int x, int y) {
-            super(ownerId, x, y, PAWN_TEXTURES[ownerId - 1]);
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private ChessState(Chess game) {
+            
+            super(game.getWidth(), game.getHeight(), game.bits.getCurrentPlayerId());
+            board = game.bits.copy();
+            board.getPieces(cells);
         }
-
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private ChessState(ChessState state) {
+            super(state);
+            board = state.board.copy();
+        }
+        
         @Override
-        public boolean movePiece(int x_to, int y_to) {
-            
-            //Unit value in direction pawn should be moving.
-            int dir = getOwnerId() == 1 ? 1 : -1;
-            //The y value at which the pawn started.
-            int home = getOwnerId() == 1 ? 1 : 6;
-            //The difference between the current position and the new position.
-            int dx = x_to - getCol(), dy = y_to - getRow();
-            
-            //Ensure piece is owned by the current player.
-            if(getOwnerId() != getCurrentPlayerId()) return false;
-            
-            //Ensure players can't capture their own pieces.
-            if(getPieceInst(x_to, y_to).isPresent() && getPieceInst(getCol(), getRow()).get().getOwnerId()
-                    == getPieceInst(x_to, y_to).get().getOwnerId()) return false;
-            
-            //Ensure pawns move forward the correct number of spaces.
-            if(Math.abs(dy) < 1 || Math.abs(dy) > 2) return false;
-            
-            //Ensure pawns don't move forward multiple spaces after their first move.
-            if(Math.abs(dy) == 2 && getRow() != home) return false;
-            
-            //Ensure pawns move forward.
-            if(dy * dir < 0) return false;
-            
-            //Ensure pawns can't jump over other pieces.
-            if(Math.abs(dy) == 2 && getPieceInst(getCol(), getRow() + dir).isPresent()) return false;
-            
-            //Ensure pawns don't move sideways more than 1 space.
-            if(Math.abs(dx) > 1) return false;
-            
-            //Ensure pawns can't move sideways/capture while also moving 2 spaces forward.
-            if(Math.abs(dx) == 1 && Math.abs(dy) == 2) return false;
-            
-            //Ensure pawns can't capture when moving straight.
-            if(Math.abs(dx) == 0 && getPieceInst(x_to, y_to).isPresent()) return false;
-            
-            //Ensure pawns can't move diagonally without capturing.
-            if(Math.abs(dx) == 1 && !getPieceInst(x_to, y_to).isPresent()) {
-                
-                //If no piece is directly captured, an en passant capture must have been made.
-                
-                //Ensure piece captured by en passant exsits.
-                if(!getPieceInst(x_to, y_to-dy).isPresent()) return false;
-                
-                //Ensure piece captured by en passant is a pawn.
-                if(!(getPieceInst(x_to, y_to-dy).get() instanceof Pawn)) return false;
-                
-                //Ensure piece captured by en passant moved forward 2 spaces.
-                if(!((Pawn)getPieceInst(x_to, y_to-dy).get()).movedDouble) return false;
-                
-                //Ensure piece captured by en passant isn't your own piece.
-                if(getPieceInst(x_to, y_to-dy).get().getOwnerId() == getOwnerId()) return false;
-                
-                //Remove a piece captured by en passant.
-                getPieceInst(x_to, y_to-dy).get().delete();
-            }
-            
-            //Move the pawn.
-            movedDouble = Math.abs(dy) == 2;
-            setBoardPos(x_to, y_to);
-            return true;
+        public void apply(int move) {
+            board.apply(move);
+            board.getPieces(cells);
+            nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            board.undo(move);
+            board.getPieces(cells);
+            prevPlayer();
+            moveUndone();
         }
-    }
-    
-    /**
-     * Represents a rook chess piece.
-     * @author Alec Dorrington
-     */
-    private class Rook extends Piece {
         
-        private static final long serialVersionUID = 4875419301198346425L;
+        @Override
+        public ChessState copy() { return new ChessState(this); }
+        
+        /**
+         * Fills the given array with every legal move for the current player.
+         * @param moves the array in which to store the moves, of length at least 'ChessBitboard.MAX_MOVES'.
+         * @return the number of legal moves.
+         */
+        public int getLegalMoves(int[] moves) { return board.getLegalMoves(moves); }
+        
+        /**
+         * @return whether the current player's king is attacked.
+         */
+        public boolean isInCheck() { return board.isInCheck(); }
+        
+        /**
+         * @return whether the game is drawn by repetition, the fifty-move rule or insufficient material.
+         */
+        public boolean isDraw() { return board.isDraw(); }
         
-        /** Whether the piece has yet been moved. Used for castling. */
-        private boolean moved = false;
+        /**
+         * @return the Zobrist hash of the position, including the castling rights and en passant.
+         */
+        public long hash() { return board.hash(); }
         
-        Rook(int ownerId, int x, int y) {
-            super(ownerId, x, y, ROOK_TEXTURES[ownerId - 1]);
+        /**
+         * Encodes a move of a piece from one position to another.
+         * @param x_from the current x position of the piece.
+         * @param y_from the current y position of the piece.
+         * @param x_to the new x position of the piece.
+         * @param y_to the new y position of the piece.
+         * @param promotion the type to which a pawn is promoted, or null if none.
+         * @return the encoded move.
+         */
+        public int encodeMove(int x_from, int y_from, int x_to, int y_to, Chessman promotion) {
+            return index(x_from, y_from) | index(x_to, y_to)<<6
+                    | (promotion==null ? 0 : promotion.ordinal()+1)<<12;
         }
-
-        @Override
-        public boolean movePiece(int x_to, int y_to) {
-            
-            //The difference between the current position and the new position.
-            int dx = x_to - getCol(), dy = y_to - getRow();
-            
-            //Ensure piece is owned by the current player.
-            if(getOwnerId() != getCurrentPlayerId()) return false;
-            
-            //Ensure players can't capture their own pieces.
-            if(getPieceInst(x_to, y_to).isPresent() && getPieceInst(getCol(), getRow()).get().getOwnerId()
-                    == getPieceInst(x_to, y_to).get().getOwnerId()) return false;
-            
-            //Ensure rooks move at least one space along only one dimension.
-            if(dx==0 ^ dy!=0) return false;
-            
-            int xx = getCol() + (int)Math.signum(dx);
-            int yy = getRow() + (int)Math.signum(dy);
-            
-            //For each position between the from and to locations.
-            while(xx != x_to || yy != y_to) {
-                
-                //Ensure rooks can't jump over other pieces.
-                if(getPieceInst(xx, yy).isPresent()) return false;
-                
-                xx += Math.signum(dx);
-                yy += Math.signum(dy);
-            }
-            moved = true;
-            setBoardPos(x_to, y_to);
-            return true;
+        
+        /**
+         * @param type the type of the piece.
+         * @param ownerId the ID of the owner of the piece.
+         * @return the value of a tile holding this piece.
+         */
+        public static byte encodePiece(Chessman type, int ownerId) {
+            return (byte) ((type.ordinal() + 1) | (ownerId - 1)<<3);
         }
-    }
-    
-    /**
-     * Represents a knight chess piece.
-     * @author Alec Dorrington
-     */
-    private class Knight extends Piece {
         
-        private static final long serialVersionUID = 5733044206284824747L;
-
-        Knight(int ownerId, int x, int y) {
-            super(ownerId, x, y, KNIGHT_TEXTURES[ownerId - 1]);
+        /**
+         * @param x the x position to check.
+         * @param y the y position to check.
+         * @return the type of the piece at (x, y), or null if empty.
+         */
+        public Chessman getType(int x, int y) {
+            int piece = cells[index(x, y)];
+            return piece == 0 ? null : Chessman.values()[(piece & 7) - 1];
         }
-
-        @Override
-        public boolean movePiece(int x_to, int y_to) {
-            
-            //The difference between the current position and the new position.
-            int dx = x_to - getCol(), dy = y_to - getRow();
-            
-            //Ensure piece is owned by the current player.
-            if(getOwnerId() != getCurrentPlayerId()) return false;
-            
-            //Ensure players can't capture their own pieces.
-            if(getPieceInst(x_to, y_to).isPresent() && getPieceInst(getCol(), getRow()).get().getOwnerId()
-                    == getPieceInst(x_to, y_to).get().getOwnerId()) return false;
-            
-            //Ensure knights move 1 square in one direction and 2 squares in the other.
-            if(!(Math.abs(dx) == 1 && Math.abs(dy) == 2) &&
-                    !(Math.abs(dx) == 2 && Math.abs(dy) == 1)) return false;
-            
-            setBoardPos(x_to, y_to);
-            return true;
+        
+        /**
+         * @param x the x position to check.
+         * @param y the y position to check.
+         * @return the ID of the owner of the piece at (x, y), or 0 if empty.
+         */
+        public int getOwner(int x, int y) {
+            int piece = cells[index(x, y)];
+            return piece == 0 ? 0 : (piece>>3) + 1;
         }
-    }
-    
-    /**
-     * Represents a bishop chess piece.
-     * @author Alec Dorrington
-     */
-    private class Bishop extends Piece {
         
-        private static final long serialVersionUID = -3070814962520252515L;
-
-        Bishop(int ownerId, int x, int y) {
-            super(ownerId, x, y, BISHOP_TEXTURES[ownerId - 1]);
+        /**
+         * @param playerId the ID of the player.
+         * @param kingside whether to check castling towards the rook at x = 7, rather than x = 0.
+         * @return whether the player may still castle on this side, at some point.
+         */
+        public boolean canCastle(int playerId, boolean kingside) {
+            return (board.getCastling() & (kingside ? ChessBitboard.WHITE_KINGSIDE
+                    : ChessBitboard.WHITE_QUEENSIDE) << 2*(playerId-1)) != 0;
         }
-
-        @Override
-        public boolean movePiece(int x_to, int y_to) {
-            
-            //The difference between the current position and the new position.
-            int dx = x_to - getCol(), dy = y_to - getRow();
-            
-            //Ensure piece is owned by the current player.
-            if(getOwnerId() != getCurrentPlayerId()) return false;
-            
-            //Ensure players can't capture their own pieces.
-            if(getPieceInst(x_to, y_to).isPresent() && getPieceInst(getCol(), getRow()).get().getOwnerId()
-                    == getPieceInst(x_to, y_to).get().getOwnerId()) return false;
-            
-            //Ensure bishops move diagonally.
-            if(Math.abs(dx) != Math.abs(dy)) return false;
-            
-            //A move can't have a piece remain still.
-            if(dx == 0 && dy == 0) return false;
-            
-            int xx = getCol() + (int)Math.signum(dx);
-            int yy = getRow() + (int)Math.signum(dy);
-            
-            //For each position between the from and to locations.
-            while(xx != x_to || yy != y_to) {
-                
-                //Ensure bishops can't jump over other pieces.
-                if(getPieceInst(xx, yy).isPresent()) return false;
-                
-                xx += Math.signum(dx);
-                yy += Math.signum(dy);
-            }
-            setBoardPos(x_to, y_to);
-            return true;
+        
+        /**
+         * @return the index of the pawn which may be captured en passant, or -1 if none.
+         */
+        public int getEnPassant() {
+            int square = board.getEnPassant();
+            return square == -1 ? -1 : currentPlayerId == 1 ? square - 1 : square + 1;
         }
     }
     
     /**
-     * Represents a queen chess piece.
+     * Represents a chess piece of any type.<br>
+     * The rules of movement are applied by the game.
      * @author Alec Dorrington
      */
-    private class Queen extends Piece {
+    private class ChessPiece extends Piece {
         
-        private static final long serialVersionUID = -2344156684729093731L;
-
-        Queen(int ownerId, int x, int y) {
-            super(ownerId, x, y, QUEEN_TEXTURES[ownerId - 1]);
+        private static final long serialVersionUID = -761873584935853190L;
+        
+        ChessPiece(Chessman type, int ownerId, int x, int y) {
+            super(ownerId, x, y, TEXTURES[type.ordinal()][ownerId - 1]);
         }
-
+        
         @Override
         public boolean movePiece(int x_to, int y_to) {
-            
-            //The difference between the current position and the new position.
-            int dx = x_to - getCol(), dy = y_to - getRow();
-            
-            //Ensure piece is owned by the current player.
-            if(getOwnerId() != getCurrentPlayerId()) return false;
-            
-            //Ensure players can't capture their own pieces.
-            if(getPieceInst(x_to, y_to).isPresent() && getPieceInst(getCol(), getRow()).get().getOwnerId()
-                    == getPieceInst(x_to, y_to).get().getOwnerId()) return false;
-            
-            //Ensure queens move straight or diagonally.
-            if(Math.abs(dx) != Math.abs(dy) && dx==0 ^ dy!=0) return false;
-            
-            //A move can't have a piece remain still.
-            if(dx == 0 && dy == 0) return false;
-            
-            int xx = getCol() + (int)Math.signum(dx);
-            int yy = getRow() + (int)Math.signum(dy);
-            
-            //For each position between the from and to locations.
-            while(xx != x_to && yy != y_to) {
-                
-                //Ensure queens can't jump over other pieces.
-                if(getPieceInst(xx, yy).isPresent()) return false;
-                
-                xx += Math.signum(dx);
-                yy += Math.signum(dy);
-            }
-            setBoardPos(x_to, y_to);
-            return true;
+            return Chess.this.movePiece(getCol(), getRow(), x_to, y_to);
         }
-    }
-    
-    /**
-     * Represents a king chess piece.
-     * @author Alec Dorrington
-     */
-    private class King extends Piece {
         
-        private static final long serialVersionUID = -7906130242443041647L;
-        /** Whether the piece has yet been moved. Used for castling. */
-        private boolean moved = false;
-        
-        King(int ownerId, int x, int y) {
-            super(ownerId, x, y, KING_TEXTURES[ownerId - 1]);
-        }
-
         @Override
-        public boolean movePiece(int x_to, int y_to) {
-            
-            //The difference between the current position and the new position.
-            int dx = x_to - getCol(), dy = y_to - getRow();
-            
-            //Ensure piece is owned by the current player.
-            if(getOwnerId() != getCurrentPlayerId()) return false;
-            
-            //Ensure players can't capture their own pieces.
-            if(getPieceInst(x_to, y_to).isPresent() && getPieceInst(getCol(), getRow()).get().getOwnerId()
-                    == getPieceInst(x_to, y_to).get().getOwnerId()) return false;
-            
-            //A move can't have a piece remain still.
-            if(dx == 0 && dy == 0) return false;
-            
-            //The king must castle if it moves 2 spaces horizontally.
-            if(Math.abs(dx) == 2 && Math.abs(dy) == 0) {
-                
-                //Ensure king hasn't been moved.
-                if(moved) return false;
-                
-                //Ensure piece exists at the expected location for castling.
-                if(!getPieceInst(dx<0?0:7, getRow()).isPresent()) return false;
-                
-                //Ensure other piece used for castling is a rook.
-                if(!(getPieceInst(dx<0?0:7, getRow()).get() instanceof Rook)) return false;
-                
-                //Ensure the rook hasn't been moved.
-                if(((Rook)getPieceInst(dx<0?0:7, getRow()).get()).moved) return false;
-                
-                //Ensure space between king and rook is empty.
-                for(int xx = getCol() + dx/2; xx>0 && xx<7; xx += dx/2) {
-                    if(getPieceInst(xx, getRow()).isPresent()) return false;
-                }
-                
-                //Move the rook to the position over which the king jumped.
-                getPieceInst(dx<0?0:7, getRow()).get().setBoardPos(getCol() + dx/2, getRow());
-                
-            //Ensure a king can't move further than one space.
-            } else if(Math.abs(dx)>1 || Math.abs(dy)>1) return false;
-            
-            moved = true;
-            setBoardPos(x_to, y_to);
-            return true;
+        public boolean validateMove(int x_to, int y_to) {
+            return Chess.this.validateMove(getCol(), getRow(), x_to, y_to);
         }
     }
-}
\ No newline at end of file
+}
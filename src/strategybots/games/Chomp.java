@@ -1,5 +1,6 @@
 package strategybots.games;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -112,6 +113,11 @@ public class Chomp extends TileGame {
      */
     public boolean isTileChomped(int x, int y) { return chomped[x][y]; }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized ChompState getState() { return new ChompState(this); }
+    
     @Override
     protected void init() {
         
@@ -121,10 +127,12 @@ public class Chomp extends TileGame {
         getBoard().setBackground(Pattern.CHECKER, BOARD_COLOUR1, BOARD_COLOUR2);
         
         //Create a poison marker on the bottom-left tile.
-        Tile poison = new Tile(getWindow());
-        poison.setTexture(Texture.getTexture("res/misc/poison.png"));
-        poison.setColour(Colour.WHITE);
-        getBoard().setPosition(poison, 0, 0);
+        if(!isHeadless()) {
+            Tile poison = new Tile(getWindow());
+            poison.setTexture(Texture.getTexture("res/misc/poison.png"));
+            poison.setColour(Colour.WHITE);
+            getBoard().setPosition(poison, 0, 0);
+        }
     }
     
     @Override
@@ -145,6 +153,107 @@ public class Chomp extends TileGame {
         return getPlayer(playerId).getName() + " ("+COLOUR_NAMES[playerId-1]+")";
     }
     
+    /**
+     * Compact snapshot of a Chomp position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the player who chomped it, or 0 if it remains.<br>
+     * Tiles which were chomped before the snapshot was taken hold -1.<br>
+     * Moves are encoded as the index of the tile from which to chomp.
+     * @author Alec Dorrington
+     */
+    public static final class ChompState extends GameState {
+        
+        /** The number of remaining (unchomped) tiles in each column. */
+        private final int[] columnHeights;
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private ChompState(Chomp game) {
+            
+            super(game.getWidth(), game.getHeight(), game.getCurrentPlayerId());
+            columnHeights = new int[width];
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    
+                    //The chomped region is always a staircase in the top-right.
+                    if(game.isTileChomped(x, y)) {
+                        cells[index(x, y)] = -1;
+                    } else columnHeights[x] = y + 1;
+                }
+            }
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private ChompState(ChompState state) {
+            super(state);
+            columnHeights = state.columnHeights.clone();
+        }
+        
+        @Override
+        public void apply(int move) {
+            
+            int x = getX(move), y = getY(move);
+            
+            //Chomp all remaining tiles above and to the right, saving each column height.
+            int xx = x;
+            for(; xx < width && columnHeights[xx] > y; xx++) {
+                
+                push(columnHeights[xx]);
+                for(int yy = y; yy < columnHeights[xx]; yy++) {
+                    cells[index(xx, yy)] = (byte) currentPlayerId;
+                }
+                columnHeights[xx] = y;
+            }
+            //Save the number of affected columns.
+            push(xx - x);
+            nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            
+            int x = getX(move), y = getY(move);
+            
+            //Restore each column affected by the chomp, in reverse order.
+            for(int xx = x + (int) pop() - 1; xx >= x; xx--) {
+                columnHeights[xx] = (int) pop();
+                for(int yy = y; yy < columnHeights[xx]; yy++) {
+                    cells[index(xx, yy)] = 0;
+                }
+            }
+            prevPlayer();
+            moveUndone();
+        }
+        
+        @Override
+        public ChompState copy() { return new ChompState(this); }
+        
+        /**
+         * @param x the x position to check.
+         * @param y the y position to check.
+         * @return whether the tile at (x, y) remains on the board.
+         */
+        public boolean isLegal(int x, int y) { return y < columnHeights[x]; }
+        
+        /**
+         * @param x the x position of the column to check.
+         * @return the number of remaining tiles in this column.
+         */
+        public int getColumnHeight(int x) { return columnHeights[x]; }
+        
+        /**
+         * @return whether the poison tile has been chomped.
+         */
+        public boolean isPoisoned() { return columnHeights[0] == 0; }
+    }
+    
     /**
      * Implementation of Player<Chomp> for use in inserting a human-controlled player.<br>
      * Each ChompController will make moves based on mouse input on the game display window.
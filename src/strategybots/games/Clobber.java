@@ -1,5 +1,6 @@
 package strategybots.games;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 
 /**
@@ -93,6 +94,11 @@ public class Clobber extends TileGame {
         return getPieceInst(x, y).isPresent() ? getPieceInst(x, y).get().getOwnerId() : 0;
     }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized ClobberState getState() { return new ClobberState(this); }
+    
     @Override
     protected void init() {
         
@@ -140,6 +146,91 @@ public class Clobber extends TileGame {
         return getPlayer(playerId).getName() + " ("+COLOUR_NAMES[playerId-1]+")";
     }
     
+    /**
+     * Compact snapshot of a Clobber position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the stone there, or 0 if empty.<br>
+     * Moves are encoded as 'from | to<<16', where each is the index of a tile.
+     * @author Alec Dorrington
+     */
+    public static final class ClobberState extends GameState {
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private ClobberState(Clobber game) {
+            
+            super(game.getWidth(), game.getHeight(), game.getCurrentPlayerId());
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    cells[index(x, y)] = (byte) game.getStone(x, y);
+                }
+            }
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private ClobberState(ClobberState state) { super(state); }
+        
+        @Override
+        public void apply(int move) {
+            //The moving stone always clobbers an opponent stone.
+            cells[move >>> 16] = cells[move & 0xFFFF];
+            cells[move & 0xFFFF] = 0;
+            nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            prevPlayer();
+            cells[move & 0xFFFF] = (byte) currentPlayerId;
+            cells[move >>> 16] = (byte) (currentPlayerId % 2 + 1);
+            moveUndone();
+        }
+        
+        @Override
+        public ClobberState copy() { return new ClobberState(this); }
+        
+        /**
+         * Encodes a move of a stone from one position to another.
+         * @param x_from the current x position of the stone.
+         * @param y_from the current y position of the stone.
+         * @param x_to the new x position of the stone.
+         * @param y_to the new y position of the stone.
+         * @return the encoded move.
+         */
+        public int encodeMove(int x_from, int y_from, int x_to, int y_to) {
+            return index(x_from, y_from) | index(x_to, y_to)<<16;
+        }
+        
+        /**
+         * @param playerId the ID of the player to check.
+         * @return whether this player has any stone adjacent to an opponent stone.
+         */
+        public boolean hasMoves(int playerId) {
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    
+                    if(cells[index(x, y)] != playerId) continue;
+                    
+                    //Look at the four orthogonally adjacent tiles.
+                    if((x > 0 && cells[index(x-1, y)] == playerId % 2 + 1)
+                            || (x < width-1 && cells[index(x+1, y)] == playerId % 2 + 1)
+                            || (y > 0 && cells[index(x, y-1)] == playerId % 2 + 1)
+                            || (y < height-1 && cells[index(x, y+1)] == playerId % 2 + 1))
+                        return true;
+                }
+            }
+            return false;
+        }
+    }
+    
     /**
      * Implementation of Player<Clobber> for use in inserting a human-controlled player.<br>
      * Each ClobberController will make moves based on mouse input on the game display window.
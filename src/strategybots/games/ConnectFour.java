@@ -109,6 +109,11 @@ public class ConnectFour extends TicTacToe {
         return x>=0 && x<getWidth() && getStackHeight(x)<getHeight();
     }
     
+    @Override
+    public synchronized ConnectFourState getState() {
+        return new ConnectFourState(this);
+    }
+    
     @Override
     protected void init() {
         setTitle(TITLE);
@@ -130,6 +135,74 @@ public class ConnectFour extends TicTacToe {
         return STONE_COLOURS[playerId-1];
     }
     
+    /**
+     * Compact snapshot of a Connect Four position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the stone there, or 0 if empty.<br>
+     * Moves are encoded as the x position of the column in which to drop a stone.
+     * @author Alec Dorrington
+     */
+    public static class ConnectFourState extends TicTacToeState {
+        
+        /** The number of stones in each column. */
+        private final int[] stackHeights;
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        protected ConnectFourState(ConnectFour game) {
+            super(game);
+            stackHeights = new int[width];
+            for(int x = 0; x < width; x++) {
+                stackHeights[x] = game.getStackHeight(x);
+            }
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        protected ConnectFourState(ConnectFourState state) {
+            super(state);
+            stackHeights = state.stackHeights.clone();
+        }
+        
+        @Override
+        public void apply(int move) {
+            super.apply(index(move, stackHeights[move]++));
+        }
+        
+        @Override
+        public void undo(int move) {
+            super.undo(index(move, --stackHeights[move]));
+        }
+        
+        @Override
+        public ConnectFourState copy() { return new ConnectFourState(this); }
+        
+        /**
+         * @param x the x position of the column to check.
+         * @return whether a stone may be dropped in this column.
+         */
+        public boolean isLegal(int x) { return stackHeights[x] < height; }
+        
+        /**
+         * @param x the x position of the column to check.
+         * @return the number of stones in this column.
+         */
+        public int getStackHeight(int x) { return stackHeights[x]; }
+        
+        /**
+         * Determines whether the last stone dropped in the given column caused a win.
+         * @param x the x position of the column to check.
+         * @return whether the top stone in this column is part of a winning streak.
+         */
+        public boolean isWinInColumn(int x) {
+            return stackHeights[x] > 0 && isWin(index(x, stackHeights[x]-1));
+        }
+    }
+    
     /**
      * Implementation of Player<ConnectFour> for use in inserting a human-controlled player.<br>
      * Each ConnectFourController will make moves based on mouse input on the game display window.
@@ -1,5 +1,6 @@
 package strategybots.games;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -193,6 +194,11 @@ public class DotsAndBoxes extends TileGame {
     	return scores[playerId - 1]; 
     }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized DotsState getState() { return new DotsState(this); }
+    
     /**
      * Checks for captures on the squares adjacent to a placed line.
      * @param orien the orientation of the line.
@@ -283,6 +289,141 @@ public class DotsAndBoxes extends TileGame {
         return getPlayer(playerId).getName() + " ("+COLOUR_NAMES[playerId-1]+")";
     }
     
+    /**
+     * Compact snapshot of a Dots and Boxes position, for use in searching.<br>
+     * <br>
+     * The state uses the same (2*width+1)x(2*height+1) grid as the board, where
+     * lines occupy tiles with exactly one odd coordinate, and squares occupy tiles
+     * with two odd coordinates. Each line tile holds 1 if a line has been drawn there,
+     * or 0 otherwise. Each square tile holds the number of lines around the square.<br>
+     * Moves are encoded as the index of the line tile, as given by 'encodeMove()'.
+     * As in the game, the turn doesn't pass to the next player after a capture.
+     * @author Alec Dorrington
+     */
+    public static final class DotsState extends GameState {
+        
+        /** The number of squares captured by each player, and in total. */
+        private final int[] scores = new int[3];
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private DotsState(DotsAndBoxes game) {
+            
+            super(2*game.width+1, 2*game.height+1, game.getCurrentPlayerId());
+            
+            for(int x = 0; x < game.width; x++) {
+                for(int y = 0; y < game.height; y++) {
+                    cells[index(2*x+1, 2*y+1)] = (byte) game.numSides[x][y];
+                }
+            }
+            for(int x = 0; x < game.width; x++) {
+                for(int y = 0; y <= game.height; y++) {
+                    if(game.h_lines[x][y]) cells[index(2*x+1, 2*y)] = 1;
+                }
+            }
+            for(int x = 0; x <= game.width; x++) {
+                for(int y = 0; y < game.height; y++) {
+                    if(game.v_lines[x][y]) cells[index(2*x, 2*y+1)] = 1;
+                }
+            }
+            scores[1] = game.getScore(1);
+            scores[2] = game.getScore(2);
+            scores[0] = game.totalScore;
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private DotsState(DotsState state) {
+            super(state);
+            System.arraycopy(state.scores, 0, scores, 0, scores.length);
+        }
+        
+        @Override
+        public void apply(int move) {
+            
+            cells[move] = 1;
+            
+            //Increment the number of sides for each adjacent square.
+            int captured = 0;
+            for(int sign = -1; sign <= 1; sign += 2) {
+                int square = getSquare(move, sign);
+                if(square != -1 && ++cells[square] == 4) captured++;
+            }
+            
+            push(currentPlayerId | captured << 8);
+            scores[currentPlayerId] += captured;
+            scores[0] += captured;
+            
+            //The turn is over when a move is made which captures no squares.
+            if(captured == 0) nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            
+            long record = pop();
+            int captured = (int) (record >> 8);
+            currentPlayerId = (int) (record & 0xFF);
+            scores[currentPlayerId] -= captured;
+            scores[0] -= captured;
+            
+            cells[move] = 0;
+            for(int sign = -1; sign <= 1; sign += 2) {
+                int square = getSquare(move, sign);
+                if(square != -1) cells[square]--;
+            }
+            moveUndone();
+        }
+        
+        @Override
+        public DotsState copy() { return new DotsState(this); }
+        
+        /**
+         * Encodes the line in the given orientation at the given position.
+         * @param orien the orientation of the line.
+         * @param x the x position of the line, as in 'drawLine()'.
+         * @param y the y position of the line, as in 'drawLine()'.
+         * @return the encoded move.
+         */
+        public int encodeMove(Orien orien, int x, int y) {
+            return orien==Orien.HORZ ? index(2*x+1, 2*y) : index(2*x, 2*y+1);
+        }
+        
+        /**
+         * @param playerId the ID of the player to check, or 0 for the total.
+         * @return the number of squares captured by this player.
+         */
+        public int getScore(int playerId) { return scores[playerId]; }
+        
+        /**
+         * @return whether all of the squares have been captured.
+         */
+        public boolean isFinished() { return scores[0] == (width/2) * (height/2); }
+        
+        /**
+         * Finds the square on one side of the given line.
+         * @param line the index of the line tile.
+         * @param sign -1 for the square below/left, 1 for the square above/right.
+         * @return the index of the square tile, or -1 if at the edge of the board.
+         */
+        private int getSquare(int line, int sign) {
+            
+            int x = getX(line), y = getY(line);
+            
+            //Horizontal lines border squares above and below.
+            if(x % 2 == 1) y += sign;
+            //Vertical lines border squares to the left and right.
+            else x += sign;
+            
+            return inBounds(x, y) ? index(x, y) : -1;
+        }
+    }
+    
     /**
      * Implementation of Player<Dots> for use in inserting a human-controlled player.<br>
      * Each DotsController will make moves based on mouse input on the game display window.
@@ -162,6 +162,11 @@ public class Pentago extends TicTacToe {
      */
     public boolean stonePlaced() { return piecePlaced; }
     
+    @Override
+    public synchronized PentagoState getState() {
+        return new PentagoState(this);
+    }
+    
     @Override
     protected void init() {
         
@@ -207,6 +212,99 @@ public class Pentago extends TicTacToe {
         return Colour.WHITE;
     }
     
+    /**
+     * Compact snapshot of a Pentago position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the stone there, or 0 if empty.<br>
+     * A move consists of both a placement and a rotation, encoded by 'encodeMove()'.
+     * @author Alec Dorrington
+     */
+    public static class PentagoState extends TicTacToeState {
+        
+        /** Buffer used when rotating a quadrant. */
+        private final byte[] quadrant = new byte[QUADRANT_SIZE * QUADRANT_SIZE];
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        protected PentagoState(Pentago game) { super(game); }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        protected PentagoState(PentagoState state) { super(state); }
+        
+        @Override
+        public void apply(int move) {
+            super.apply(move & 0xFFFF);
+            rotate((move>>16) & 0xF, (move>>20) & 0xF, (move>>24) != 0);
+        }
+        
+        @Override
+        public void undo(int move) {
+            rotate((move>>16) & 0xF, (move>>20) & 0xF, (move>>24) == 0);
+            super.undo(move & 0xFFFF);
+        }
+        
+        @Override
+        public PentagoState copy() { return new PentagoState(this); }
+        
+        /**
+         * Encodes a placement followed by a rotation as a single move.
+         * @param x the x position at which to place a stone.
+         * @param y the y position at which to place a stone.
+         * @param qx the x coordinate of the quadrant to rotate.
+         * @param qy the y coordinate of the quadrant to rotate.
+         * @param clockwise true=clockwise, false=anticlockwise.
+         * @return the encoded move.
+         */
+        public int encodeMove(int x, int y, int qx, int qy, boolean clockwise) {
+            return index(x, y) | qx<<16 | qy<<20 | (clockwise ? 1:0)<<24;
+        }
+        
+        /**
+         * Determines whether the given player has a winning streak anywhere on the board.
+         * @param playerId the ID of the player to check for a win.
+         * @return whether this player has a streak of at least the target length.
+         */
+        public boolean hasWon(int playerId) {
+            for(int i = 0; i < cells.length; i++) {
+                if(cells[i] == playerId && isWin(i)) return true;
+            }
+            return false;
+        }
+        
+        /**
+         * Rotates a quadrant by 90 degrees.
+         * @param qx the x coordinate of the quadrant to rotate.
+         * @param qy the y coordinate of the quadrant to rotate.
+         * @param clockwise true=clockwise, false=anticlockwise.
+         */
+        private void rotate(int qx, int qy, boolean clockwise) {
+            
+            //Copy the contents of the quadrant into the buffer.
+            for(int xx = 0; xx < QUADRANT_SIZE; xx++) {
+                for(int yy = 0; yy < QUADRANT_SIZE; yy++) {
+                    quadrant[xx*QUADRANT_SIZE+yy] = cells[index(
+                            qx*QUADRANT_SIZE+xx, qy*QUADRANT_SIZE+yy)];
+                }
+            }
+            
+            //Write each stone back to its rotated position.
+            for(int xx = 0; xx < QUADRANT_SIZE; xx++) {
+                for(int yy = 0; yy < QUADRANT_SIZE; yy++) {
+                    
+                    int rx = clockwise ? yy : QUADRANT_SIZE-yy-1;
+                    int ry = clockwise ? QUADRANT_SIZE-xx-1 : xx;
+                    cells[index(qx*QUADRANT_SIZE+rx, qy*QUADRANT_SIZE+ry)] =
+                            quadrant[xx*QUADRANT_SIZE+yy];
+                }
+            }
+        }
+    }
+    
     /**
      * Implementation of Player<Pentago> for use in inserting a human-controlled player.<br>
      * Each PentagoController will make moves based on mouse input on the game display window.
@@ -3,9 +3,12 @@ package strategybots.games;
 import java.util.HashSet;
 import java.util.Set;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
+import strategybots.games.bitboard.ReversiBitboard;
 import strategybots.games.graphics.Colour;
+import strategybots.games.graphics.Texture;
 
 /**
  * <b>Reversi/Othello implementation.</b><br>
@@ -39,6 +42,18 @@ public class Reversi extends TileGame {
     private static final Colour BOARD_COLOUR1 = Colour.rgb(123, 237, 159);
     private static final Colour BOARD_COLOUR2 = Colour.rgb(46, 213, 115);
     
+    /** Bitboard copy of the discs, used to validate moves, or null if the board is too large. */
+    private transient ReversiBitboard bits;
+    
+    /** The owner of the disc on each tile, or 0 if empty, indexed by 'x * height + y'. */
+    private transient byte[] cells;
+    
+    /** For each tile, bit 'playerId - 1' is set if that player may place a disc there. */
+    private transient byte[] mobility;
+    
+    /** The number of legal moves of each player, indexed by player ID. */
+    private transient int[] numLegalMoves;
+    
     /**
      * Asynchronously runs a new Reversi instance.
      * @param width the width of the game board.
@@ -79,6 +94,11 @@ public class Reversi extends TileGame {
         //Ensure pieces are placed onto empty tiles.
         if(getPieceInst(x, y).isPresent()) return false;
         
+        //Ensure the move is legal, using the cached legal moves.
+        if(!isLegalMove(x, y)) return false;
+        
+        if(bits != null) return placeDisc(bits.index(x, y));
+        
         //Determine which enemy pieces this move would flip.
         Set<Disc> flipped = getFlipped(getCurrentPlayerId(), x, y);
         
@@ -88,16 +108,69 @@ public class Reversi extends TileGame {
         //Create a new piece at the chosen location.
         new Disc(getCurrentPlayerId(), x, y);
         
-        //Replace all the flipped enemy pieces with friendly pieces.
-        for(Disc disc : flipped) {
-            disc.delete();
-            new Disc(getCurrentPlayerId(), disc.getCol(), disc.getRow());
+        //Flip all the captured enemy pieces to friendly pieces.
+        for(Disc disc : flipped) disc.flip(getCurrentPlayerId());
+        
+        endTurn();
+        return true;
+    }
+    
+    /**
+     * Places a new disc using the bitboard, which both validates the move and
+     * determines which discs are flipped.
+     * @param move the bit index of the tile at which to place the disc.
+     * @return whether the move was valid and successful.
+     */
+    private boolean placeDisc(int move) {
+        
+        //Ensure each move flips at least one enemy piece.
+        long flipped = bits.place(getCurrentPlayerId(), move);
+        if(flipped == 0) return false;
+        
+        new Disc(getCurrentPlayerId(), bits.getX(move), bits.getY(move));
+        
+        //Flip all the captured enemy pieces to friendly pieces.
+        for(; flipped != 0; flipped &= flipped - 1) {
+            int i = Long.numberOfTrailingZeros(flipped);
+            ((Disc) getPieceInst(bits.getX(i), bits.getY(i)).get()).flip(getCurrentPlayerId());
         }
         
         endTurn();
         return true;
     }
     
+    /**
+     * Determines whether the current player may place a disc at the given position.<br>
+     * Legal moves are cached, and updated after each move, so this is a constant-time check.
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return whether placing a disc at (x, y) is a legal move.
+     */
+    public boolean isLegalMove(int x, int y) {
+        return inBounds(x, y) && (mobility[index(x, y)] & 1 << (getCurrentPlayerId() - 1)) != 0;
+    }
+    
+    /**
+     * Fills the given array with the cached legal moves of the current player,
+     * encoded as tile indices as used by 'ReversiState'.
+     * @param moves the array in which to store the moves, of length at least 'width * height'.
+     * @return the number of legal moves.
+     */
+    public int getLegalMoves(int[] moves) {
+        
+        int numMoves = 0, bit = 1 << (getCurrentPlayerId() - 1);
+        for(int i = 0; i < mobility.length; i++) {
+            if((mobility[i] & bit) != 0) moves[numMoves++] = i;
+        }
+        return numMoves;
+    }
+    
+    /**
+     * @param playerId the ID of the player to check.
+     * @return the number of tiles on which this player may currently place a disc.
+     */
+    public int getNumLegalMoves(int playerId) { return numLegalMoves[playerId]; }
+    
     /**
      * Returns the disc currently at the given position.<br>
      * <table border="1">
@@ -113,6 +186,11 @@ public class Reversi extends TileGame {
         return getPieceInst(x, y).isPresent() ? getPieceInst(x, y).get().getOwnerId() : 0;
     }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized ReversiState getState() { return new ReversiState(this); }
+    
     /**
      * Determines which discs are to be captured if a disc
      * is placed at the given position by the given player.
@@ -167,6 +245,11 @@ public class Reversi extends TileGame {
     @Override
     protected void init() {
         
+        //Begin with an empty board, on which no player may move.
+        cells = new byte[getWidth() * getHeight()];
+        mobility = new byte[cells.length];
+        numLegalMoves = new int[getNumPlayers() + 1];
+        
         //Set the board colours.
         getBoard().setBackground(Pattern.CHECKER, BOARD_COLOUR1, BOARD_COLOUR2);
         
@@ -175,6 +258,9 @@ public class Reversi extends TileGame {
         new Disc(1, getWidth()/2, getHeight()/2-1);
         new Disc(2, getWidth()/2-1, getHeight()/2-1);
         new Disc(2, getWidth()/2, getHeight()/2);
+        
+        bits = ReversiBitboard.fits(getWidth(), getHeight()) ?
+                ReversiBitboard.create(getState()) : null;
     }
     
     @Override
@@ -182,18 +268,9 @@ public class Reversi extends TileGame {
         
         for(int i = 0; i < getNumPlayers(); i++) {
             
-            //For each empty tile on the board.
-            for(int x = 0; x < getWidth(); x++) {
-                for(int y = 0; y < getHeight(); y++) {
-                    
-                    if(!getPieceInst(x, y).isPresent()) {
-                        
-                        //There exists a legal move. Don't skip the turn.
-                        if(getFlipped(getCurrentPlayerId() % getNumPlayers()
-                                + 1, x, y).size() > 0) return;
-                    }
-                }
-            }
+            //There exists a legal move. Don't skip the turn.
+            if(numLegalMoves[getCurrentPlayerId() % getNumPlayers() + 1] > 0) return;
+            
             //This player has no legal moves. Skip turn.
             skipTurn();
         }
@@ -224,11 +301,256 @@ public class Reversi extends TileGame {
         return winnerId;
     }
     
+    /**
+     * Records a change of owner of the disc at the given position, and updates the
+     * cached legal moves. Only the empty tiles at the end of each line of discs through
+     * this tile can be affected, so the cost is proportional to the length of these lines.
+     * @param ownerId the ID of the new owner of the disc.
+     * @param x the x position of the disc.
+     * @param y the y position of the disc.
+     */
+    private void setCell(int ownerId, int x, int y) {
+        
+        cells[index(x, y)] = (byte) ownerId;
+        updateMobility(x, y);
+        
+        //For each direction, find the first empty tile beyond the line of discs.
+        for(int i = -1; i <= 1; i++) {
+            for(int j = -1; j <= 1; j++) {
+                
+                if(i == 0 && j == 0) continue;
+                
+                int xx = x + i, yy = y + j;
+                while(inBounds(xx, yy) && cells[index(xx, yy)] != 0) {
+                    xx += i;
+                    yy += j;
+                }
+                if(inBounds(xx, yy)) updateMobility(xx, yy);
+            }
+        }
+    }
+    
+    /**
+     * Recomputes which players may place a disc on the given tile.
+     * @param x the x position of the tile.
+     * @param y the y position of the tile.
+     */
+    private void updateMobility(int x, int y) {
+        
+        int index = index(x, y), mask = 0;
+        if(cells[index] == 0) {
+            for(int playerId = 1; playerId <= getNumPlayers(); playerId++) {
+                if(encloses(playerId, x, y)) mask |= 1 << (playerId - 1);
+            }
+        }
+        
+        //Update the number of legal moves of each player whose mobility changed.
+        for(int playerId = 1; playerId <= getNumPlayers(); playerId++) {
+            int bit = 1 << (playerId - 1);
+            if((mask & bit) != (mobility[index] & bit)) {
+                numLegalMoves[playerId] += (mask & bit) != 0 ? 1 : -1;
+            }
+        }
+        mobility[index] = (byte) mask;
+    }
+    
+    /**
+     * @param playerId the ID of the player placing a disc.
+     * @param x the x position of an empty tile.
+     * @param y the y position of an empty tile.
+     * @return whether a disc placed here would enclose at least one enemy disc.
+     */
+    private boolean encloses(int playerId, int x, int y) {
+        
+        for(int i = -1; i <= 1; i++) {
+            for(int j = -1; j <= 1; j++) {
+                
+                if(i == 0 && j == 0) continue;
+                
+                //Skip over the enemy discs, which must be followed by a friendly disc.
+                int xx = x + i, yy = y + j, dist = 1;
+                while(inBounds(xx, yy) && cells[index(xx, yy)] != 0
+                        && cells[index(xx, yy)] != playerId) {
+                    xx += i;
+                    yy += j;
+                    dist++;
+                }
+                if(dist > 1 && inBounds(xx, yy) && cells[index(xx, yy)] == playerId) return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * @param x the x position of a tile.
+     * @param y the y position of a tile.
+     * @return the index of the tile, as used in 'cells' and by 'ReversiState'.
+     */
+    private int index(int x, int y) { return x * getHeight() + y; }
+    
     @Override
     protected String getPlayerName(int playerId) {
         return getPlayer(playerId).getName() + " (" + COLOUR_NAMES[playerId - 1] + ")";
     }
     
+    /**
+     * Compact snapshot of a Reversi position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the disc there, or 0 if empty.<br>
+     * Moves are encoded as the index of the tile at which to place a disc,
+     * or 'PASS' if the current player has no legal moves.
+     * @author Alec Dorrington
+     */
+    public static final class ReversiState extends GameState {
+        
+        /** Move used to skip the turn of a player with no legal moves. */
+        public static final int PASS = -1;
+        
+        /** The x and y components of each of the eight directions. */
+        private static final int[] X_DIRS = {1, 1, 0, -1, -1, -1, 0, 1};
+        private static final int[] Y_DIRS = {0, 1, 1, 1, 0, -1, -1, -1};
+        
+        /** The number of discs owned by each player. */
+        private final int[] scores = new int[3];
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        private ReversiState(Reversi game) {
+            
+            super(game.getWidth(), game.getHeight(), game.getCurrentPlayerId());
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    cells[index(x, y)] = (byte) game.getDisc(x, y);
+                    scores[cells[index(x, y)]]++;
+                }
+            }
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        private ReversiState(ReversiState state) {
+            super(state);
+            System.arraycopy(state.scores, 0, scores, 0, scores.length);
+        }
+        
+        @Override
+        public void apply(int move) {
+            
+            if(move != PASS) {
+                
+                int x = getX(move), y = getY(move), numFlipped = 0;
+                
+                //For each direction in which to check for captures.
+                for(int dir = 0; dir < 8; dir++) {
+                    
+                    int length = getChainLength(currentPlayerId, x, y, dir);
+                    
+                    //Flip each disc in an enclosed chain, saving its position.
+                    for(int dist = 1; dist <= length; dist++) {
+                        int i = index(x + X_DIRS[dir]*dist, y + Y_DIRS[dir]*dist);
+                        cells[i] = (byte) currentPlayerId;
+                        push(i);
+                    }
+                    numFlipped += length;
+                }
+                cells[move] = (byte) currentPlayerId;
+                scores[currentPlayerId] += numFlipped + 1;
+                scores[currentPlayerId % 2 + 1] -= numFlipped;
+                scores[0]--;
+                
+                //Save the number of discs flipped.
+                push(numFlipped);
+            }
+            nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            
+            prevPlayer();
+            
+            if(move != PASS) {
+                
+                int opponentId = currentPlayerId % 2 + 1;
+                int numFlipped = (int) pop();
+                
+                //Return each flipped disc to the opponent.
+                for(int n = 0; n < numFlipped; n++) {
+                    cells[(int) pop()] = (byte) opponentId;
+                }
+                cells[move] = 0;
+                scores[currentPlayerId] -= numFlipped + 1;
+                scores[opponentId] += numFlipped;
+                scores[0]++;
+            }
+            moveUndone();
+        }
+        
+        @Override
+        public ReversiState copy() { return new ReversiState(this); }
+        
+        /**
+         * @param move the index of the tile to check.
+         * @return whether the current player may place a disc on this tile.
+         */
+        public boolean isLegal(int move) {
+            
+            if(cells[move] != 0) return false;
+            
+            //At least one chain must be enclosed.
+            for(int dir = 0; dir < 8; dir++) {
+                if(getChainLength(currentPlayerId,
+                        getX(move), getY(move), dir) > 0) return true;
+            }
+            return false;
+        }
+        
+        /**
+         * @return whether the current player has any legal moves.
+         */
+        public boolean hasMoves() {
+            for(int i = 0; i < cells.length; i++) {
+                if(isLegal(i)) return true;
+            }
+            return false;
+        }
+        
+        /**
+         * @param playerId the ID of the player to check, or 0 for empty tiles.
+         * @return the number of discs owned by this player.
+         */
+        public int getScore(int playerId) { return scores[playerId]; }
+        
+        /**
+         * Determines the number of opponent discs enclosed in the given direction.
+         * @param playerId the ID of the player making the move.
+         * @param x the x position the disc is placed at.
+         * @param y the y position the disc is placed at.
+         * @param dir the index of the direction in which to search.
+         * @return the number of discs which would be flipped in this direction.
+         */
+        private int getChainLength(int playerId, int x, int y, int dir) {
+            
+            //Continue searching in this direction.
+            for(int dist = 1;; dist++) {
+                
+                int xx = x + X_DIRS[dir]*dist, yy = y + Y_DIRS[dir]*dist;
+                
+                //Empty tile/edge of board has been reached before a friendly piece.
+                if(!inBounds(xx, yy) || cells[index(xx, yy)] == 0) return 0;
+                
+                //An enclosed chain has been found.
+                if(cells[index(xx, yy)] == playerId) return dist - 1;
+            }
+        }
+    }
+    
     /**
      * Implementation of Player<Reversi> for use in inserting a human-controlled player.<br>
      * Each ReversiController will make moves based on mouse input on the game display window.
@@ -257,6 +579,17 @@ public class Reversi extends TileGame {
 
         Disc(int ownerId, int x, int y) {
             super(ownerId, x, y, DISC_TEXTURES[ownerId - 1]);
+            setCell(ownerId, x, y);
+        }
+        
+        /**
+         * Captures this disc for the given player, changing its owner and texture in place.
+         * @param ownerId the ID of the new owner of this disc.
+         */
+        void flip(int ownerId) {
+            setOwner(ownerId);
+            if(!isHeadless()) setTexture(Texture.getTexture(DISC_TEXTURES[ownerId - 1]));
+            setCell(ownerId, getCol(), getRow());
         }
 
         @Override
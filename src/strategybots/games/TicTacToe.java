@@ -3,6 +3,7 @@ package strategybots.games;
 import java.util.HashSet;
 import java.util.Set;
 
+import strategybots.games.base.GameState;
 import strategybots.games.base.TileGame;
 import strategybots.games.base.Board.Pattern;
 import strategybots.games.graphics.Colour;
@@ -139,6 +140,13 @@ public class TicTacToe extends TileGame {
      */
     public int getTarget() { return target; }
     
+    /**
+     * @return a compact snapshot of the current state of the board.
+     */
+    public synchronized TicTacToeState getState() {
+        return new TicTacToeState(this);
+    }
+    
     @Override
     protected void init() {
         getBoard().setBackground(Pattern.CHECKER, BOARD_COLOURS);
@@ -258,6 +266,115 @@ public class TicTacToe extends TileGame {
         }
     }
     
+    /**
+     * Compact snapshot of a Tic-Tac-Toe position, for use in searching.<br>
+     * <br>
+     * Each tile holds the ID of the owner of the stone there, or 0 if empty.<br>
+     * Moves are encoded as the index of the tile at which to place a stone.
+     * @author Alec Dorrington
+     */
+    public static class TicTacToeState extends GameState {
+        
+        /** Number of stones in a row required to win. */
+        protected final int target;
+        
+        /** The current number of stones on the board. */
+        protected int numStones = 0;
+        
+        /**
+         * Constructs a snapshot of the current state of the given game.
+         * @param game the game to take a snapshot of.
+         */
+        protected TicTacToeState(TicTacToe game) {
+            
+            super(game.getWidth(), game.getHeight(), game.getCurrentPlayerId());
+            target = game.getTarget();
+            
+            for(int x = 0; x < width; x++) {
+                for(int y = 0; y < height; y++) {
+                    cells[index(x, y)] = (byte) game.getStone(x, y);
+                    if(cells[index(x, y)] != 0) numStones++;
+                }
+            }
+        }
+        
+        /**
+         * Constructs a new state as a copy of the given state.
+         * @param state the state to copy.
+         */
+        protected TicTacToeState(TicTacToeState state) {
+            super(state);
+            target = state.target;
+            numStones = state.numStones;
+        }
+        
+        @Override
+        public void apply(int move) {
+            cells[move] = (byte) currentPlayerId;
+            numStones++;
+            nextPlayer();
+            moveApplied();
+        }
+        
+        @Override
+        public void undo(int move) {
+            cells[move] = 0;
+            numStones--;
+            prevPlayer();
+            moveUndone();
+        }
+        
+        @Override
+        public TicTacToeState copy() { return new TicTacToeState(this); }
+        
+        /**
+         * Determines whether the stone at the given tile is part of a winning streak.
+         * @param index the index of the tile to check.
+         * @return whether a streak of at least the target length passes through this tile.
+         */
+        public boolean isWin(int index) {
+            
+            int playerId = cells[index];
+            if(playerId == 0) return false;
+            int x = getX(index), y = getY(index);
+            
+            //For each of the four directions in which a streak could occur.
+            for(int dir = 0; dir < 4; dir++) {
+                
+                //The x and y components of this direction.
+                int x_dir = dir<2 ? 1 : dir==2 ? 0:-1;
+                int y_dir = dir==0 ? 0:1;
+                
+                int streak = 1;
+                
+                //For each sub-streak on the 2 sides of the stone.
+                for(int sign = -1; sign <= 1; sign += 2) {
+                    
+                    int xx = x + x_dir*sign, yy = y + y_dir*sign;
+                    
+                    //Keep searching until the end of the streak is found.
+                    while(inBounds(xx, yy) && cells[index(xx, yy)] == playerId) {
+                        streak++;
+                        xx += x_dir*sign;
+                        yy += y_dir*sign;
+                    }
+                }
+                if(streak >= target) return true;
+            }
+            return false;
+        }
+        
+        /**
+         * @return whether every tile on the board is occupied.
+         */
+        public boolean isFull() { return numStones == width * height; }
+        
+        /**
+         * @return the number of stones in a row required to win.
+         */
+        public int getTarget() { return target; }
+    }
+    
     /**
      * Represents a TicTacToe game piece.
      * @author Alec Dorrington
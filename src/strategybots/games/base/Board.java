@@ -92,6 +92,18 @@ public class Board implements Serializable {
         resetColours();
     }
     
+    /**
+     * Constructs a new chessboard with the given dimensions, without a window.<br>
+     * No tiles are created and nothing is rendered. For use by 'HeadlessBoard'.
+     * @param width the width of the chessboard in number of tiles.
+     * @param height the height of the chessboard in number of tiles.
+     */
+    protected Board(int width, int height) {
+        this.width = width;
+        this.height = height;
+        window = null;
+    }
+    
     /**
      * Sets the relative width of the given column.
      * @param col the index of the column to be changed.
@@ -297,6 +309,11 @@ public class Board implements Serializable {
      */
     public Window getWindow() { return window; }
     
+    /**
+     * @return whether the window in which this chessboard resides is still open.
+     */
+    public boolean isOpen() { return window.isOpen(); }
+    
     /**
      * @param inputEnabled whether tile clicks are to be registered.
      */
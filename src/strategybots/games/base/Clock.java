@@ -0,0 +1,204 @@
+package strategybots.games.base;
+
+import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Chess clock which limits the time each player may spend on their turns.<br>
+ * <br>
+ * A clock may have a total budget for the whole game, a Fischer increment added
+ * after each turn, and a limit on the time spent on any single turn, in any
+ * combination. Time is measured either as wall time, or as the CPU time of the
+ * thread on which the turn is taken, such that bots aren't charged for time spent
+ * descheduled on a loaded machine. CPU time doesn't include any other threads
+ * started by a bot, so multi-threaded bots should be played using wall time.<br>
+ * <br>
+ * A player whose time runs out forfeits the game.
+ *
+ * @author Alec Dorrington
+ */
+public class Clock implements Serializable {
+
+    private static final long serialVersionUID = -6186211386294521308L;
+
+    /** The ways in which time may be measured. */
+    public enum Mode {
+        /** Elapsed real time. */
+        WALL,
+        /** CPU time of the thread taking the turn, or wall time where unsupported. */
+        CPU
+    }
+
+    /** Used to measure the CPU time of threads. */
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    /**
+     * Value used in place of a time in nanoseconds where there is no limit. This is
+     * greater than any real time, so a player can't be mistaken for having no limit.
+     */
+    private static final long UNLIMITED = Long.MAX_VALUE;
+
+    /** The way in which time is measured. */
+    private final Mode mode;
+
+    /** The time initially given to each player, in nanoseconds, or 'UNLIMITED'. */
+    private final long initial;
+
+    /** The time added to the clock of a player after each turn, in nanoseconds. */
+    private final long increment;
+
+    /** The maximum time per turn, in nanoseconds, or 'UNLIMITED'. */
+    private final long moveLimit;
+
+    /** The time remaining for each player, indexed by player ID, in nanoseconds. */
+    private long[] remaining = new long[3];
+
+    /** The ID of the player whose turn is being timed, or 0 if none. */
+    private int turnPlayerId = 0;
+
+    /** The ID of the thread on which the current turn is being taken. */
+    private long turnThreadId;
+
+    /** The time at which the current turn began, in nanoseconds. */
+    private long turnStart;
+
+    /**
+     * Constructs a new clock.
+     * @param mode the way in which time is measured.
+     * @param initial the total time given to each player, in milliseconds, or -1 for no limit.
+     * @param increment the time added after each turn, in milliseconds.
+     * @param moveLimit the maximum time per turn, in milliseconds, or -1 for no limit.
+     */
+    public Clock(Mode mode, long initial, long increment, long moveLimit) {
+
+        //Fall back to wall time where CPU time can't be measured.
+        this.mode = mode == Mode.CPU && THREADS.isThreadCpuTimeSupported() ? Mode.CPU : Mode.WALL;
+
+        this.initial = initial < 0 ? UNLIMITED : initial * 1_000_000;
+        this.increment = Math.max(increment, 0) * 1_000_000;
+        this.moveLimit = moveLimit < 0 ? UNLIMITED : moveLimit * 1_000_000;
+        reset(2);
+    }
+
+    /**
+     * @param mode the way in which time is measured.
+     * @param moveLimit the maximum time per turn, in milliseconds.
+     * @return a new clock with only a limit per turn.
+     */
+    public static Clock perMove(Mode mode, long moveLimit) {
+        return new Clock(mode, -1, 0, moveLimit);
+    }
+
+    /**
+     * @param mode the way in which time is measured.
+     * @param initial the total time given to each player, in milliseconds.
+     * @param increment the time added after each turn, in milliseconds.
+     * @return a new clock with a game budget and a Fischer increment.
+     */
+    public static Clock fischer(Mode mode, long initial, long increment) {
+        return new Clock(mode, initial, increment, -1);
+    }
+
+    /**
+     * Returns the time the given player has left to complete their current or next turn.
+     * This is the smaller of the time left on their clock and the time left
+     * under the limit per turn, and includes time already spent on the current turn.
+     * @param playerId the ID of the player to check.
+     * @return the remaining time in milliseconds, or -1 if there is no limit.
+     */
+    public synchronized long getRemaining(int playerId) {
+        long time = getRemainingNanos(playerId);
+        return time == UNLIMITED ? -1 : Math.max(time, 0) / 1_000_000;
+    }
+
+    /**
+     * @param playerId the ID of the player to check.
+     * @return whether the given player has run out of time.
+     */
+    public synchronized boolean isExpired(int playerId) {
+        return getRemainingNanos(playerId) < 0;
+    }
+
+    /**
+     * @return whether each player has a total budget for the whole game.
+     */
+    public boolean hasBudget() { return initial != UNLIMITED; }
+
+    /**
+     * @return the time added to the clock of a player after each turn, in milliseconds.
+     */
+    public long getIncrement() { return increment / 1_000_000; }
+
+    /**
+     * @return the maximum time per turn in milliseconds, or -1 if there is no limit.
+     */
+    public long getMoveLimit() { return moveLimit == UNLIMITED ? -1 : moveLimit / 1_000_000; }
+
+    /**
+     * @return the way in which time is measured.
+     */
+    public Mode getMode() { return mode; }
+
+    /**
+     * Gives every player the initial time, and stops timing any turn in progress.
+     * @param numPlayers the number of players in the game.
+     */
+    synchronized void reset(int numPlayers) {
+        remaining = new long[numPlayers + 1];
+        Arrays.fill(remaining, initial);
+        turnPlayerId = 0;
+    }
+
+    /**
+     * Starts timing the turn of the given player on the calling thread.
+     * @param playerId the ID of the player whose turn it is.
+     */
+    synchronized void start(int playerId) {
+        turnPlayerId = playerId;
+        turnThreadId = Thread.currentThread().getId();
+        turnStart = now();
+    }
+
+    /**
+     * Stops timing the current turn, charging the time taken to the player,
+     * then adding the increment to their clock.
+     * @return whether the player completed their turn in time.
+     */
+    synchronized boolean stop() {
+
+        int playerId = turnPlayerId;
+        long elapsed = now() - turnStart;
+        boolean expired = isExpired(playerId);
+
+        if(initial != UNLIMITED) remaining[playerId] -= elapsed - increment;
+        turnPlayerId = 0;
+        return !expired;
+    }
+
+    /**
+     * @param playerId the ID of the player to check.
+     * @return the remaining time in nanoseconds, or 'UNLIMITED' if there is no limit.
+     */
+    private long getRemainingNanos(int playerId) {
+
+        long elapsed = playerId == turnPlayerId ? now() - turnStart : 0;
+        long time = UNLIMITED;
+
+        if(initial != UNLIMITED) time = remaining[playerId] - elapsed;
+        if(moveLimit != UNLIMITED) time = Math.min(time, moveLimit - elapsed);
+        return time;
+    }
+
+    /**
+     * @return the current time, as measured by this clock, in nanoseconds.
+     */
+    private long now() {
+
+        if(mode == Mode.WALL) return System.nanoTime();
+
+        long time = THREADS.getThreadCpuTime(turnThreadId);
+        return time == -1 ? System.nanoTime() : time;
+    }
+}
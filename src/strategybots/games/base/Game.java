@@ -2,6 +2,7 @@ package strategybots.games.base;
 
 import java.io.Serializable;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * Abstract supertype for many abstract board games.<br>
@@ -13,6 +14,12 @@ import java.util.Optional;
 public abstract class Game implements Serializable {
     
     private static final long serialVersionUID = 121708475422755346L;
+    
+    /** Whether newly constructed games should be left for the caller to run. */
+    private static volatile boolean synchronousDefault = false;
+    
+    /** The options of any game being constructed by the current thread in 'Options.create()'. */
+    private static final ThreadLocal<Options> constructing = new ThreadLocal<>();
 
     /** Array of all players participating in this game. */
     private Player[] players;
@@ -34,8 +41,18 @@ public abstract class Game implements Serializable {
     /** Indication of the completion of the current players' turn. */
     private volatile boolean turnDone;
     
-    /** The maximum amount of time allocated per turn, in milliseconds. */
-    private volatile long timeLimit = -1;
+    /** The clock limiting the time taken by each player, or null if there is no limit. */
+    private volatile Clock clock = null;
+    
+    /** Whether this game is run by the caller via 'play()' or 'step()',
+     *  rather than in a thread of its own. */
+    private final boolean synchronous = getOptions()
+            .map(Options::isSynchronous).orElse(synchronousDefault);
+    
+    /** Whether the game and its players have been initialised. */
+    private boolean initialised = false;
+    /** Whether the players have been notified of the end of the game. */
+    private boolean finished = false;
     
     /**
      * Constructs a new game with the given players, given in turn order.<br>
@@ -44,6 +61,31 @@ public abstract class Game implements Serializable {
      */
     protected Game(Player... players) { this.players = players; }
     
+    /**
+     * Sets whether subsequently constructed games are to be run synchronously.<br>
+     * Synchronous games don't start a thread of their own; instead the caller
+     * must run them to completion using 'play()' or 'step()'.
+     * Games already constructed are unaffected, as are games constructed
+     * with their own 'Options'.
+     * @param synchronous whether new games should be run by the caller.
+     */
+    public static void setSynchronous(boolean synchronous) {
+        synchronousDefault = synchronous;
+    }
+    
+    /**
+     * @return the options given to the game being constructed by the current thread,
+     * if it is being constructed using 'Options.create()'.
+     */
+    protected static Optional<Options> getOptions() {
+        return Optional.ofNullable(constructing.get());
+    }
+    
+    /**
+     * @return whether this game is run by the caller rather than in its own thread.
+     */
+    public boolean isSynchronous() { return synchronous; }
+    
     /**
      * @return the number of players participating in this game.
      */
@@ -80,12 +122,96 @@ public abstract class Game implements Serializable {
      * Should the time limit expire, the game will be forfeit.
      * @param timeLimit the allocated per-turn time, in milliseconds.
      */
-    public void setTimeLimit(long timeLimit) { this.timeLimit = timeLimit; }
+    public void setTimeLimit(long timeLimit) {
+        setClock(timeLimit > 0 ? Clock.perMove(Clock.Mode.WALL, timeLimit) : null);
+    }
     
     /**
-     * Declare the current turn as having been completed.
+     * Sets the clock used to limit the time taken by each player.<br>
+     * Should a player run out of time, they will forfeit the game.
+     * Must be set before the game begins.
+     * @param clock the clock to use, or null to disable time limits (default).
      */
-    protected void endTurn() { turnDone = true; }
+    public void setClock(Clock clock) {
+        if(clock != null) clock.reset(players.length);
+        this.clock = clock;
+    }
+    
+    /**
+     * @return the clock used to limit the time taken by each player, if there is one.
+     */
+    public Optional<Clock> getClock() { return Optional.ofNullable(clock); }
+    
+    /**
+     * Returns the time the given player has left to complete their current or next turn.<br>
+     * Bots should use this to budget their time, where a clock is in use.
+     * @param playerId the ID of the player to check.
+     * @return the remaining time in milliseconds, or -1 if there is no limit.
+     */
+    public long getTimeRemaining(int playerId) {
+        Clock clock = this.clock;
+        return clock == null ? -1 : clock.getRemaining(playerId);
+    }
+    
+    /**
+     * @return the time added to the clock of a player after each turn,
+     * in milliseconds, or 0 if there is no clock.
+     */
+    public long getTimeIncrement() {
+        Clock clock = this.clock;
+        return clock == null ? 0 : clock.getIncrement();
+    }
+    
+    /**
+     * Blocks the calling thread until the current turn has been completed,
+     * the game is no longer running, or the current player runs out of time.<br>
+     * For use by players whose turns are taken asynchronously (e.g. by mouse input),
+     * so that they needn't spin while waiting.
+     */
+    public void awaitTurn() {
+        
+        synchronized(this) {
+            
+            //Sleep until woken by 'endTurn()', 'endGame()' or 'wakeWaiting()'.
+            while(!turnDone && isRunning()) {
+                
+                //Stop waiting once the time runs out, rather than waiting for the move.
+                Clock clock = this.clock;
+                long timeout = clock == null ? 0 : clock.getRemaining(currentPlayerId);
+                if(clock != null && clock.isExpired(currentPlayerId)) return;
+                
+                try {
+                    //Wait indefinitely where there is no time limit.
+                    wait(timeout < 0 ? 0 : timeout + 1);
+                } catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Wakes any threads waiting in 'awaitTurn()', so that they recheck whether
+     * the turn is done and the game still running.<br>
+     * Should be called whenever the game stops running other than by 'endGame()'
+     * (e.g. when its window is closed).
+     */
+    protected void wakeWaiting() {
+        synchronized(this) { notifyAll(); }
+    }
+    
+    /**
+     * Declare the current turn as having been completed.<br>
+     * Wakes any threads waiting in 'awaitTurn()'.
+     */
+    protected void endTurn() {
+        
+        synchronized(this) {
+            turnDone = true;
+            notifyAll();
+        }
+    }
     
     /**
      * @param playerId the ID of the player to get (starting at 1).
@@ -122,26 +248,78 @@ public abstract class Game implements Serializable {
         currentPlayer = players[currentPlayerId - 1];
     }
     
+    /**
+     * Ends the game after the current turn, with the given player losing.<br>
+     * In a two-player game, their opponent is declared the winner.
+     * @param playerId the ID of the player who forfeits.
+     */
+    protected void forfeit(int playerId) {
+        endGame(players.length == 2 ? playerId % 2 + 1 : 0);
+    }
+    
     /**
      * Ends the game after the current turn, setting the winner.
-     * @param winnerId the ID of the winner of the game.
+     * @param winnerId the ID of the winner of the game, or any other value for a draw.
      */
     protected void endGame(int winnerId) {
         endTurn();
         if(winnerId > 0 && winnerId <= players.length) {
             this.winnerId = winnerId;
             winner = players[winnerId - 1];
+        } else {
+            this.winnerId = -1;
+            winner = null;
         }
         running = false;
+        
+        //Wake any waiting threads now that the game is over.
+        wakeWaiting();
     }
     
     /**
-     * Starts the game in a new thread.
+     * Ends the game as a draw, after the current turn, regardless of the rules.<br>
+     * For use by whoever runs the game (e.g. to impose a limit on the number of turns).
+     * The players are notified by the next call to 'step()'.
+     */
+    public void declareDraw() { endGame(-1); }
+    
+    /**
+     * Starts the game in a new thread.<br>
+     * Does nothing for synchronous games, which are instead run using 'play()'.
      */
     protected void start() {
         
+        //Synchronous games are run by the caller.
+        if(synchronous) return;
+        
         //Run the game in a new thread.
-        new Thread(() -> {
+        new Thread(this::play, "Game").start();
+    }
+    
+    /**
+     * Runs the game to completion on the calling thread.<br>
+     * For synchronous games, this should be called once after construction.
+     * @return the ID of the winner, or -1 in the case of a draw.
+     */
+    public int play() {
+        
+        //Take turns until the game is finished or quit.
+        while(step());
+        return winnerId;
+    }
+    
+    /**
+     * Runs a single turn of the game on the calling thread.<br>
+     * The game and its players are initialised before the first turn,
+     * and the players are notified once the game has finished.
+     * @return whether the game is still running after this turn.
+     */
+    public boolean step() {
+        
+        //Initialise the game and players before the first turn.
+        if(!initialised) {
+            
+            initialised = true;
             
             //Initialise the game.
             init();
@@ -150,44 +328,74 @@ public abstract class Game implements Serializable {
             for(int i = 0; i < players.length; i++) {
                 players[i].init(Game.this, i + 1);
             }
-            
-            //While the game is running (hasn't been finished or quit).
             running = true;
-            while(isRunning()) {
-                
-                //Determine who the current player is.
-                currentPlayer = players[currentPlayerId - 1];
-                
-                //Have the current player take their turn.
-                turnDone = false;
-                preTurn();
+        }
+        
+        //If the game is still running (hasn't been finished or quit).
+        if(isRunning()) {
+            
+            //Determine who the current player is.
+            currentPlayer = players[currentPlayerId - 1];
+            
+            //Have the current player take their turn.
+            turnDone = false;
+            preTurn();
+            
+            //Let the other players think while they wait.
+            for(int i = 0; i < players.length; i++) {
+                if(i + 1 != currentPlayerId) players[i].onOpponentTurn(Game.this, i + 1);
+            }
+            
+            Clock clock = this.clock;
+            boolean inTime = true;
+            
+            try {
                 
-                //Record the time at which the turn began.
-                long startTime = System.currentTimeMillis();
+                //Start the clock of the current player.
+                if(clock != null) clock.start(currentPlayerId);
                 
-                //Wait for the turn to be completed.
+                //Prompt the player until their turn is completed.
+                //Controllers block in 'awaitTurn()' instead of returning early,
+                //so only a bot which failed to move is prompted again.
                 while(!turnDone && isRunning()) {
                     
-                    //Prompt the player to take their turn.
                     currentPlayer.takeTurn(Game.this, currentPlayerId);
                     
-                    //Forfeit the game if the time runs out.
-                    if(timeLimit > 0 && System.currentTimeMillis()-startTime > timeLimit) {
-                        endGame(0);
-                    }
+                    if(clock != null && clock.isExpired(currentPlayerId)) break;
                 }
                 
+                if(clock != null) inTime = clock.stop();
+                
+            } finally {
+                
+                //The other players must stop thinking even if the turn fails.
+                for(int i = 0; i < players.length; i++) {
+                    if(i + 1 != currentPlayerId) players[i].stopPondering(Game.this, i + 1);
+                }
+            }
+            
+            if(inTime) {
                 postTurn();
                 checkEnd();
                 
-                //Increment the current player.
-                currentPlayerId = currentPlayerId % players.length + 1;
-            }
+            //A player whose time runs out forfeits the game. A move made too late
+            //doesn't count, so this overrides any result it may have caused.
+            } else forfeit(currentPlayerId);
+            
+            //Increment the current player.
+            currentPlayerId = currentPlayerId % players.length + 1;
+        }
+        
+        //Notify everyone once the game has finished.
+        if(!isRunning() && !finished) {
+            
+            finished = true;
             onFinish();
             for(int i = 0; i < players.length; i++) {
                 players[i].gameEnd(Game.this, i+1, winnerId);
             }
-        }, "Game").start();
+        }
+        return isRunning();
     }
     
     /**
@@ -218,6 +426,68 @@ public abstract class Game implements Serializable {
      */
     protected void onFinish() {}
     
+    /**
+     * Options with which to construct a single game, in place of the defaults
+     * set by 'setSynchronous()' and 'TileGame.setHeadless()'.<br>
+     * Unlike the defaults, these affect only the games constructed by 'create()',
+     * and so may be used by many threads at once.
+     * @author Alec Dorrington
+     */
+    public static final class Options {
+        
+        /** Whether the game runs without a window (tile games only). */
+        private boolean headless = false;
+        
+        /** Whether the game is run by the caller rather than in its own thread. */
+        private boolean synchronous = false;
+        
+        /**
+         * @param headless whether the game runs without a window (default false).
+         * @return these options.
+         */
+        public Options setHeadless(boolean headless) {
+            this.headless = headless;
+            return this;
+        }
+        
+        /**
+         * @param synchronous whether the game is run by the caller
+         * using 'play()' or 'step()' (default false).
+         * @return these options.
+         */
+        public Options setSynchronous(boolean synchronous) {
+            this.synchronous = synchronous;
+            return this;
+        }
+        
+        /**
+         * @return whether the game runs without a window.
+         */
+        public boolean isHeadless() { return headless; }
+        
+        /**
+         * @return whether the game is run by the caller.
+         */
+        public boolean isSynchronous() { return synchronous; }
+        
+        /**
+         * Constructs a game with these options, using the given factory.<br>
+         * The factory should construct exactly one game, on the calling thread.
+         * @param factory constructs the game (e.g. '() -&gt; new ConnectFour(p1, p2)').
+         * @return the newly constructed game.
+         */
+        public <G extends Game> G create(Supplier<G> factory) {
+            
+            Options previous = constructing.get();
+            constructing.set(this);
+            try {
+                return factory.get();
+            } finally {
+                constructing.set(previous);
+            }
+        }
+    }
+    
     /**
      * Supertype for all player implementations.
      * @author Alec Dorrington
@@ -235,11 +505,31 @@ public abstract class Game implements Serializable {
         /**
          * Called once whenever the player is expected to take a turn.<br>
          * Implementations of this must complete a whole turn as per the rules of the specific game.
+         * Should this return before the turn is complete, it is called again.
          * @param game the game being played.
          * @param playerId the ID of this player.
          */
         void takeTurn(G game, int playerId);
         
+        /**
+         * Called whenever another player is about to take a turn, such that this
+         * player may think in the background in the meantime (pondering).<br>
+         * Implementations of this must return immediately, and must not access
+         * the game from any other thread until 'stopPondering()' is called.
+         * @param game the game being played.
+         * @param playerId the ID of this player.
+         */
+        default void onOpponentTurn(G game, int playerId) {}
+        
+        /**
+         * Called once the turn of another player has finished, even if unsuccessfully.<br>
+         * Implementations of this must stop any thinking started by 'onOpponentTurn()'
+         * before returning.
+         * @param game the game being played.
+         * @param playerId the ID of this player.
+         */
+        default void stopPondering(G game, int playerId) {}
+        
         /**
          * Called once at the completion of the game.
          * @param game the game being played.
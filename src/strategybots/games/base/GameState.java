@@ -0,0 +1,187 @@
+package strategybots.games.base;
+
+import java.util.Arrays;
+
+/**
+ * Abstract supertype for compact snapshots of the state of a tile game.<br>
+ * <br>
+ * A state stores the board as a flat array of bytes, and moves as primitive
+ * integers (encoded as documented by each game), such that bots may search
+ * through positions by applying and undoing moves without any allocation,
+ * and without touching the pieces used for rendering.<br>
+ * <br>
+ * Moves must be undone in the reverse order in which they were applied.
+ * States don't validate moves; applying an illegal move has undefined results.
+ *
+ * @author Alec Dorrington
+ */
+public abstract class GameState {
+
+    /** The dimensions of the board. */
+    protected final int width, height;
+
+    /** The contents of each tile, indexed by 'x * height + y'. */
+    protected final byte[] cells;
+
+    /** The ID of the player whose turn it currently is. */
+    protected int currentPlayerId;
+
+    /** The number of moves which have been applied to this state. */
+    private int numMoves = 0;
+
+    /** Stack of information required to undo previous moves. */
+    private long[] history = new long[64];
+    /** The number of values on the history stack. */
+    private int historySize = 0;
+
+    /**
+     * Constructs a new empty state of the given dimensions.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param currentPlayerId the ID of the player whose turn it is.
+     */
+    protected GameState(int width, int height, int currentPlayerId) {
+        this.width = width;
+        this.height = height;
+        this.currentPlayerId = currentPlayerId;
+        cells = new byte[width * height];
+    }
+
+    /**
+     * Constructs a new state as a copy of the given state.
+     * @param state the state to copy.
+     */
+    protected GameState(GameState state) {
+        width = state.width;
+        height = state.height;
+        currentPlayerId = state.currentPlayerId;
+        cells = state.cells.clone();
+        numMoves = state.numMoves;
+        history = state.history.clone();
+        historySize = state.historySize;
+    }
+
+    /**
+     * Applies the given move, updating the state and the current player.
+     * @param move the encoded move to apply.
+     */
+    public abstract void apply(int move);
+
+    /**
+     * Undoes the given move, which must have been the last move applied.
+     * @param move the encoded move to undo.
+     */
+    public abstract void undo(int move);
+
+    /**
+     * @return an independent copy of this state.
+     */
+    public abstract GameState copy();
+
+    /**
+     * @return the width of the board.
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return the height of the board.
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return the ID of the player whose turn it currently is.
+     */
+    public int getCurrentPlayerId() { return currentPlayerId; }
+
+    /**
+     * @return the number of moves which have been applied to this state.
+     */
+    public int getNumMoves() { return numMoves; }
+
+    /**
+     * Returns the contents of the tile at the given position.<br>
+     * The meaning of each value is documented by the specific game.
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return the contents of the tile at (x, y).
+     */
+    public int get(int x, int y) { return cells[x * height + y]; }
+
+    /**
+     * @param x the x position of a tile.
+     * @param y the y position of a tile.
+     * @return the index of the tile at (x, y), as used in move encodings.
+     */
+    public int index(int x, int y) { return x * height + y; }
+
+    /**
+     * @param index the index of a tile.
+     * @return the x position of the tile.
+     */
+    public int getX(int index) { return index / height; }
+
+    /**
+     * @param index the index of a tile.
+     * @return the y position of the tile.
+     */
+    public int getY(int index) { return index % height; }
+
+    /**
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return whether this position is within the bounds of the board.
+     */
+    public boolean inBounds(int x, int y) {
+        return x>=0 && y>=0 && x<width && y<height;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(!(o instanceof GameState) || o.getClass() != getClass()) return false;
+        GameState state = (GameState) o;
+        return currentPlayerId == state.currentPlayerId
+                && Arrays.equals(cells, state.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(cells) + currentPlayerId;
+    }
+
+    /**
+     * Passes the turn to the next player.
+     */
+    protected void nextPlayer() { currentPlayerId = currentPlayerId % 2 + 1; }
+
+    /**
+     * Returns the turn to the previous player.
+     */
+    protected void prevPlayer() { currentPlayerId = currentPlayerId % 2 + 1; }
+
+    /**
+     * To be called by implementations whenever a move is applied.
+     */
+    protected void moveApplied() { numMoves++; }
+
+    /**
+     * To be called by implementations whenever a move is undone.
+     */
+    protected void moveUndone() { numMoves--; }
+
+    /**
+     * Saves a value required to later undo a move.<br>
+     * The history only ever grows, so is allocation-free once warmed up.
+     * @param value the value to save.
+     */
+    protected void push(long value) {
+        if(historySize == history.length) {
+            history = Arrays.copyOf(history, 2 * history.length);
+        }
+        history[historySize++] = value;
+    }
+
+    /**
+     * @return the value most recently saved with 'push()', which is removed.
+     */
+    protected long pop() { return history[--historySize]; }
+}
@@ -0,0 +1,85 @@
+package strategybots.games.base;
+
+import java.util.function.BiConsumer;
+
+import strategybots.games.graphics.Colour;
+import strategybots.games.graphics.Tile;
+import strategybots.games.graphics.Window;
+
+/**
+ * Board implementation with no window and no rendering.<br>
+ * <br>
+ * Used by games constructed in headless mode, such that they may be played
+ * without a GL context, textures or input handling (e.g. on a server).<br>
+ * All layout and colouring operations are ignored.
+ *
+ * @author Alec Dorrington
+ */
+public class HeadlessBoard extends Board {
+
+    private static final long serialVersionUID = -3520468310592812775L;
+
+    /** Whether this board has been closed. */
+    private volatile boolean open = true;
+
+    /**
+     * Constructs a new headless board with the given dimensions.
+     * @param width the width of the board in number of tiles.
+     * @param height the height of the board in number of tiles.
+     */
+    public HeadlessBoard(int width, int height) { super(width, height); }
+
+    @Override
+    public void setColWidth(int col, int width) {}
+
+    @Override
+    public void setRowHeight(int row, int height) {}
+
+    @Override
+    public void setVBorderWidth(int n, int width) {}
+
+    @Override
+    public void setHBorderHeight(int n, int height) {}
+
+    @Override
+    public void setBackground(Pattern pattern, Colour... colours) {}
+
+    @Override
+    public void addListener(int x, int y, Action l) {}
+
+    @Override
+    public void addListenerToAll(BiConsumer<Integer, Integer> l) {}
+
+    @Override
+    public void setPosition(Tile tile, int x, int y) {}
+
+    @Override
+    public void setColour(int x, int y, Colour colour) {}
+
+    @Override
+    public void resetColours() {}
+
+    @Override
+    public void close() { open = false; }
+
+    @Override
+    public int getTileSize() { return 0; }
+
+    /**
+     * @return null, as a headless board has no window.
+     */
+    @Override
+    public Window getWindow() { return null; }
+
+    @Override
+    public boolean isOpen() { return open; }
+
+    @Override
+    public void setInputEnabled(boolean inputEnabled) {}
+
+    @Override
+    public int getBoardWidth() { return 0; }
+
+    @Override
+    public int getBoardHeight() { return 0; }
+}
@@ -5,10 +5,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.function.BiConsumer;
 
+import strategybots.games.event.Event;
 import strategybots.games.graphics.Colour;
 import strategybots.games.graphics.Texture;
 import strategybots.games.graphics.Tile;
 import strategybots.games.graphics.Window;
+import strategybots.games.graphics.Window.WindowCloseEvent;
 
 /**
  * Abstract supertype for abstract board games using a basic grid board.<br>
@@ -24,6 +26,13 @@ public abstract class TileGame extends Game {
     /** Colour used for selected pieces. */
     private static Colour HIGHLIGHT_COLOUR = Colour.rgb(46, 213, 115);
     
+    /** Whether newly constructed games should run without a window.<br>
+     *  Defaults to the value of the 'strategybots.headless' system property. */
+    private static volatile boolean headlessDefault = Boolean.getBoolean("strategybots.headless");
+    
+    /** Whether this game is running without a window. */
+    private final boolean headless;
+    
     /** The window in which the board resides. */
     private final Window window;
     
@@ -53,11 +62,17 @@ public abstract class TileGame extends Game {
         //Load the players.
         super(players);
         
-        //Create the game board.
-        board = new Board(width, height, title);
+        //Create the game board, opening a window unless running headless.
+        headless = getOptions().map(Options::isHeadless).orElse(headlessDefault);
+        board = headless ? new HeadlessBoard(width, height) : new Board(width, height, title);
         boardPieces = new Piece[width][height];
         window = board.getWindow();
         
+        //Wake any controller waiting for a turn once the window is closed.
+        if(!headless) Event.addHandler(WindowCloseEvent.class, e -> {
+            if(e.WINDOW == window) wakeWaiting();
+        });
+        
         //Setup click listeners on board for controllers.
         getBoard().addListenerToAll((x, y) -> {
             if(getCurrentPlayer() instanceof Controller && isRunning()) {
@@ -105,7 +120,21 @@ public abstract class TileGame extends Game {
     }
     
     /**
-     * @return the window in which the game board exists.
+     * Sets whether subsequently constructed games are to run headless.<br>
+     * Headless games open no window, load no textures and accept no mouse input,
+     * so may only be played by bots. Games already constructed are unaffected,
+     * as are games constructed with their own 'Options'.
+     * @param headless whether new games should run without a window.
+     */
+    public static void setHeadless(boolean headless) { headlessDefault = headless; }
+    
+    /**
+     * @return whether this game is running without a window.
+     */
+    public boolean isHeadless() { return headless; }
+    
+    /**
+     * @return the window in which the game board exists, or null if running headless.
      */
     public Window getWindow() { return window; }
     
@@ -116,7 +145,7 @@ public abstract class TileGame extends Game {
     
     @Override
     public boolean isRunning() {
-        return super.isRunning() && board.getWindow().isOpen();
+        return super.isRunning() && board.isOpen();
     }
     
     /**
@@ -141,13 +170,15 @@ public abstract class TileGame extends Game {
     @Override
     protected void preTurn() {
         //Set the title to indicate the players' turn.
-        window.setTitle(title + " - Current Turn: "
+        if(!headless) window.setTitle(title + " - Current Turn: "
                 + getPlayerName(getCurrentPlayerId()));
     }
     
     @Override
     protected void onFinish() {
         
+        if(headless) return;
+        
         //Display the winner of the game.
         if(getWinner().isPresent()) {
             window.setTitle(title + " - Winner: " + getPlayerName(getWinnerId()));
@@ -179,7 +210,7 @@ public abstract class TileGame extends Game {
      * @param title the new title of the window.
      */
     protected void setTitle(String title) {
-        window.setTitle(title);
+        if(!headless) window.setTitle(title);
         this.title = title;
     }
     
@@ -222,7 +253,7 @@ public abstract class TileGame extends Game {
             
             //Match the size of the piece to the grid size of the board.
             setColour(Colour.WHITE);
-            setTexture(Texture.getTexture(texture));
+            if(!headless) setTexture(Texture.getTexture(texture));
         }
         
         /**
@@ -253,6 +284,21 @@ public abstract class TileGame extends Game {
             this.y = y;
         }
         
+        /**
+         * Transfers this piece to another player, leaving it in place.<br>
+         * Cheaper than deleting the piece and creating a new one in its stead.
+         * @param ownerId the ID of the new owner of this piece.
+         */
+        protected void setOwner(int ownerId) {
+            
+            //Move the piece into the player pieces set of its new owner.
+            playerPieces[getOwnerId() - 1].remove(this);
+            playerPieces[ownerId - 1].add(this);
+            
+            owner = getPlayer(ownerId);
+            this.ownerId = ownerId;
+        }
+        
         /**
          * Removes this piece from the board.
          */
@@ -345,7 +391,7 @@ public abstract class TileGame extends Game {
         public void takeTurn(G game, int playerId) {
             //Wait until the turn is complete before returning control to the game.
             //Actual logic is handled asynchronously by listeners set up in init().
-            while(!game.turnDone() && game.getWindow().isOpen()) {}
+            game.awaitTurn();
         }
         
         /**
@@ -0,0 +1,854 @@
+package strategybots.games.bitboard;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Implementation of the rules of Chess using bitboards.<br>
+ * <br>
+ * The board is stored as one 64-bit word for each type of piece and one for each
+ * player, along with an array of the piece on each tile for direct lookup. The tile
+ * at (x, y) is stored at bit 'x * 8 + y', which is the same as the tile index used by
+ * 'ChessState', with white (player 1) starting on the rows y = 0 and y = 1.
+ * Pieces are encoded as in 'ChessState': '(type.ordinal() + 1) | (owner - 1)<<3'.<br>
+ * <br>
+ * Moves are encoded as 'from | to<<6 | promotion<<12', where 'from' and 'to' are tile
+ * indices, and 'promotion' is the type to which a pawn is promoted, or 0 if none.
+ * Castling is encoded as a two-space king move, and en passant as a diagonal pawn
+ * move onto the empty tile behind the captured pawn.<br>
+ * <br>
+ * Only legal moves are generated. Pieces which are pinned to their king may only
+ * move along the line of the pin, and when in check, moves must capture the checking
+ * piece or block its line, unless the king itself moves. The attacks of rooks and
+ * bishops are found using magic bitboards: the blocking pieces along the lines of
+ * a slider are multiplied by a magic number, chosen such that the top bits of the
+ * product index a table of the attacks for each arrangement of blockers. The magic
+ * numbers are found by random search when the class is loaded.<br>
+ * <br>
+ * The position is hashed using Zobrist keys, and the hash of every earlier
+ * position is kept, which is used to detect repetitions. The game is drawn by
+ * threefold repetition, by the fifty-move rule, or with insufficient material.
+ *
+ * @author Alec Dorrington
+ */
+public final class ChessBitboard {
+
+    /** The types of each piece, equal to 'Chessman.ordinal() + 1'. */
+    public static final int PAWN = 1, ROOK = 2, KNIGHT = 3, BISHOP = 4, QUEEN = 5, KING = 6;
+
+    /** Castling rights, each a single bit. */
+    public static final int WHITE_KINGSIDE = 1, WHITE_QUEENSIDE = 2,
+            BLACK_KINGSIDE = 4, BLACK_QUEENSIDE = 8;
+
+    /** The maximum number of legal moves in any position. */
+    public static final int MAX_MOVES = 256;
+
+    /** The standard starting position, in Forsyth-Edwards Notation. */
+    public static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    /** The directions in which each type of slider moves. */
+    private static final int[][] ROOK_DIRS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}},
+            BISHOP_DIRS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+
+    /** The tiles attacked by a knight or king on each tile. */
+    private static final long[] KNIGHT_ATTACKS = new long[64], KING_ATTACKS = new long[64];
+
+    /** The tiles attacked by a pawn of each player on each tile. */
+    private static final long[][] PAWN_ATTACKS = new long[3][64];
+
+    /** The tiles strictly between two tiles on the same line, or 0 if not on a line. */
+    private static final long[][] BETWEEN = new long[64][64];
+
+    /** Every tile on the line through two tiles, or 0 if not on a line. */
+    private static final long[][] LINE = new long[64][64];
+
+    /** The castling rights kept when a piece moves from or to each tile. */
+    private static final int[] CASTLING_MASKS = new int[64];
+
+    /** The tiles whose contents affect the attacks of a slider on each tile, excluding the edges. */
+    private static final long[] ROOK_MASKS = new long[64], BISHOP_MASKS = new long[64];
+
+    /** The magic number of each tile. */
+    private static final long[] ROOK_MAGICS = new long[64], BISHOP_MAGICS = new long[64];
+
+    /** The shift applied to the product with each magic number. */
+    private static final int[] ROOK_SHIFTS = new int[64], BISHOP_SHIFTS = new int[64];
+
+    /** The index of the attacks of each tile within the table. */
+    private static final int[] ROOK_OFFSETS = new int[64], BISHOP_OFFSETS = new int[64];
+
+    /** The attacks of sliders for every arrangement of blockers, indexed by magic. */
+    private static final long[] ROOK_TABLE, BISHOP_TABLE;
+
+    /** Random values used to hash each piece on each tile, indexed by encoded piece. */
+    private static final long[][] PIECE_KEYS = new long[16][64];
+
+    /** Random values used to hash each combination of castling rights. */
+    private static final long[] CASTLING_KEYS = new long[16];
+
+    /** Random values used to hash the column of an en passant capture. */
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+
+    /** Random value used to hash the turn of the second player. */
+    private static final long SIDE_KEY;
+
+    static {
+        int[][] knightSteps = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] kingSteps = {{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}};
+
+        for(int sq = 0; sq < 64; sq++) {
+            int x = sq >>> 3, y = sq & 7;
+            for(int[] step : knightSteps) KNIGHT_ATTACKS[sq] |= bit(x + step[0], y + step[1]);
+            for(int[] step : kingSteps) KING_ATTACKS[sq] |= bit(x + step[0], y + step[1]);
+            PAWN_ATTACKS[1][sq] = bit(x - 1, y + 1) | bit(x + 1, y + 1);
+            PAWN_ATTACKS[2][sq] = bit(x - 1, y - 1) | bit(x + 1, y - 1);
+            ROOK_MASKS[sq] = getMask(sq, ROOK_DIRS);
+            BISHOP_MASKS[sq] = getMask(sq, BISHOP_DIRS);
+        }
+
+        //Tiles on a line are found by walking out from the first in each direction.
+        for(int from = 0; from < 64; from++) {
+            for(int[] dir : kingSteps) {
+                long between = 0;
+                for(int x = (from >>> 3) + dir[0], y = (from & 7) + dir[1];
+                        x >= 0 && x < 8 && y >= 0 && y < 8; x += dir[0], y += dir[1]) {
+                    int to = x * 8 + y;
+                    BETWEEN[from][to] = between;
+                    LINE[from][to] = (getAttacks(from, 0, new int[][] {dir})
+                            | getAttacks(from, 0, new int[][] {{-dir[0], -dir[1]}})) | 1L << from;
+                    between |= 1L << to;
+                }
+            }
+        }
+
+        Arrays.fill(CASTLING_MASKS, 15);
+        CASTLING_MASKS[4 * 8] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_MASKS[7 * 8] &= ~WHITE_KINGSIDE;
+        CASTLING_MASKS[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_MASKS[4 * 8 + 7] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_MASKS[7 * 8 + 7] &= ~BLACK_KINGSIDE;
+        CASTLING_MASKS[7] &= ~BLACK_QUEENSIDE;
+
+        Random random = new Random(0);
+        ROOK_TABLE = findMagics(ROOK_DIRS, ROOK_MASKS, ROOK_MAGICS, ROOK_SHIFTS, ROOK_OFFSETS, random);
+        BISHOP_TABLE = findMagics(BISHOP_DIRS, BISHOP_MASKS, BISHOP_MAGICS,
+                BISHOP_SHIFTS, BISHOP_OFFSETS, random);
+
+        for(long[] keys : PIECE_KEYS) {
+            for(int sq = 0; sq < 64; sq++) keys[sq] = random.nextLong();
+        }
+        for(int i = 1; i < CASTLING_KEYS.length; i++) CASTLING_KEYS[i] = random.nextLong();
+        for(int i = 0; i < EN_PASSANT_KEYS.length; i++) EN_PASSANT_KEYS[i] = random.nextLong();
+        SIDE_KEY = random.nextLong();
+    }
+
+    /** The tiles occupied by each type of piece, of either player. */
+    private final long[] pieces = new long[7];
+
+    /** The tiles occupied by each player. */
+    private final long[] colours = new long[3];
+
+    /** The encoded piece on each tile, or 0 if empty. */
+    private final byte[] mailbox = new byte[64];
+
+    /** The ID of the player whose turn it currently is. */
+    private int currentPlayerId = 1;
+
+    /** The castling rights which remain, as a combination of bits. */
+    private int castling = 0;
+
+    /** The tile behind a pawn which may be captured en passant, or -1 if none. */
+    private int enPassant = -1;
+
+    /** The number of moves since the last capture or pawn move, for the fifty-move rule. */
+    private int halfmoveClock = 0;
+
+    /** The number of the current turn, starting at 1 and increasing after each move of black. */
+    private int fullmoveNumber = 1;
+
+    /** The Zobrist hash of the current position. */
+    private long hash = 0;
+
+    /** Stack of the information required to undo each move applied. */
+    private long[] history = new long[64];
+    /** The hash of the position before each move applied. */
+    private long[] hashes = new long[history.length];
+    /** The number of moves on the history stack. */
+    private int historySize = 0;
+
+    /**
+     * Constructs a new board in the standard starting position.
+     */
+    public ChessBitboard() { this(START); }
+
+    /**
+     * Constructs a new board from a position in Forsyth-Edwards Notation.
+     * The move counters may be omitted.
+     * @param fen the position to set up.
+     */
+    public ChessBitboard(String fen) {
+
+        String[] fields = fen.trim().split("\\s+");
+        if(fields.length < 4) throw new IllegalArgumentException("Invalid FEN: " + fen);
+
+        //The ranks are given from the top (black's side) down.
+        int x = 0, y = 7;
+        for(char c : fields[0].toCharArray()) {
+            if(c == '/') {
+                x = 0;
+                y--;
+            } else if(Character.isDigit(c)) {
+                x += c - '0';
+            } else {
+                int type = "prnbqk".indexOf(Character.toLowerCase(c)) + 1;
+                if(type == 0 || x > 7 || y < 0) throw new IllegalArgumentException("Invalid FEN: " + fen);
+                put(x++ * 8 + y, type | (Character.isUpperCase(c) ? 0 : 8));
+            }
+        }
+
+        if(fields[1].equals("b")) {
+            currentPlayerId = 2;
+            hash ^= SIDE_KEY;
+        }
+        for(char c : fields[2].toCharArray()) {
+            castling |= c == 'K' ? WHITE_KINGSIDE : c == 'Q' ? WHITE_QUEENSIDE
+                    : c == 'k' ? BLACK_KINGSIDE : c == 'q' ? BLACK_QUEENSIDE : 0;
+        }
+        hash ^= CASTLING_KEYS[castling];
+
+        //En passant is only recorded if a capture is possible, so that equal positions hash equally.
+        if(!fields[3].equals("-")) {
+            int sq = (fields[3].charAt(0) - 'a') * 8 + fields[3].charAt(1) - '1';
+            setEnPassant(sq, 3 - currentPlayerId);
+        }
+        if(fields.length > 4) halfmoveClock = Integer.parseInt(fields[4]);
+        if(fields.length > 5) fullmoveNumber = Integer.parseInt(fields[5]);
+    }
+
+    /**
+     * Constructs a new board as a copy of the given board.
+     * @param board the board to copy.
+     */
+    private ChessBitboard(ChessBitboard board) {
+        System.arraycopy(board.pieces, 0, pieces, 0, pieces.length);
+        System.arraycopy(board.colours, 0, colours, 0, colours.length);
+        System.arraycopy(board.mailbox, 0, mailbox, 0, mailbox.length);
+        currentPlayerId = board.currentPlayerId;
+        castling = board.castling;
+        enPassant = board.enPassant;
+        halfmoveClock = board.halfmoveClock;
+        fullmoveNumber = board.fullmoveNumber;
+        hash = board.hash;
+        history = board.history.clone();
+        hashes = board.hashes.clone();
+        historySize = board.historySize;
+    }
+
+    /**
+     * @return an independent copy of this board.
+     */
+    public ChessBitboard copy() { return new ChessBitboard(this); }
+
+    /**
+     * Applies the given move, which must be legal, and passes the turn to the next player.
+     * @param move the encoded move to apply.
+     */
+    public void apply(int move) {
+
+        int from = move & 0x3F, to = move >>> 6 & 0x3F, promotion = move >>> 12;
+        int piece = mailbox[from], type = piece & 7, us = currentPlayerId;
+
+        //A pawn moving onto the en passant tile captures the pawn in front of it.
+        int captureSquare = type == PAWN && to == enPassant ? (us == 1 ? to - 1 : to + 1) : to;
+        int captured = mailbox[captureSquare];
+
+        //Save the information which can't be recovered from the move.
+        if(historySize == history.length) {
+            history = Arrays.copyOf(history, 2 * historySize);
+            hashes = Arrays.copyOf(hashes, 2 * historySize);
+        }
+        history[historySize] = captured | captureSquare << 4 | castling << 10
+                | (enPassant + 1) << 14 | (long) halfmoveClock << 21;
+        hashes[historySize++] = hash;
+
+        if(captured != 0) remove(captureSquare);
+        remove(from);
+        put(to, promotion != 0 ? promotion | (piece & 8) : piece);
+
+        //Move the rook over which a castling king jumps.
+        int dx = (to >>> 3) - (from >>> 3);
+        if(type == KING && (dx == 2 || dx == -2)) {
+            int rook = (dx < 0 ? 0 : 7) * 8 + (from & 7);
+            put(from + 4 * dx, mailbox[rook]);
+            remove(rook);
+        }
+
+        hash ^= CASTLING_KEYS[castling];
+        castling &= CASTLING_MASKS[from] & CASTLING_MASKS[to];
+        hash ^= CASTLING_KEYS[castling];
+
+        if(enPassant != -1) hash ^= EN_PASSANT_KEYS[enPassant >>> 3];
+        enPassant = -1;
+        if(type == PAWN && (to - from == 2 || from - to == 2)) setEnPassant((from + to) / 2, us);
+
+        halfmoveClock = type == PAWN || captured != 0 ? 0 : halfmoveClock + 1;
+        if(us == 2) fullmoveNumber++;
+        currentPlayerId = 3 - us;
+        hash ^= SIDE_KEY;
+    }
+
+    /**
+     * Undoes the given move, which must have been the last move applied.
+     * @param move the encoded move to undo.
+     */
+    public void undo(int move) {
+
+        int from = move & 0x3F, to = move >>> 6 & 0x3F, promotion = move >>> 12;
+        long record = history[--historySize];
+        int piece = mailbox[to], us = 3 - currentPlayerId;
+
+        //Move the rook back to its corner.
+        int dx = (to >>> 3) - (from >>> 3);
+        if((piece & 7) == KING && (dx == 2 || dx == -2)) {
+            int rook = (dx < 0 ? 0 : 7) * 8 + (from & 7);
+            put(rook, mailbox[from + 4 * dx]);
+            remove(from + 4 * dx);
+        }
+
+        remove(to);
+        put(from, promotion != 0 ? PAWN | (piece & 8) : piece);
+        int captured = (int) (record & 0xF);
+        if(captured != 0) put((int) (record >>> 4 & 0x3F), captured);
+
+        castling = (int) (record >>> 10 & 0xF);
+        enPassant = (int) (record >>> 14 & 0x7F) - 1;
+        halfmoveClock = (int) (record >>> 21);
+        if(us == 2) fullmoveNumber--;
+        currentPlayerId = us;
+        hash = hashes[historySize];
+    }
+
+    /**
+     * Fills the given array with every legal move in the current position.
+     * @param moves the array in which to store the moves, of length at least 'MAX_MOVES'.
+     * @return the number of legal moves.
+     */
+    public int getLegalMoves(int[] moves) {
+
+        int us = currentPlayerId, them = 3 - us, n = 0;
+        long own = colours[us], opp = colours[them], occupied = own | opp;
+        int king = Long.numberOfTrailingZeros(pieces[KING] & own);
+
+        //The king may move anywhere not attacked once it has moved out of the way.
+        long occupiedWithoutKing = occupied & ~(1L << king);
+        for(long b = KING_ATTACKS[king] & ~own; b != 0; b &= b - 1) {
+            int to = Long.numberOfTrailingZeros(b);
+            if(!isAttacked(to, them, occupiedWithoutKing)) moves[n++] = king | to << 6;
+        }
+
+        long checkers = getAttackers(king, them, occupied);
+        if(Long.bitCount(checkers) > 1) return n;
+
+        //In check, a piece must capture the checking piece or block its line.
+        long targets = checkers == 0 ? ~own
+                : checkers | BETWEEN[king][Long.numberOfTrailingZeros(checkers)];
+        long pinned = getPinned(king, own, opp, occupied);
+
+        for(long b = pieces[KNIGHT] & own & ~pinned; b != 0; b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            n = addMoves(moves, n, from, KNIGHT_ATTACKS[from] & targets);
+        }
+        for(long b = (pieces[BISHOP] | pieces[QUEEN]) & own; b != 0; b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            long attacks = getBishopAttacks(from, occupied) & targets;
+            n = addMoves(moves, n, from, (pinned >>> from & 1) == 0 ? attacks : attacks & LINE[king][from]);
+        }
+        for(long b = (pieces[ROOK] | pieces[QUEEN]) & own; b != 0; b &= b - 1) {
+            int from = Long.numberOfTrailingZeros(b);
+            long attacks = getRookAttacks(from, occupied) & targets;
+            n = addMoves(moves, n, from, (pinned >>> from & 1) == 0 ? attacks : attacks & LINE[king][from]);
+        }
+
+        int forward = us == 1 ? 1 : -1, startRow = us == 1 ? 1 : 6;
+        for(long b = pieces[PAWN] & own; b != 0; b &= b - 1) {
+
+            int from = Long.numberOfTrailingZeros(b);
+            long allowed = (pinned >>> from & 1) == 0 ? targets : targets & LINE[king][from];
+
+            int push = from + forward;
+            if((occupied >>> push & 1) == 0) {
+                if((allowed >>> push & 1) != 0) n = addPawnMoves(moves, n, from, push);
+                int twice = push + forward;
+                if((from & 7) == startRow && (occupied >>> twice & 1) == 0
+                        && (allowed >>> twice & 1) != 0) moves[n++] = from | twice << 6;
+            }
+            for(long c = PAWN_ATTACKS[us][from] & opp & allowed; c != 0; c &= c - 1) {
+                n = addPawnMoves(moves, n, from, Long.numberOfTrailingZeros(c));
+            }
+            if(enPassant != -1 && (PAWN_ATTACKS[us][from] >>> enPassant & 1) != 0
+                    && isLegalEnPassant(from, king, checkers, targets)) {
+                moves[n++] = from | enPassant << 6;
+            }
+        }
+
+        //The king may not castle out of, through or into check.
+        if(checkers == 0) {
+            int row = us == 1 ? 0 : 7;
+            int kingside = us == 1 ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+            int queenside = us == 1 ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+            if((castling & kingside) != 0 && (occupied & (bit(5, row) | bit(6, row))) == 0
+                    && !isAttacked(5 * 8 + row, them, occupied) && !isAttacked(6 * 8 + row, them, occupied)) {
+                moves[n++] = king | (6 * 8 + row) << 6;
+            }
+            if((castling & queenside) != 0 && (occupied & (bit(1, row) | bit(2, row) | bit(3, row))) == 0
+                    && !isAttacked(3 * 8 + row, them, occupied) && !isAttacked(2 * 8 + row, them, occupied)) {
+                moves[n++] = king | (2 * 8 + row) << 6;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * @param move an encoded move.
+     * @return whether the move is legal in the current position.
+     */
+    public boolean isLegal(int move) {
+        int[] moves = new int[MAX_MOVES];
+        int numMoves = getLegalMoves(moves);
+        for(int i = 0; i < numMoves; i++) {
+            if(moves[i] == move) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Counts the leaves of the tree of legal moves to the given depth, for testing
+     * the move generator against known results. The last ply is counted without
+     * applying the moves.
+     * @param depth the number of plies to search.
+     * @return the number of positions reached.
+     */
+    public long perft(int depth) {
+        return depth <= 0 ? 1 : perft(depth, new int[depth][MAX_MOVES]);
+    }
+
+    /**
+     * @param depth the number of plies to search, at least 1.
+     * @param moves an array in which to store the moves at each depth.
+     * @return the number of positions reached.
+     */
+    private long perft(int depth, int[][] moves) {
+
+        int numMoves = getLegalMoves(moves[depth - 1]);
+        if(depth == 1) return numMoves;
+
+        long nodes = 0;
+        for(int i = 0; i < numMoves; i++) {
+            int move = moves[depth - 1][i];
+            apply(move);
+            nodes += perft(depth - 1, moves);
+            undo(move);
+        }
+        return nodes;
+    }
+
+    /**
+     * @return whether the king of the current player is attacked.
+     */
+    public boolean isInCheck() {
+        int king = Long.numberOfTrailingZeros(pieces[KING] & colours[currentPlayerId]);
+        return isAttacked(king, 3 - currentPlayerId, colours[1] | colours[2]);
+    }
+
+    /**
+     * Determines whether the game is drawn regardless of the moves available, by
+     * threefold repetition, by the fifty-move rule, or by insufficient material.
+     * Stalemate must be checked separately.
+     * @return whether the game is drawn.
+     */
+    public boolean isDraw() {
+        return halfmoveClock >= 100 || getRepetitions() >= 2 || isInsufficientMaterial();
+    }
+
+    /**
+     * Counts the earlier occurrences of the current position, with the same player
+     * to move, the same castling rights and the same en passant captures. Only positions
+     * since the last capture or pawn move may be equal, and only every other one of those.
+     * @return the number of times the current position has occurred before.
+     */
+    public int getRepetitions() {
+
+        int count = 0;
+        for(int i = historySize - 2; i >= 0 && i >= historySize - halfmoveClock; i -= 2) {
+            if(hashes[i] == hash) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return whether neither player can possibly checkmate, i.e. only kings remain,
+     * along with at most a single knight or bishop.
+     */
+    public boolean isInsufficientMaterial() {
+        return (pieces[PAWN] | pieces[ROOK] | pieces[QUEEN]) == 0
+                && Long.bitCount(pieces[KNIGHT] | pieces[BISHOP]) <= 1;
+    }
+
+    /**
+     * @param x the x position of a tile.
+     * @param y the y position of a tile.
+     * @return the encoded piece at (x, y), or 0 if empty.
+     */
+    public int get(int x, int y) { return mailbox[x * 8 + y]; }
+
+    /**
+     * Copies the encoded piece on each tile into the given array, indexed by tile.
+     * @param cells the array of length 64 in which to store the pieces.
+     */
+    public void getPieces(byte[] cells) { System.arraycopy(mailbox, 0, cells, 0, mailbox.length); }
+
+    /**
+     * @param type the type of piece.
+     * @param playerId the ID of the owner of the pieces.
+     * @return the tiles occupied by pieces of this type owned by this player.
+     */
+    public long getPieces(int type, int playerId) { return pieces[type] & colours[playerId]; }
+
+    /**
+     * @param playerId the ID of a player.
+     * @return the tiles occupied by pieces of this player.
+     */
+    public long getPieces(int playerId) { return colours[playerId]; }
+
+    /**
+     * @return the ID of the player whose turn it currently is.
+     */
+    public int getCurrentPlayerId() { return currentPlayerId; }
+
+    /**
+     * @return the castling rights which remain, as a combination of bits.
+     */
+    public int getCastling() { return castling; }
+
+    /**
+     * @return the tile behind a pawn which may be captured en passant, or -1 if none.
+     */
+    public int getEnPassant() { return enPassant; }
+
+    /**
+     * @return the number of moves since the last capture or pawn move.
+     */
+    public int getHalfmoveClock() { return halfmoveClock; }
+
+    /**
+     * @return the Zobrist hash of the current position.
+     */
+    public long hash() { return hash; }
+
+    /**
+     * @return the current position in Forsyth-Edwards Notation.
+     */
+    public String toFen() {
+
+        StringBuilder fen = new StringBuilder();
+        for(int y = 7; y >= 0; y--) {
+            int empty = 0;
+            for(int x = 0; x < 8; x++) {
+                int piece = mailbox[x * 8 + y];
+                if(piece == 0) {
+                    empty++;
+                    continue;
+                }
+                if(empty > 0) fen.append(empty);
+                empty = 0;
+                char c = "?prnbqk".charAt(piece & 7);
+                fen.append(piece < 8 ? Character.toUpperCase(c) : c);
+            }
+            if(empty > 0) fen.append(empty);
+            if(y > 0) fen.append('/');
+        }
+
+        fen.append(currentPlayerId == 1 ? " w " : " b ");
+        if((castling & WHITE_KINGSIDE) != 0) fen.append('K');
+        if((castling & WHITE_QUEENSIDE) != 0) fen.append('Q');
+        if((castling & BLACK_KINGSIDE) != 0) fen.append('k');
+        if((castling & BLACK_QUEENSIDE) != 0) fen.append('q');
+        if(castling == 0) fen.append('-');
+        fen.append(' ').append(enPassant == -1 ? "-"
+                : "" + (char) ('a' + (enPassant >>> 3)) + (char) ('1' + (enPassant & 7)));
+        return fen.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber).toString();
+    }
+
+    /**
+     * @param square a tile.
+     * @param occupied the occupied tiles.
+     * @return the tiles attacked by a rook on the given tile.
+     */
+    public static long getRookAttacks(int square, long occupied) {
+        return ROOK_TABLE[ROOK_OFFSETS[square] + (int) ((occupied & ROOK_MASKS[square])
+                * ROOK_MAGICS[square] >>> ROOK_SHIFTS[square])];
+    }
+
+    /**
+     * @param square a tile.
+     * @param occupied the occupied tiles.
+     * @return the tiles attacked by a bishop on the given tile.
+     */
+    public static long getBishopAttacks(int square, long occupied) {
+        return BISHOP_TABLE[BISHOP_OFFSETS[square] + (int) ((occupied & BISHOP_MASKS[square])
+                * BISHOP_MAGICS[square] >>> BISHOP_SHIFTS[square])];
+    }
+
+    /**
+     * @param square a tile.
+     * @param playerId the ID of the attacking player.
+     * @param occupied the occupied tiles.
+     * @return the pieces of the given player which attack the tile.
+     */
+    private long getAttackers(int square, int playerId, long occupied) {
+        return (PAWN_ATTACKS[3 - playerId][square] & pieces[PAWN]
+                | KNIGHT_ATTACKS[square] & pieces[KNIGHT]
+                | KING_ATTACKS[square] & pieces[KING]
+                | getBishopAttacks(square, occupied) & (pieces[BISHOP] | pieces[QUEEN])
+                | getRookAttacks(square, occupied) & (pieces[ROOK] | pieces[QUEEN]))
+                & colours[playerId];
+    }
+
+    /**
+     * @param square a tile.
+     * @param playerId the ID of the attacking player.
+     * @param occupied the occupied tiles.
+     * @return whether any piece of the given player attacks the tile.
+     */
+    private boolean isAttacked(int square, int playerId, long occupied) {
+        long attackers = colours[playerId];
+        return (PAWN_ATTACKS[3 - playerId][square] & pieces[PAWN] & attackers) != 0
+                || (KNIGHT_ATTACKS[square] & pieces[KNIGHT] & attackers) != 0
+                || (KING_ATTACKS[square] & pieces[KING] & attackers) != 0
+                || (getBishopAttacks(square, occupied) & (pieces[BISHOP] | pieces[QUEEN]) & attackers) != 0
+                || (getRookAttacks(square, occupied) & (pieces[ROOK] | pieces[QUEEN]) & attackers) != 0;
+    }
+
+    /**
+     * Finds the pieces which may not leave the line between their king and an
+     * opponent slider, being the only piece between them.
+     * @param king the tile of the king.
+     * @param own the pieces of the owner of the king.
+     * @param opp the pieces of the opponent.
+     * @param occupied the occupied tiles.
+     * @return the pinned pieces.
+     */
+    private long getPinned(int king, long own, long opp, long occupied) {
+
+        long pinned = 0;
+        long snipers = (getRookAttacks(king, 0) & (pieces[ROOK] | pieces[QUEEN])
+                | getBishopAttacks(king, 0) & (pieces[BISHOP] | pieces[QUEEN])) & opp;
+        for(; snipers != 0; snipers &= snipers - 1) {
+            long blockers = BETWEEN[king][Long.numberOfTrailingZeros(snipers)] & occupied;
+            if((blockers & blockers - 1) == 0 && (blockers & own) != 0) pinned |= blockers;
+        }
+        return pinned;
+    }
+
+    /**
+     * Determines whether an en passant capture would leave the king in check. The capture
+     * removes two pieces from the same row, so the usual test for pins isn't enough.
+     * @param from the tile of the capturing pawn.
+     * @param king the tile of the king.
+     * @param checkers the pieces giving check.
+     * @param targets the tiles to which a piece must move to escape check.
+     * @return whether the capture is legal.
+     */
+    private boolean isLegalEnPassant(int from, int king, long checkers, long targets) {
+
+        int us = currentPlayerId, them = 3 - us;
+        int captureSquare = us == 1 ? enPassant - 1 : enPassant + 1;
+        if(checkers != 0 && (targets >>> enPassant & 1) == 0 && (checkers >>> captureSquare & 1) == 0) {
+            return false;
+        }
+
+        long occupied = (colours[1] | colours[2]) ^ 1L << from ^ 1L << captureSquare | 1L << enPassant;
+        long opp = colours[them] & ~(1L << captureSquare);
+        return (getBishopAttacks(king, occupied) & (pieces[BISHOP] | pieces[QUEEN]) & opp) == 0
+                && (getRookAttacks(king, occupied) & (pieces[ROOK] | pieces[QUEEN]) & opp) == 0;
+    }
+
+    /**
+     * Adds a move from the given tile to each target tile.
+     * @return the new number of moves.
+     */
+    private static int addMoves(int[] moves, int n, int from, long targets) {
+        for(; targets != 0; targets &= targets - 1) {
+            moves[n++] = from | Long.numberOfTrailingZeros(targets) << 6;
+        }
+        return n;
+    }
+
+    /**
+     * Adds a pawn move, with each possible promotion if it reaches the last row.
+     * @return the new number of moves.
+     */
+    private static int addPawnMoves(int[] moves, int n, int from, int to) {
+
+        int move = from | to << 6;
+        if((to & 7) != 0 && (to & 7) != 7) {
+            moves[n++] = move;
+        } else {
+            moves[n++] = move | QUEEN << 12;
+            moves[n++] = move | KNIGHT << 12;
+            moves[n++] = move | ROOK << 12;
+            moves[n++] = move | BISHOP << 12;
+        }
+        return n;
+    }
+
+    /**
+     * Records the tile behind a pawn which has just moved two spaces,
+     * if an opponent pawn is in position to capture it.
+     * @param square the tile over which the pawn moved.
+     * @param playerId the ID of the owner of the pawn.
+     */
+    private void setEnPassant(int square, int playerId) {
+        if((PAWN_ATTACKS[playerId][square] & pieces[PAWN] & colours[3 - playerId]) != 0) {
+            enPassant = square;
+            hash ^= EN_PASSANT_KEYS[square >>> 3];
+        }
+    }
+
+    /**
+     * Places a piece on an empty tile.
+     * @param square the tile.
+     * @param piece the encoded piece.
+     */
+    private void put(int square, int piece) {
+        long bit = 1L << square;
+        pieces[piece & 7] |= bit;
+        colours[(piece >>> 3) + 1] |= bit;
+        mailbox[square] = (byte) piece;
+        hash ^= PIECE_KEYS[piece][square];
+    }
+
+    /**
+     * Removes the piece from an occupied tile.
+     * @param square the tile.
+     */
+    private void remove(int square) {
+        int piece = mailbox[square];
+        long bit = ~(1L << square);
+        pieces[piece & 7] &= bit;
+        colours[(piece >>> 3) + 1] &= bit;
+        mailbox[square] = 0;
+        hash ^= PIECE_KEYS[piece][square];
+    }
+
+    /**
+     * @param x the x position of a tile.
+     * @param y the y position of a tile.
+     * @return the bit of the tile at (x, y), or 0 if off the board.
+     */
+    private static long bit(int x, int y) {
+        return x >= 0 && x < 8 && y >= 0 && y < 8 ? 1L << (x * 8 + y) : 0;
+    }
+
+    /**
+     * Finds the tiles attacked by a slider by walking along each of its lines.
+     * @param square the tile of the slider.
+     * @param occupied the occupied tiles, which block the slider.
+     * @param dirs the directions in which the slider moves.
+     * @return the attacked tiles, including the blockers.
+     */
+    private static long getAttacks(int square, long occupied, int[][] dirs) {
+
+        long attacks = 0;
+        for(int[] dir : dirs) {
+            for(int x = (square >>> 3) + dir[0], y = (square & 7) + dir[1];
+                    x >= 0 && x < 8 && y >= 0 && y < 8; x += dir[0], y += dir[1]) {
+                attacks |= 1L << (x * 8 + y);
+                if((occupied >>> (x * 8 + y) & 1) != 0) break;
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     * The tiles on the edge of the board never affect the attacks, as there is nothing beyond.
+     * @param square the tile of the slider.
+     * @param dirs the directions in which the slider moves.
+     * @return the tiles which may block the slider.
+     */
+    private static long getMask(int square, int[][] dirs) {
+
+        long mask = 0;
+        for(int[] dir : dirs) {
+            for(int x = (square >>> 3) + dir[0], y = (square & 7) + dir[1];
+                    x + dir[0] >= 0 && x + dir[0] < 8 && y + dir[1] >= 0 && y + dir[1] < 8;
+                    x += dir[0], y += dir[1]) {
+                mask |= 1L << (x * 8 + y);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Finds a magic number for each tile by trying random sparse numbers until one
+     * maps every arrangement of blockers to an entry with the correct attacks,
+     * and fills the table of attacks.
+     * @param dirs the directions in which the slider moves.
+     * @param masks the tiles which may block the slider on each tile.
+     * @param magics the array in which to store the magic number of each tile.
+     * @param shifts the array in which to store the shift of each tile.
+     * @param offsets the array in which to store the index of each tile within the table.
+     * @param random the source of candidate magic numbers.
+     * @return the table of attacks.
+     */
+    private static long[] findMagics(int[][] dirs, long[] masks, long[] magics,
+            int[] shifts, int[] offsets, Random random) {
+
+        int size = 0;
+        for(int sq = 0; sq < 64; sq++) {
+            offsets[sq] = size;
+            size += 1 << Long.bitCount(masks[sq]);
+        }
+        long[] table = new long[size];
+
+        for(int sq = 0; sq < 64; sq++) {
+
+            int bits = Long.bitCount(masks[sq]), numSubsets = 1 << bits;
+            shifts[sq] = Long.SIZE - bits;
+
+            //Enumerate every subset of the mask.
+            long[] blockers = new long[numSubsets], attacks = new long[numSubsets];
+            long subset = 0;
+            for(int i = 0; i < numSubsets; i++) {
+                blockers[i] = subset;
+                attacks[i] = getAttacks(sq, subset, dirs);
+                subset = (subset - masks[sq]) & masks[sq];
+            }
+
+            //Entries are marked with the attempt which filled them, so need not be cleared.
+            int[] filled = new int[numSubsets];
+            long[] entries = new long[numSubsets];
+            for(int attempt = 1;; attempt++) {
+
+                long magic = random.nextLong() & random.nextLong() & random.nextLong();
+                if(Long.bitCount((masks[sq] * magic) >>> 56) < 6) continue;
+
+                boolean found = true;
+                for(int i = 0; i < numSubsets && found; i++) {
+                    int index = (int) (blockers[i] * magic >>> shifts[sq]);
+                    if(filled[index] != attempt) {
+                        filled[index] = attempt;
+                        entries[index] = attacks[i];
+                    } else found = entries[index] == attacks[i];
+                }
+
+                if(found) {
+                    magics[sq] = magic;
+                    System.arraycopy(entries, 0, table, offsets[sq], numSubsets);
+                    break;
+                }
+            }
+        }
+        return table;
+    }
+}
@@ -0,0 +1,70 @@
+package strategybots.games.bitboard;
+
+/**
+ * Verifies the move generation of 'ChessBitboard' by perft.<br>
+ * <br>
+ * Counts the positions reached from each of the standard test positions
+ * after every sequence of legal moves of a given length, and compares the counts
+ * with the known results. These positions cover castling, en passant, promotion,
+ * pins and checks. Prints whether each count is correct and the number of nodes
+ * per second.<br>
+ * <br>
+ * Usage: ChessPerft [extra depth]
+ *
+ * @author Alec Dorrington
+ */
+public class ChessPerft {
+
+    /** The test positions, in Forsyth-Edwards Notation. */
+    private static final String[] POSITIONS = {
+        ChessBitboard.START,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - - 0 10"
+    };
+
+    /** The known number of positions reached from each test position, at each depth from 1. */
+    private static final long[][] COUNTS = {
+        {20, 400, 8902, 197281, 4865609, 119060324},
+        {48, 2039, 97862, 4085603, 193690690},
+        {14, 191, 2812, 43238, 674624, 11030083, 178633661},
+        {6, 264, 9467, 422333, 15833292, 706045033},
+        {44, 1486, 62379, 2103487, 89941194},
+        {46, 2079, 89890, 3894594, 164075551}
+    };
+
+    /** The depth to which each position is counted by default. */
+    private static final int[] DEPTHS = {5, 4, 6, 5, 4, 4};
+
+    public static void main(String[] args) {
+
+        int extraDepth = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        boolean passed = true;
+        long totalNodes = 0, totalTime = 0;
+
+        System.out.println("Position  Depth        Nodes     Expected  Correct    Nodes/s");
+        for(int i = 0; i < POSITIONS.length; i++) {
+
+            int depth = Math.min(DEPTHS[i] + extraDepth, COUNTS[i].length);
+            ChessBitboard board = new ChessBitboard(POSITIONS[i]);
+
+            long start = System.nanoTime();
+            long nodes = board.perft(depth);
+            long time = System.nanoTime() - start;
+
+            boolean correct = nodes == COUNTS[i][depth - 1];
+            passed &= correct;
+            totalNodes += nodes;
+            totalTime += time;
+
+            System.out.println(String.format("%8d  %5d  %11d  %11d  %7s  %9d", i + 1, depth,
+                    nodes, COUNTS[i][depth - 1], correct, 1000000000L * nodes / Math.max(time, 1)));
+        }
+
+        System.out.println("=======================");
+        System.out.println("All Correct: " + passed);
+        System.out.println("Nodes/s:     " + 1000000000L * totalNodes / Math.max(totalTime, 1));
+    }
+}
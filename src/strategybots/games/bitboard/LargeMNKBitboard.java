@@ -0,0 +1,156 @@
+package strategybots.games.bitboard;
+
+/**
+ * Implementation of the rules of m,n,k-games using multiple 64-bit words per player.<br>
+ * <br>
+ * Supports boards of any size, using the same layout as 'MNKBitboard', but with
+ * the bits spread across an array of words. Shifts are performed across word
+ * boundaries, such that win detection still takes O(log k) shifts in each direction.
+ *
+ * @author Alec Dorrington
+ */
+public final class LargeMNKBitboard extends MNKBoard {
+    
+    /** The stones owned by each player, indexed by player ID. */
+    private final long[][] stones;
+    
+    /** Mask of every tile on the board, excluding padding bits. */
+    private final long[] boardMask;
+    
+    /** Buffer used when searching for streaks. */
+    private final long[] buffer;
+    
+    /** The shift between adjacent tiles in each of the four directions. */
+    private final int[] shifts;
+    
+    /**
+     * Constructs a new empty board.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param target the number of stones in a row required to win.
+     * @param gravity whether stones fall to the bottom of their column.
+     */
+    public LargeMNKBitboard(int width, int height, int target, boolean gravity) {
+        
+        super(width, height, target, gravity);
+        
+        int numWords = (width * stride + Long.SIZE - 1) / Long.SIZE;
+        stones = new long[3][numWords];
+        boardMask = new long[numWords];
+        buffer = new long[numWords];
+        
+        for(int x = 0; x < width; x++) {
+            for(int y = 0; y < height; y++) {
+                boardMask[index(x, y) / Long.SIZE] |= 1L << index(x, y);
+            }
+        }
+        
+        //Vertical, horizontal, and the two diagonals.
+        shifts = new int[] {1, stride, stride + 1, stride - 1};
+    }
+    
+    /**
+     * Constructs a new board as a copy of the given board.
+     * @param board the board to copy.
+     */
+    private LargeMNKBitboard(LargeMNKBitboard board) {
+        super(board);
+        stones = new long[3][];
+        for(int i = 0; i < stones.length; i++) stones[i] = board.stones[i].clone();
+        boardMask = board.boardMask;
+        buffer = new long[board.buffer.length];
+        shifts = board.shifts;
+    }
+    
+    @Override
+    public LargeMNKBitboard copy() { return new LargeMNKBitboard(this); }
+    
+    @Override
+    public boolean isWin(int playerId) {
+        
+        for(int shift : shifts) {
+            
+            System.arraycopy(stones[playerId], 0, buffer, 0, buffer.length);
+            
+            //Double the length of the streaks found with each step.
+            int length = 1;
+            while(2 * length <= target) {
+                andShifted(buffer, shift * length);
+                length *= 2;
+            }
+            
+            //Extend the streaks to the exact target length.
+            if(length < target) andShifted(buffer, shift * (target - length));
+            
+            for(long word : buffer) {
+                if(word != 0) return true;
+            }
+        }
+        return false;
+    }
+    
+    @Override
+    public int getLegalMoves(int[] moves) {
+        
+        int numMoves = 0;
+        
+        if(gravity) {
+            for(int x = 0; x < width; x++) {
+                if(heights[x] < height) moves[numMoves++] = dropIndex(x);
+            }
+            
+        } else {
+            for(int i = 0; i < boardMask.length; i++) {
+                
+                long legal = boardMask[i] & ~(stones[1][i] | stones[2][i]);
+                for(; legal != 0; legal &= legal - 1) {
+                    moves[numMoves++] = i * Long.SIZE + Long.numberOfTrailingZeros(legal);
+                }
+            }
+        }
+        return numMoves;
+    }
+    
+    @Override
+    public long hash() {
+        
+        long hash = currentPlayerId;
+        for(int i = 0; i < boardMask.length; i++) {
+            hash = mix(hash ^ stones[1][i]) ^ mix(~stones[2][i] + i);
+        }
+        return hash;
+    }
+    
+    @Override
+    protected void set(int playerId, int move) {
+        stones[playerId][move / Long.SIZE] |= 1L << move;
+    }
+    
+    @Override
+    protected void clear(int playerId, int move) {
+        stones[playerId][move / Long.SIZE] &= ~(1L << move);
+    }
+    
+    @Override
+    protected boolean test(int playerId, int move) {
+        return (stones[playerId][move / Long.SIZE] & 1L << move) != 0;
+    }
+    
+    /**
+     * Performs 'bits &= bits >>> shift' in place, treating the array as one large integer.
+     * @param bits the words to modify, least significant first.
+     * @param shift the number of bits by which to shift.
+     */
+    private static void andShifted(long[] bits, int shift) {
+        
+        int words = shift / Long.SIZE, offset = shift % Long.SIZE;
+        
+        //Higher words are read before they are modified, so this may be done in place.
+        for(int i = 0; i < bits.length; i++) {
+            
+            long lo = i + words < bits.length ? bits[i + words] : 0;
+            long hi = i + words + 1 < bits.length ? bits[i + words + 1] : 0;
+            bits[i] &= offset == 0 ? lo : (lo >>> offset) | (hi << (Long.SIZE - offset));
+        }
+    }
+}
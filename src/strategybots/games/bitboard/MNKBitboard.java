@@ -0,0 +1,183 @@
+package strategybots.games.bitboard;
+
+/**
+ * Implementation of the rules of m,n,k-games using a single 64-bit word per player.<br>
+ * <br>
+ * Supports any board for which 'width * (height + 1) <= 64', which includes
+ * the standard 7x6 Connect Four and 7x7 Tic-Tac-Toe boards. Win detection
+ * takes O(log k) shifts in each of the four directions, regardless of board size.
+ *
+ * @author Alec Dorrington
+ */
+public final class MNKBitboard extends MNKBoard {
+    
+    /** The stones owned by each player, indexed by player ID. */
+    private final long[] stones = new long[3];
+    
+    /** Mask of every tile on the board, excluding padding bits. */
+    private final long boardMask;
+    
+    /** Mask of the bottom tile in each column. */
+    private final long bottomMask;
+    
+    /** The shift between adjacent tiles in each of the four directions. */
+    private final int[] shifts;
+    
+    /**
+     * Constructs a new empty board.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param target the number of stones in a row required to win.
+     * @param gravity whether stones fall to the bottom of their column.
+     */
+    public MNKBitboard(int width, int height, int target, boolean gravity) {
+        
+        super(width, height, target, gravity);
+        
+        if(width * stride > Long.SIZE) {
+            throw new IllegalArgumentException("Board too large for a single word: "
+                    + width + "x" + height);
+        }
+        
+        long column = (1L << height) - 1, board = 0, bottom = 0;
+        for(int x = 0; x < width; x++) {
+            board |= column << (x * stride);
+            bottom |= 1L << (x * stride);
+        }
+        boardMask = board;
+        bottomMask = bottom;
+        
+        //Vertical, horizontal, and the two diagonals.
+        shifts = new int[] {1, stride, stride + 1, stride - 1};
+    }
+    
+    /**
+     * Constructs a new board as a copy of the given board.
+     * @param board the board to copy.
+     */
+    private MNKBitboard(MNKBitboard board) {
+        super(board);
+        System.arraycopy(board.stones, 0, stones, 0, stones.length);
+        boardMask = board.boardMask;
+        bottomMask = board.bottomMask;
+        shifts = board.shifts;
+    }
+    
+    @Override
+    public void apply(int move) {
+        stones[currentPlayerId] |= 1L << move;
+        heights[move / stride]++;
+        numStones++;
+        currentPlayerId = 3 - currentPlayerId;
+    }
+    
+    @Override
+    public void undo(int move) {
+        currentPlayerId = 3 - currentPlayerId;
+        stones[currentPlayerId] &= ~(1L << move);
+        heights[move / stride]--;
+        numStones--;
+    }
+    
+    @Override
+    public MNKBitboard copy() { return new MNKBitboard(this); }
+    
+    @Override
+    public boolean isWin(int playerId) { return isWin(stones[playerId]); }
+    
+    /**
+     * Determines whether the given set of stones contains a streak of at least the target length.
+     * @param stones the bitboard of stones to check.
+     * @return whether a winning streak exists.
+     */
+    public boolean isWin(long stones) {
+        for(int shift : shifts) {
+            if(getStreaks(stones, shift) != 0) return true;
+        }
+        return false;
+    }
+    
+    /**
+     * Finds the starting tile of every streak of at least the target length in one direction.
+     * @param stones the bitboard of stones to check.
+     * @param shift the shift between adjacent tiles in the direction of the streak.
+     * @return a bitboard with a bit set at the lowest tile of each streak.
+     */
+    public long getStreaks(long stones, int shift) {
+        
+        //Double the length of the streaks found with each step.
+        int length = 1;
+        while(2 * length <= target) {
+            if(shift * length >= Long.SIZE) return 0;
+            stones &= stones >>> (shift * length);
+            length *= 2;
+        }
+        
+        //Extend the streaks to the exact target length.
+        if(length < target) {
+            if(shift * (target - length) >= Long.SIZE) return 0;
+            stones &= stones >>> (shift * (target - length));
+        }
+        return stones;
+    }
+    
+    @Override
+    public int getLegalMoves(int[] moves) {
+        
+        int numMoves = 0;
+        for(long legal = getLegalMask(); legal != 0; legal &= legal - 1) {
+            moves[numMoves++] = Long.numberOfTrailingZeros(legal);
+        }
+        return numMoves;
+    }
+    
+    /**
+     * @return a bitboard of every tile on which the current player may place a stone.
+     */
+    public long getLegalMask() {
+        long occupied = stones[1] | stones[2];
+        return gravity ? (occupied + bottomMask) & boardMask : ~occupied & boardMask;
+    }
+    
+    /**
+     * @param playerId the ID of the player whose stones to get.
+     * @return a bitboard of the stones owned by this player.
+     */
+    public long getStones(int playerId) { return stones[playerId]; }
+    
+    /**
+     * @return a bitboard of every occupied tile.
+     */
+    public long getOccupied() { return stones[1] | stones[2]; }
+    
+    /**
+     * @return mask of every tile on the board, excluding padding bits.
+     */
+    public long getBoardMask() { return boardMask; }
+    
+    /**
+     * @return mask of the bottom tile in each column.
+     */
+    public long getBottomMask() { return bottomMask; }
+    
+    @Override
+    public boolean isLegal(int move) {
+        return move >= 0 && move < Long.SIZE && (getLegalMask() & 1L << move) != 0;
+    }
+    
+    @Override
+    public long hash() {
+        return mix(stones[1]) ^ mix(~stones[2]) ^ currentPlayerId;
+    }
+    
+    @Override
+    protected void set(int playerId, int move) { stones[playerId] |= 1L << move; }
+    
+    @Override
+    protected void clear(int playerId, int move) { stones[playerId] &= ~(1L << move); }
+    
+    @Override
+    protected boolean test(int playerId, int move) {
+        return (stones[playerId] & 1L << move) != 0;
+    }
+}
@@ -0,0 +1,275 @@
+package strategybots.games.bitboard;
+
+import strategybots.games.ConnectFour.ConnectFourState;
+import strategybots.games.TicTacToe.TicTacToeState;
+
+/**
+ * Abstract supertype for bitboard implementations of the rules of
+ * m,n,k-games (Tic-Tac-Toe) and their gravity variants (Connect Four).<br>
+ * <br>
+ * The stones of each player are stored in column-major order, with one empty
+ * padding bit at the top of each column, such that the stone at (x, y) is stored
+ * at bit 'x * (height + 1) + y'. The padding bits prevent streaks from wrapping
+ * between columns, which allows streaks in every direction to be found by shifting.<br>
+ * <br>
+ * Moves are encoded as the bit index of the tile at which to place a stone,
+ * for both variants. Use 'create()' to choose the fastest implementation
+ * for the given dimensions.
+ *
+ * @author Alec Dorrington
+ */
+public abstract class MNKBoard {
+    
+    /** The dimensions of the board, and the number of stones in a row required to win. */
+    protected final int width, height, target;
+    
+    /** The number of bits used for each column, including the padding bit. */
+    protected final int stride;
+    
+    /** Whether stones fall to the bottom of their column (as in Connect Four). */
+    protected final boolean gravity;
+    
+    /** The number of stones in each column. */
+    protected final int[] heights;
+    
+    /** The ID of the player whose turn it currently is. */
+    protected int currentPlayerId = 1;
+    
+    /** The current number of stones on the board. */
+    protected int numStones = 0;
+    
+    /**
+     * Constructs a new empty board.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param target the number of stones in a row required to win.
+     * @param gravity whether stones fall to the bottom of their column.
+     */
+    protected MNKBoard(int width, int height, int target, boolean gravity) {
+        this.width = width;
+        this.height = height;
+        this.target = target;
+        this.gravity = gravity;
+        stride = height + 1;
+        heights = new int[width];
+    }
+    
+    /**
+     * Constructs a new board as a copy of the given board.
+     * @param board the board to copy.
+     */
+    protected MNKBoard(MNKBoard board) {
+        width = board.width;
+        height = board.height;
+        target = board.target;
+        gravity = board.gravity;
+        stride = board.stride;
+        heights = board.heights.clone();
+        currentPlayerId = board.currentPlayerId;
+        numStones = board.numStones;
+    }
+    
+    /**
+     * Constructs a new empty board, using a single 64-bit word if possible.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     * @param target the number of stones in a row required to win.
+     * @param gravity whether stones fall to the bottom of their column.
+     * @return the new board.
+     */
+    public static MNKBoard create(int width, int height, int target, boolean gravity) {
+        
+        return width * (height + 1) <= Long.SIZE ?
+                new MNKBitboard(width, height, target, gravity) :
+                new LargeMNKBitboard(width, height, target, gravity);
+    }
+    
+    /**
+     * Constructs a board from a snapshot of a Tic-Tac-Toe or Connect Four game.
+     * @param state the snapshot to copy.
+     * @return the new board, with gravity if the snapshot is from Connect Four.
+     */
+    public static MNKBoard create(TicTacToeState state) {
+        
+        MNKBoard board = create(state.getWidth(), state.getHeight(),
+                state.getTarget(), state instanceof ConnectFourState);
+        
+        for(int x = 0; x < board.width; x++) {
+            for(int y = 0; y < board.height; y++) {
+                
+                if(state.get(x, y) != 0) {
+                    board.set(state.get(x, y), board.index(x, y));
+                    board.heights[x] = Math.max(board.heights[x], y + 1);
+                    board.numStones++;
+                }
+            }
+        }
+        board.currentPlayerId = state.getCurrentPlayerId();
+        return board;
+    }
+    
+    /**
+     * Places a stone for the current player, and passes the turn to the next player.
+     * @param move the bit index of the tile at which to place the stone.
+     */
+    public void apply(int move) {
+        set(currentPlayerId, move);
+        heights[move / stride]++;
+        numStones++;
+        currentPlayerId = 3 - currentPlayerId;
+    }
+    
+    /**
+     * Removes the given stone, which must have been the last stone placed.
+     * @param move the bit index of the tile at which the stone was placed.
+     */
+    public void undo(int move) {
+        currentPlayerId = 3 - currentPlayerId;
+        clear(currentPlayerId, move);
+        heights[move / stride]--;
+        numStones--;
+    }
+    
+    /**
+     * @return an independent copy of this board.
+     */
+    public abstract MNKBoard copy();
+    
+    /**
+     * Determines whether the given player has a streak of at least the target length.
+     * @param playerId the ID of the player to check for a win.
+     * @return whether this player has won.
+     */
+    public abstract boolean isWin(int playerId);
+    
+    /**
+     * Fills the given array with every legal move, in order of increasing index.
+     * @param moves the array in which to store the moves, of length at least 'width * height'.
+     * @return the number of legal moves.
+     */
+    public abstract int getLegalMoves(int[] moves);
+    
+    /**
+     * @return a 64-bit hash of the stones on the board and the current player.
+     */
+    public abstract long hash();
+    
+    /**
+     * @param move the bit index of a tile.
+     * @return whether the current player may place a stone on this tile.
+     */
+    public boolean isLegal(int move) {
+        
+        int x = move / stride, y = move % stride;
+        if(x < 0 || x >= width || y >= height) return false;
+        return gravity ? y == heights[x] : get(x, y) == 0;
+    }
+    
+    /**
+     * Returns the owner of the stone at the given position.
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return the ID of the owner of the stone at (x, y), or 0 if empty.
+     */
+    public int get(int x, int y) {
+        return test(1, index(x, y)) ? 1 : test(2, index(x, y)) ? 2 : 0;
+    }
+    
+    /**
+     * @param x the x position of a tile.
+     * @param y the y position of a tile.
+     * @return the bit index of the tile at (x, y).
+     */
+    public int index(int x, int y) { return x * stride + y; }
+    
+    /**
+     * @param move the bit index of a tile.
+     * @return the x position of the tile.
+     */
+    public int getX(int move) { return move / stride; }
+    
+    /**
+     * @param move the bit index of a tile.
+     * @return the y position of the tile.
+     */
+    public int getY(int move) { return move % stride; }
+    
+    /**
+     * @param x the x position of a column.
+     * @return the bit index of the tile at which a stone dropped in this column would land.
+     */
+    public int dropIndex(int x) { return index(x, heights[x]); }
+    
+    /**
+     * @param x the x position of a column.
+     * @return the number of stones in this column.
+     */
+    public int getStackHeight(int x) { return heights[x]; }
+    
+    /**
+     * @return whether every tile on the board is occupied.
+     */
+    public boolean isFull() { return numStones == width * height; }
+    
+    /**
+     * @return the number of stones on the board.
+     */
+    public int getNumStones() { return numStones; }
+    
+    /**
+     * @return the ID of the player whose turn it currently is.
+     */
+    public int getCurrentPlayerId() { return currentPlayerId; }
+    
+    /**
+     * @return the width of the board.
+     */
+    public int getWidth() { return width; }
+    
+    /**
+     * @return the height of the board.
+     */
+    public int getHeight() { return height; }
+    
+    /**
+     * @return the number of stones in a row required to win.
+     */
+    public int getTarget() { return target; }
+    
+    /**
+     * @return whether stones fall to the bottom of their column.
+     */
+    public boolean hasGravity() { return gravity; }
+    
+    /**
+     * Places a stone without updating the current player or column heights.
+     * @param playerId the ID of the owner of the stone.
+     * @param move the bit index of the tile.
+     */
+    protected abstract void set(int playerId, int move);
+    
+    /**
+     * Removes a stone without updating the current player or column heights.
+     * @param playerId the ID of the owner of the stone.
+     * @param move the bit index of the tile.
+     */
+    protected abstract void clear(int playerId, int move);
+    
+    /**
+     * @param playerId the ID of the player to check.
+     * @param move the bit index of the tile.
+     * @return whether this player has a stone on the tile.
+     */
+    protected abstract boolean test(int playerId, int move);
+    
+    /**
+     * Mixes the bits of a 64-bit value, for use in hashing.
+     * @param z the value to mix.
+     * @return the mixed value.
+     */
+    protected static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,536 @@
+package strategybots.games.bitboard;
+
+import java.util.Arrays;
+
+import strategybots.games.Reversi.ReversiState;
+
+/**
+ * Implementation of the rules of Reversi using a single 64-bit word per player.<br>
+ * <br>
+ * Supports any board with at most 64 tiles, including the standard 8x8 board.
+ * The disc at (x, y) is stored at bit 'x * height + y', which is the same as the
+ * tile index used by 'ReversiState', so moves may be passed freely between the two.<br>
+ * <br>
+ * Legal moves and flipped discs are found for all tiles at once using Kogge-Stone
+ * fills: in each of the eight directions, the discs of the player are extended
+ * through adjacent opponent discs by shifting in steps of 1, 2, 4, ... tiles, with
+ * a mask for each direction which prevents discs wrapping between columns. A move
+ * is legal where such a fill reaches an empty tile. The pure functions taking a pair
+ * of words may be used directly, e.g. by a search which keeps its own boards.<br>
+ * <br>
+ * Moves are encoded as the bit index of the tile at which to place a disc,
+ * or 'PASS' if the current player has no legal moves.
+ *
+ * @author Alec Dorrington
+ */
+public final class ReversiBitboard {
+
+    /** Move used to skip the turn of a player with no legal moves. */
+    public static final int PASS = ReversiState.PASS;
+
+    /** Masks of every tile of the standard 8x8 board except the bottom or top row. */
+    private static final long NOT_BOTTOM = 0xFEFEFEFEFEFEFEFEL, NOT_TOP = 0x7F7F7F7F7F7F7F7FL;
+
+    /** The x and y components of each of the eight directions. */
+    private static final int[] X_DIRS = {1, 1, 0, -1, -1, -1, 0, 1};
+    private static final int[] Y_DIRS = {0, 1, 1, 1, 0, -1, -1, -1};
+
+    /** The dimensions of the board. */
+    private final int width, height;
+
+    /** Mask of every tile on the board. */
+    private final long boardMask;
+
+    /** The signed shift which moves a disc one tile in each direction. */
+    private final int[] shifts;
+
+    /** For each direction, mask of the tiles which can be reached by a single step. */
+    private final long[] masks;
+
+    /** For each direction, the number of doubling steps required for a fill to cross the board. */
+    private final int[] steps;
+
+    /** Whether this is the standard 8x8 board, for which a faster move generator is used. */
+    private final boolean standard;
+
+    /** The discs owned by each player, indexed by player ID. */
+    private final long[] stones = new long[3];
+
+    /** The ID of the player whose turn it currently is. */
+    private int currentPlayerId = 1;
+
+    /** Stack of the discs flipped by each move applied, used to undo moves. */
+    private long[] history = new long[64];
+    /** The number of values on the history stack. */
+    private int historySize = 0;
+
+    /**
+     * Constructs a new empty board.
+     * @param width the width of the board.
+     * @param height the height of the board.
+     */
+    public ReversiBitboard(int width, int height) {
+
+        if(!fits(width, height)) {
+            throw new IllegalArgumentException("Board too large for a single word: "
+                    + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        standard = width == 8 && height == 8;
+        boardMask = width * height == Long.SIZE ? -1L : (1L << (width * height)) - 1;
+
+        long bottom = 0, top = 0;
+        for(int x = 0; x < width; x++) {
+            bottom |= 1L << (x * height);
+            top |= 1L << (x * height + height - 1);
+        }
+
+        //A step upwards must not land on the bottom tile of the next column, and vice versa.
+        shifts = new int[8];
+        masks = new long[8];
+        for(int dir = 0; dir < 8; dir++) {
+            shifts[dir] = X_DIRS[dir] * height + Y_DIRS[dir];
+            masks[dir] = boardMask & (Y_DIRS[dir] == 1 ? ~bottom
+                    : Y_DIRS[dir] == -1 ? ~top : -1L);
+        }
+
+        //Each step doubles the length of the chains which may be crossed,
+        //but a step by a whole word or more could never reach the board.
+        steps = new int[8];
+        for(int dir = 0; dir < 8; dir++) {
+            for(int length = 1; length < Math.max(width, height)
+                    && Math.abs(shifts[dir]) * length < Long.SIZE; length *= 2) {
+                steps[dir]++;
+            }
+        }
+    }
+
+    /**
+     * Constructs a new board as a copy of the given board.
+     * @param board the board to copy.
+     */
+    private ReversiBitboard(ReversiBitboard board) {
+        width = board.width;
+        height = board.height;
+        boardMask = board.boardMask;
+        shifts = board.shifts;
+        masks = board.masks;
+        steps = board.steps;
+        standard = board.standard;
+        System.arraycopy(board.stones, 0, stones, 0, stones.length);
+        currentPlayerId = board.currentPlayerId;
+        history = board.history.clone();
+        historySize = board.historySize;
+    }
+
+    /**
+     * Constructs a board from a snapshot of a Reversi game.
+     * @param state the snapshot to copy.
+     * @return the new board.
+     */
+    public static ReversiBitboard create(ReversiState state) {
+
+        ReversiBitboard board = new ReversiBitboard(state.getWidth(), state.getHeight());
+
+        for(int x = 0; x < board.width; x++) {
+            for(int y = 0; y < board.height; y++) {
+                if(state.get(x, y) != 0) board.stones[state.get(x, y)] |= 1L << board.index(x, y);
+            }
+        }
+        board.currentPlayerId = state.getCurrentPlayerId();
+        return board;
+    }
+
+    /**
+     * @param width the width of a board.
+     * @param height the height of a board.
+     * @return whether a board of these dimensions fits in a single word.
+     */
+    public static boolean fits(int width, int height) { return width * height <= Long.SIZE; }
+
+    /**
+     * Places a disc for the current player, flipping each enclosed opponent disc,
+     * and passes the turn to the next player.
+     * @param move the bit index of the tile at which to place the disc, or 'PASS'.
+     */
+    public void apply(int move) {
+
+        long flips = 0;
+        if(move != PASS) {
+            flips = getFlips(currentPlayerId, move);
+            stones[currentPlayerId] |= flips | 1L << move;
+            stones[3 - currentPlayerId] &= ~flips;
+        }
+
+        if(historySize == history.length) history = Arrays.copyOf(history, 2 * historySize);
+        history[historySize++] = flips;
+        currentPlayerId = 3 - currentPlayerId;
+    }
+
+    /**
+     * Undoes the given move, which must have been the last move applied.
+     * @param move the bit index of the tile at which the disc was placed, or 'PASS'.
+     */
+    public void undo(int move) {
+
+        currentPlayerId = 3 - currentPlayerId;
+        long flips = history[--historySize];
+        if(move != PASS) {
+            stones[currentPlayerId] &= ~(flips | 1L << move);
+            stones[3 - currentPlayerId] |= flips;
+        }
+    }
+
+    /**
+     * Places a disc for the given player, flipping each enclosed opponent disc,
+     * regardless of whose turn it is. Nothing is changed if the move is illegal.
+     * @param playerId the ID of the player placing the disc.
+     * @param move the bit index of the tile at which to place the disc.
+     * @return the discs which were flipped, or 0 if the move is illegal.
+     */
+    public long place(int playerId, int move) {
+
+        long flips = getFlips(playerId, move);
+        if(flips != 0) {
+            stones[playerId] |= flips | 1L << move;
+            stones[3 - playerId] &= ~flips;
+        }
+        return flips;
+    }
+
+    /**
+     * @return an independent copy of this board.
+     */
+    public ReversiBitboard copy() { return new ReversiBitboard(this); }
+
+    /**
+     * Restores the starting position, with two discs for each player
+     * in the centre of the board, and the first player to move.
+     */
+    public void reset() {
+
+        Arrays.fill(stones, 0);
+        stones[1] = 1L << index(width / 2 - 1, height / 2) | 1L << index(width / 2, height / 2 - 1);
+        stones[2] = 1L << index(width / 2 - 1, height / 2 - 1) | 1L << index(width / 2, height / 2);
+        currentPlayerId = 1;
+        historySize = 0;
+    }
+
+    /**
+     * @return a bitboard of every tile on which the current player may place a disc.
+     */
+    public long getLegalMask() { return getLegalMask(currentPlayerId); }
+
+    /**
+     * @param playerId the ID of the player to move.
+     * @return a bitboard of every tile on which this player may place a disc.
+     */
+    public long getLegalMask(int playerId) {
+        return getLegalMask(stones[playerId], stones[3 - playerId]);
+    }
+
+    /**
+     * Finds every legal move for a player at once.
+     * @param own the discs of the player to move.
+     * @param opp the discs of their opponent.
+     * @return a bitboard of every tile on which the player may place a disc.
+     */
+    public long getLegalMask(long own, long opp) {
+
+        if(standard) return getStandardLegalMask(own, opp);
+
+        long empty = ~(own | opp) & boardMask, legal = 0;
+        for(int dir = 0; dir < 8; dir++) {
+
+            //The tile after each chain of opponent discs which starts next to our own.
+            long chains = fill(own, opp, dir) & opp;
+            legal |= step(chains, dir);
+        }
+        return legal & empty;
+    }
+
+    /**
+     * @param playerId the ID of the player placing the disc.
+     * @param move the bit index of the tile at which the disc is placed.
+     * @return the opponent discs which would be flipped, or 0 if the move is illegal.
+     */
+    public long getFlips(int playerId, int move) {
+        return getFlips(stones[playerId], stones[3 - playerId], move);
+    }
+
+    /**
+     * Finds the discs flipped by a move.
+     * @param own the discs of the player to move.
+     * @param opp the discs of their opponent.
+     * @param move the bit index of the tile at which the disc is placed.
+     * @return the opponent discs which would be flipped, or 0 if the move is illegal.
+     */
+    public long getFlips(long own, long opp, int move) {
+
+        long disc = 1L << move, flips = 0;
+        if(((own | opp) & disc) != 0) return 0;
+        if(standard) return getStandardFlips(own, opp, disc);
+
+        for(int dir = 0; dir < 8; dir++) {
+
+            //A chain of opponent discs is flipped only if one of our own discs encloses it.
+            long chain = fill(disc, opp, dir);
+            if((step(chain, dir) & own) != 0) flips |= chain & opp;
+        }
+        return flips;
+    }
+
+    /**
+     * Fills the given array with every legal move, in order of increasing index.
+     * If there are none, but the opponent can move, the only move is 'PASS'.
+     * @param moves the array in which to store the moves, of length at least 'width * height'.
+     * @return the number of legal moves.
+     */
+    public int getLegalMoves(int[] moves) {
+
+        int numMoves = 0;
+        for(long legal = getLegalMask(); legal != 0; legal &= legal - 1) {
+            moves[numMoves++] = Long.numberOfTrailingZeros(legal);
+        }
+        if(numMoves == 0 && getLegalMask(3 - currentPlayerId) != 0) moves[numMoves++] = PASS;
+        return numMoves;
+    }
+
+    /**
+     * @param move the bit index of a tile.
+     * @return whether the current player may place a disc on this tile.
+     */
+    public boolean isLegal(int move) {
+        return move >= 0 && move < width * height && (getLegalMask() & 1L << move) != 0;
+    }
+
+    /**
+     * @return whether neither player has any legal moves.
+     */
+    public boolean isGameOver() {
+        return getLegalMask(1) == 0 && getLegalMask(2) == 0;
+    }
+
+    /**
+     * @return a 64-bit hash of the discs on the board and the current player.
+     */
+    public long hash() {
+        return MNKBoard.mix(stones[1]) ^ MNKBoard.mix(~stones[2]) ^ currentPlayerId;
+    }
+
+    /**
+     * Returns the owner of the disc at the given position.
+     * @param x the x position to check.
+     * @param y the y position to check.
+     * @return the ID of the owner of the disc at (x, y), or 0 if empty.
+     */
+    public int get(int x, int y) {
+        long disc = 1L << index(x, y);
+        return (stones[1] & disc) != 0 ? 1 : (stones[2] & disc) != 0 ? 2 : 0;
+    }
+
+    /**
+     * @param playerId the ID of the player whose discs to get.
+     * @return a bitboard of the discs owned by this player.
+     */
+    public long getStones(int playerId) { return stones[playerId]; }
+
+    /**
+     * @return a bitboard of every empty tile.
+     */
+    public long getEmpty() { return ~(stones[1] | stones[2]) & boardMask; }
+
+    /**
+     * @param playerId the ID of the player to check.
+     * @return the number of discs owned by this player.
+     */
+    public int getScore(int playerId) { return Long.bitCount(stones[playerId]); }
+
+    /**
+     * @return the ID of the player whose turn it currently is.
+     */
+    public int getCurrentPlayerId() { return currentPlayerId; }
+
+    /**
+     * @param x the x position of a tile.
+     * @param y the y position of a tile.
+     * @return the bit index of the tile at (x, y).
+     */
+    public int index(int x, int y) { return x * height + y; }
+
+    /**
+     * @param move the bit index of a tile.
+     * @return the x position of the tile.
+     */
+    public int getX(int move) { return move / height; }
+
+    /**
+     * @param move the bit index of a tile.
+     * @return the y position of the tile.
+     */
+    public int getY(int move) { return move % height; }
+
+    /**
+     * @return the width of the board.
+     */
+    public int getWidth() { return width; }
+
+    /**
+     * @return the height of the board.
+     */
+    public int getHeight() { return height; }
+
+    /**
+     * @return mask of every tile on the board.
+     */
+    public long getBoardMask() { return boardMask; }
+
+    /**
+     * Equivalent to 'getLegalMask()' for the standard 8x8 board, with every shift
+     * and mask a constant, and every loop unrolled.
+     * @param own the discs of the player to move.
+     * @param opp the discs of their opponent.
+     * @return a bitboard of every tile on which the player may place a disc.
+     */
+    private static long getStandardLegalMask(long own, long opp) {
+
+        long vertical = opp & NOT_BOTTOM & NOT_TOP;
+        long legal = fillUp(own, opp, 8) | fillDown(own, opp, 8)
+                | fillUp(own, vertical, 1) | fillDown(own, vertical, 1)
+                | fillUp(own, vertical, 9) | fillDown(own, vertical, 9)
+                | fillUp(own, vertical, 7) | fillDown(own, vertical, 7);
+        return legal & ~(own | opp);
+    }
+
+    /**
+     * Finds the tiles just beyond each chain of opponent discs in one direction
+     * on the standard board, by shifting towards the most significant bit.
+     * @param gen the discs from which to fill.
+     * @param pro the opponent discs through which the fill may pass, excluding any on the edge
+     * of the board at which a step in this direction could wrap.
+     * @param shift the shift between adjacent tiles in this direction.
+     * @return the tiles reached by one step beyond each chain, which may be occupied.
+     */
+    private static long fillUp(long gen, long pro, int shift) {
+
+        long chains = pro & (gen << shift);
+        chains |= pro & (chains << shift);
+        pro &= pro << shift;
+        chains |= pro & (chains << 2 * shift);
+        chains |= pro & (chains << 2 * shift);
+        return chains << shift;
+    }
+
+    /**
+     * As 'fillUp()', but shifting towards the least significant bit.
+     * @param gen the discs from which to fill.
+     * @param pro the opponent discs through which the fill may pass.
+     * @param shift the shift between adjacent tiles in this direction.
+     * @return the tiles reached by one step beyond each chain, which may be occupied.
+     */
+    private static long fillDown(long gen, long pro, int shift) {
+
+        long chains = pro & (gen >>> shift);
+        chains |= pro & (chains >>> shift);
+        pro &= pro >>> shift;
+        chains |= pro & (chains >>> 2 * shift);
+        chains |= pro & (chains >>> 2 * shift);
+        return chains >>> shift;
+    }
+
+    /**
+     * Equivalent to 'getFlips()' for the standard 8x8 board, with every shift
+     * and mask a constant, and every loop unrolled.
+     * @param own the discs of the player to move.
+     * @param opp the discs of their opponent.
+     * @param disc the tile at which the disc is placed, which must be empty.
+     * @return the opponent discs which would be flipped.
+     */
+    private static long getStandardFlips(long own, long opp, long disc) {
+
+        long vertical = opp & NOT_BOTTOM & NOT_TOP;
+        return flipsUp(own, opp, disc, 8) | flipsDown(own, opp, disc, 8)
+                | flipsUp(own, vertical, disc, 1) | flipsDown(own, vertical, disc, 1)
+                | flipsUp(own, vertical, disc, 9) | flipsDown(own, vertical, disc, 9)
+                | flipsUp(own, vertical, disc, 7) | flipsDown(own, vertical, disc, 7);
+    }
+
+    /**
+     * Finds the discs flipped in one direction on the standard board,
+     * by shifting towards the most significant bit.
+     * @param own the discs of the player to move.
+     * @param pro the opponent discs which may be flipped, excluding any on the edge
+     * of the board at which a step in this direction could wrap.
+     * @param disc the tile at which the disc is placed.
+     * @param shift the shift between adjacent tiles in this direction.
+     * @return the chain of opponent discs next to the tile, if enclosed by one of our own.
+     */
+    private static long flipsUp(long own, long pro, long disc, int shift) {
+
+        //A single chain grows one tile per step, and may be up to six tiles long.
+        long chain = pro & (disc << shift);
+        chain |= pro & (chain << shift);
+        chain |= pro & (chain << shift);
+        chain |= pro & (chain << shift);
+        chain |= pro & (chain << shift);
+        chain |= pro & (chain << shift);
+        return (own & (chain << shift)) != 0 ? chain : 0;
+    }
+
+    /**
+     * As 'flipsUp()', but shifting towards the least significant bit.
+     * @param own the discs of the player to move.
+     * @param pro the opponent discs which may be flipped.
+     * @param disc the tile at which the disc is placed.
+     * @param shift the shift between adjacent tiles in this direction.
+     * @return the chain of opponent discs next to the tile, if enclosed by one of our own.
+     */
+    private static long flipsDown(long own, long pro, long disc, int shift) {
+
+        long chain = pro & (disc >>> shift);
+        chain |= pro & (chain >>> shift);
+        chain |= pro & (chain >>> shift);
+        chain |= pro & (chain >>> shift);
+        chain |= pro & (chain >>> shift);
+        chain |= pro & (chain >>> shift);
+        return (own & (chain >>> shift)) != 0 ? chain : 0;
+    }
+
+    /**
+     * Extends the given discs through adjacent discs in one direction (Kogge-Stone).
+     * @param gen the discs from which to fill.
+     * @param pro the discs through which the fill may pass.
+     * @param dir the index of the direction in which to fill.
+     * @return the original discs, and every disc reached from them.
+     */
+    private long fill(long gen, long pro, int dir) {
+
+        int shift = shifts[dir], numSteps = steps[dir];
+        pro &= masks[dir];
+
+        //Separate loops avoid a branch on the direction of each shift.
+        if(shift > 0) {
+            for(int i = 0; i < numSteps; i++, shift *= 2) {
+                gen |= pro & (gen << shift);
+                pro &= pro << shift;
+            }
+        } else {
+            for(int i = 0; i < numSteps; i++, shift *= 2) {
+                gen |= pro & (gen >>> -shift);
+                pro &= pro >>> -shift;
+            }
+        }
+        return gen;
+    }
+
+    /**
+     * @param bits the discs to move.
+     * @param dir the index of the direction in which to move them.
+     * @return each disc moved one tile in this direction, excluding any which leave the board.
+     */
+    private long step(long bits, int dir) {
+        int shift = shifts[dir];
+        return (shift > 0 ? bits << shift : bits >>> -shift) & masks[dir];
+    }
+}
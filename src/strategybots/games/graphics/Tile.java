@@ -29,13 +29,14 @@ public class Tile implements Serializable {
     private Colour colour = Colour.BLACK;
     
     /**
-     * Constructs a new immediately-visible tile (square) for rendering.
-     * @param window the window in which the tile is to reside.
+     * Constructs a new immediately-visible tile (square) for rendering.<br>
+     * If no window is given (headless mode), the tile is never rendered.
+     * @param window the window in which the tile is to reside, or null.
      */
     public Tile(Window window) {
         this.window = window;
-        shader = (TileShader) window.getShader();
-        shader.addTile(this);
+        shader = window != null ? (TileShader) window.getShader() : null;
+        if(shader != null) shader.addTile(this);
     }
     
     /**
@@ -183,6 +184,7 @@ public class Tile implements Serializable {
      * @param visible whether the tile is visible to the renderer.
      */
     public void setVisible(boolean visible) {
+        if(shader == null) return;
         if(visible) shader.addTile(this);
         else shader.removeTile(this);
     }
@@ -191,7 +193,7 @@ public class Tile implements Serializable {
      * Remove tile from renderer, and remove events from tile.
      */
     public void destroy() {
-        shader.removeTile(this);
+        if(shader != null) shader.removeTile(this);
     }
     
     @Override
@@ -245,6 +245,9 @@ public class Window {
                 INPUT_HANDLER.destroy();
                 Display.destroy();
                 open = false;
+                
+                //Trigger window close event.
+                new WindowCloseEvent(Window.this);
             }
         }.start();
         
@@ -398,4 +401,20 @@ public class Window {
             trigger();
         }
     }
+    
+    /**
+     * Event which is triggered once the window has been closed.
+     * 
+     * @author Alec Dorrington
+     */
+    public static class WindowCloseEvent extends Event {
+        
+        /** The window which was closed. */
+        public final Window WINDOW;
+        
+        private WindowCloseEvent(Window window) {
+            WINDOW = window;
+            trigger();
+        }
+    }
 }
\ No newline at end of file